@@ -0,0 +1,115 @@
+package com.migros.couriertracking.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+
+import com.migros.couriertracking.entity.Store;
+
+/**
+ * Synthetic stores, courier tracks and database-free repositories for the benchmarks.
+ */
+final class BenchmarkFixtures {
+
+    // Roughly the Istanbul metropolitan area
+    static final double MIN_LATITUDE = 40.80;
+    static final double MAX_LATITUDE = 41.20;
+    static final double MIN_LONGITUDE = 28.60;
+    static final double MAX_LONGITUDE = 29.40;
+
+    // ~5 m per step, a courier fix every second at ~18 km/h
+    private static final double STEP_DEGREES = 0.000045;
+
+    private BenchmarkFixtures() {
+    }
+
+    static List<Store> randomStores(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Store> stores = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Store store = new Store("Store " + i,
+                    random.nextDouble(MIN_LATITUDE, MAX_LATITUDE),
+                    random.nextDouble(MIN_LONGITUDE, MAX_LONGITUDE));
+            store.setId((long) i + 1);
+            stores.add(store);
+        }
+        return stores;
+    }
+
+    static double[] randomLatitudes(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] latitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = random.nextDouble(MIN_LATITUDE, MAX_LATITUDE);
+        }
+        return latitudes;
+    }
+
+    static double[] randomLongitudes(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            longitudes[i] = random.nextDouble(MIN_LONGITUDE, MAX_LONGITUDE);
+        }
+        return longitudes;
+    }
+
+    /**
+     * Random walk of {@code length} fixes starting at a random point, returned as
+     * interleaved latitude/longitude pairs.
+     */
+    static double[] randomTrack(int length, SplittableRandom random) {
+        double[] track = new double[length * 2];
+        double latitude = random.nextDouble(MIN_LATITUDE, MAX_LATITUDE);
+        double longitude = random.nextDouble(MIN_LONGITUDE, MAX_LONGITUDE);
+        for (int i = 0; i < length; i++) {
+            latitude += random.nextDouble(-STEP_DEGREES, STEP_DEGREES);
+            longitude += random.nextDouble(-STEP_DEGREES, STEP_DEGREES);
+            track[i * 2] = latitude;
+            track[i * 2 + 1] = longitude;
+        }
+        return track;
+    }
+
+    /**
+     * Spring Data repository stand-in: {@code findAll} returns the given entities,
+     * {@code save*} echo their argument, finders return nothing.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> type, List<?> entities) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            String name = method.getName();
+            Class<?> returnType = method.getReturnType();
+            if (name.equals("findAll")) {
+                return entities;
+            }
+            if (name.startsWith("save")) {
+                return args[0];
+            }
+            if (returnType == Optional.class) {
+                return Optional.empty();
+            }
+            if (List.class.isAssignableFrom(returnType)) {
+                return List.of();
+            }
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (name.equals("toString")) {
+                return type.getSimpleName() + " stub";
+            }
+            return null;
+        });
+    }
+}
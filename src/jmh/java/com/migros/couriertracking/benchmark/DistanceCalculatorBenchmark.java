@@ -0,0 +1,73 @@
+package com.migros.couriertracking.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.util.EquirectangularDistanceCalculator;
+import com.migros.couriertracking.util.HaversineDistanceCalculator;
+import com.migros.couriertracking.util.HybridDistanceCalculator;
+
+/**
+ * Cost of a single distance calculation between two nearby points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceCalculatorBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private final DistanceCalculator haversine = new HaversineDistanceCalculator();
+    private final DistanceCalculator equirectangular = new EquirectangularDistanceCalculator();
+    private final DistanceCalculator hybrid = new HybridDistanceCalculator(equirectangular, haversine, 10000);
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        latitudes = BenchmarkFixtures.randomLatitudes(POINTS, 42);
+        longitudes = BenchmarkFixtures.randomLongitudes(POINTS, 43);
+    }
+
+    @Benchmark
+    public double haversine() {
+        int i = next();
+        return haversine.calculateDistance(latitudes[i], longitudes[i],
+                latitudes[i] + 0.0005, longitudes[i] + 0.0005);
+    }
+
+    @Benchmark
+    public double equirectangular() {
+        int i = next();
+        return equirectangular.calculateDistance(latitudes[i], longitudes[i],
+                latitudes[i] + 0.0005, longitudes[i] + 0.0005);
+    }
+
+    @Benchmark
+    public double hybrid() {
+        int i = next();
+        return hybrid.calculateDistance(latitudes[i], longitudes[i],
+                latitudes[i] + 0.0005, longitudes[i] + 0.0005);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (POINTS - 1);
+        return cursor;
+    }
+}
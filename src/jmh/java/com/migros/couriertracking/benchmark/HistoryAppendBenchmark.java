@@ -0,0 +1,105 @@
+package com.migros.couriertracking.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.migros.couriertracking.history.LocationHistoryStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * {@link LocationHistoryStore#append} from several threads at once, each appending
+ * the fixes of its own couriers like an ingestion shard does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class HistoryAppendBenchmark {
+
+    private static final int TRACK_LENGTH = 1024;
+
+    @Param({ "1000" })
+    private int couriersPerThread;
+
+    // One stripe puts every append behind the same lock
+    @Param({ "1", "4" })
+    private int stripeCount;
+
+    private LocationHistoryStore locationHistoryStore;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        locationHistoryStore = new LocationHistoryStore(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(locationHistoryStore, "enabled", true);
+        ReflectionTestUtils.setField(locationHistoryStore, "directory",
+                Files.createTempDirectory("history").toString());
+        ReflectionTestUtils.setField(locationHistoryStore, "segmentSize", 64 * 1024 * 1024);
+        ReflectionTestUtils.setField(locationHistoryStore, "windowMs", 3600000L);
+        ReflectionTestUtils.setField(locationHistoryStore, "stripeCount", stripeCount);
+        locationHistoryStore.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        locationHistoryStore.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Couriers {
+
+        private String[] courierIds;
+        private double[][] tracks;
+        private long fixCount;
+
+        @Setup(Level.Trial)
+        public void setUp(HistoryAppendBenchmark benchmark) {
+            int thread = benchmark.nextThread.getAndIncrement();
+            SplittableRandom random = new SplittableRandom(17 + thread);
+            courierIds = new String[benchmark.couriersPerThread];
+            tracks = new double[benchmark.couriersPerThread][];
+            for (int i = 0; i < courierIds.length; i++) {
+                courierIds[i] = "COURIER" + thread + "-" + i;
+                tracks[i] = BenchmarkFixtures.randomTrack(TRACK_LENGTH, random);
+            }
+        }
+    }
+
+    /**
+     * Couriers report round-robin, one fix per second each, looping over their track.
+     */
+    @Benchmark
+    public void append(Couriers couriers) {
+        long fix = couriers.fixCount++;
+        int courier = (int) (fix % couriers.courierIds.length);
+        long step = fix / couriers.courierIds.length;
+        int position = (int) (step % TRACK_LENGTH);
+        double[] track = couriers.tracks[courier];
+
+        locationHistoryStore.append(couriers.courierIds[courier], track[position * 2], track[position * 2 + 1],
+                step * 1000);
+    }
+}
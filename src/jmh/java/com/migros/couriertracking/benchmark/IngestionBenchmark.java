@@ -0,0 +1,147 @@
+package com.migros.couriertracking.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.migros.couriertracking.config.LocationFilterConfig;
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.history.LocationHistoryStore;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepository;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.rollup.DistanceRollupStore;
+import com.migros.couriertracking.service.InMemoryCourierTrackingService;
+import com.migros.couriertracking.service.StoreEntrancePipeline;
+import com.migros.couriertracking.service.TravelSummaryFlusher;
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
+import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.util.HaversineDistanceCalculator;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * End-to-end {@link InMemoryCourierTrackingService#logCourierLocation} over synthetic
+ * courier tracks, with the database replaced by no-op repositories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestionBenchmark {
+
+    private static final int TRACK_LENGTH = 1024;
+
+    @Param({ "1000" })
+    private int courierCount;
+
+    @Param({ "1000" })
+    private int storeCount;
+
+    private InMemoryCourierTrackingService service;
+    private StoreEntrancePipeline storeEntrancePipeline;
+
+    private String[] courierIds;
+    private double[][] tracks;
+    private long fixCount;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        List<Store> stores = BenchmarkFixtures.randomStores(storeCount, 7);
+        DistanceCalculator distanceCalculator = new HaversineDistanceCalculator();
+        StoreSpatialIndex storeSpatialIndex = new StoreSpatialIndex(
+                BenchmarkFixtures.repository(StoreRepository.class, stores), distanceCalculator);
+        ReflectionTestUtils.setField(storeSpatialIndex, "storeRadius", 100.0);
+        storeSpatialIndex.rebuild();
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PlatformTransactionManager transactionManager = BenchmarkFixtures.repository(
+                PlatformTransactionManager.class, List.of());
+
+        storeEntrancePipeline = new StoreEntrancePipeline(
+                BenchmarkFixtures.repository(StoreEntranceRepository.class, List.of()),
+                List.of(), transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(storeEntrancePipeline, "queueCapacity", 10000);
+        ReflectionTestUtils.setField(storeEntrancePipeline, "batchSize", 100);
+        ReflectionTestUtils.setField(storeEntrancePipeline, "observerQueueCapacity", 1000);
+        storeEntrancePipeline.start();
+
+        CourierTravelSummaryRepository travelSummaryRepository = BenchmarkFixtures.repository(
+                CourierTravelSummaryRepository.class, List.of());
+        TravelSummaryFlusher travelSummaryFlusher = new TravelSummaryFlusher(travelSummaryRepository,
+                transactionManager, meterRegistry);
+
+        LocationHistoryStore locationHistoryStore = new LocationHistoryStore(meterRegistry);
+        ReflectionTestUtils.setField(locationHistoryStore, "enabled", true);
+        ReflectionTestUtils.setField(locationHistoryStore, "directory",
+                Files.createTempDirectory("history").toString());
+        ReflectionTestUtils.setField(locationHistoryStore, "segmentSize", 64 * 1024 * 1024);
+        ReflectionTestUtils.setField(locationHistoryStore, "windowMs", 3600000L);
+        locationHistoryStore.open();
+
+        DistanceRollupStore distanceRollupStore = new DistanceRollupStore(meterRegistry);
+        ReflectionTestUtils.setField(distanceRollupStore, "minuteRetentionMs", 21600000L);
+        ReflectionTestUtils.setField(distanceRollupStore, "hourRetentionMs", 604800000L);
+
+        service = new InMemoryCourierTrackingService(storeSpatialIndex, distanceCalculator,
+                new LocationFilterConfig().locationFilter(5, 50), storeEntrancePipeline, travelSummaryFlusher, locationHistoryStore, distanceRollupStore, meterRegistry);
+        ReflectionTestUtils.setField(service, "exitDelayMs", 60000L);
+        ReflectionTestUtils.setField(service, "syncFrequency", 10);
+        ReflectionTestUtils.setField(service, "syncTimeoutMs", 300000L);
+        ReflectionTestUtils.setField(service, "idleTimeoutMs", 3600000L);
+        ReflectionTestUtils.setField(service, "evictionIntervalMs", 1000L);
+        ReflectionTestUtils.setField(service, "reorderWindow", 4);
+        ReflectionTestUtils.setField(service, "evictionBatchSize", 500);
+        service.start();
+
+        SplittableRandom random = new SplittableRandom(17);
+        courierIds = new String[courierCount];
+        tracks = new double[courierCount][];
+        for (int i = 0; i < courierCount; i++) {
+            courierIds[i] = "COURIER" + i;
+            tracks[i] = BenchmarkFixtures.randomTrack(TRACK_LENGTH, random);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        storeEntrancePipeline.stop();
+    }
+
+    /**
+     * Couriers report round-robin, one fix per second each, looping over their track.
+     */
+    @Benchmark
+    public void logCourierLocation() {
+        long fix = fixCount++;
+        int courier = (int) (fix % courierCount);
+        long step = fix / courierCount;
+        int position = (int) (step % TRACK_LENGTH);
+        double[] track = tracks[courier];
+
+        service.logCourierLocation(new CourierLocationRequest(courierIds[courier],
+                track[position * 2], track[position * 2 + 1], step * 1000));
+    }
+}
@@ -0,0 +1,117 @@
+package com.migros.couriertracking.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.migros.couriertracking.CourierTrackingApplication;
+
+/**
+ * Load test of the HTTP endpoints with Tomcat on platform vs. virtual request
+ * threads ({@code spring.threads.virtual.enabled}).
+ *
+ * More clients than Tomcat request threads keep calling endpoints that block on
+ * JPA, so on platform threads requests queue for a free worker. Throughput mode
+ * reports requests per second, sample mode reports the latency percentiles (p0.99).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(400)
+@Fork(1)
+public class RequestThreadingBenchmark {
+
+    @Param({ "false", "true" })
+    private boolean virtualThreads;
+
+    @Param({ "50" })
+    private int tomcatThreads;
+
+    @Param({ "1000" })
+    private int courierCount;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        // Passed as arguments so they override application.yaml
+        context = new SpringApplicationBuilder(CourierTrackingApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + tomcatThreads,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.migros.couriertracking=WARN",
+                "--logging.level.org.springframework.web=WARN");
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port + "/api/couriers";
+        httpClient = HttpClient.newHttpClient();
+
+        for (int i = 0; i < courierCount; i++) {
+            send(locationRequest(i, 0));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Flushes the courier's pending distance and reads its summary, both through JPA
+     * on the request thread.
+     */
+    @Benchmark
+    public int totalTravelDistance() throws IOException, InterruptedException {
+        int courier = ThreadLocalRandom.current().nextInt(courierCount);
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/COURIER" + courier + "/total-travel-distance"))
+                .GET()
+                .build());
+    }
+
+    @Benchmark
+    public int logCourierLocation() throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return send(locationRequest(random.nextInt(courierCount), random.nextInt(1000)));
+    }
+
+    private HttpRequest locationRequest(int courier, int step) {
+        double latitude = 40.99 + step * 0.000045;
+        String body = "{\"courierId\":\"COURIER" + courier + "\",\"latitude\":" + latitude
+                + ",\"longitude\":29.12,\"time\":" + (1640995200000L + step * 1000L) + "}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/location"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,97 @@
+package com.migros.couriertracking.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
+import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.util.HaversineDistanceCalculator;
+
+/**
+ * Finding the stores within the radius of a courier fix, through the spatial index
+ * and with the full scan the service used before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreProximityBenchmark {
+
+    private static final double STORE_RADIUS = 100;
+    private static final int POINTS = 1024;
+
+    @Param({ "10", "1000", "100000" })
+    private int storeCount;
+
+    private final DistanceCalculator distanceCalculator = new HaversineDistanceCalculator();
+
+    private List<Store> stores;
+    private StoreSpatialIndex index;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int position;
+
+        int next() {
+            position = (position + 1) & (POINTS - 1);
+            return position;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        stores = BenchmarkFixtures.randomStores(storeCount, 7);
+
+        index = new StoreSpatialIndex(BenchmarkFixtures.repository(StoreRepository.class, stores),
+                distanceCalculator);
+        ReflectionTestUtils.setField(index, "storeRadius", STORE_RADIUS);
+        index.rebuild();
+
+        latitudes = BenchmarkFixtures.randomLatitudes(POINTS, 11);
+        longitudes = BenchmarkFixtures.randomLongitudes(POINTS, 13);
+        // Put every fourth fix right next to a store so the hit path is exercised too
+        for (int i = 0; i < POINTS; i += 4) {
+            Store store = stores.get(i % stores.size());
+            latitudes[i] = store.getLatitude() + 0.0003;
+            longitudes[i] = store.getLongitude();
+        }
+    }
+
+    @Benchmark
+    public int spatialIndex(Cursor cursor) {
+        int i = cursor.next();
+        return index.findStoresInRange(latitudes[i], longitudes[i]).size();
+    }
+
+    @Benchmark
+    public int fullScan(Cursor cursor) {
+        int i = cursor.next();
+        int inside = 0;
+        for (Store store : stores) {
+            if (distanceCalculator.calculateDistance(latitudes[i], longitudes[i],
+                    store.getLatitude(), store.getLongitude()) <= STORE_RADIUS) {
+                inside++;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,44 @@
+package com.migros.couriertracking.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.util.EquirectangularDistanceCalculator;
+import com.migros.couriertracking.util.HaversineDistanceCalculator;
+import com.migros.couriertracking.util.HybridDistanceCalculator;
+
+/**
+ * Selects the {@link DistanceCalculator} strategy with
+ * {@code courier.tracking.distance.strategy}: {@code haversine} (default),
+ * {@code equirectangular} or {@code hybrid}.
+ */
+@Configuration
+public class DistanceCalculatorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceCalculatorConfig.class);
+
+    @Bean
+    @Primary
+    public DistanceCalculator distanceCalculator(HaversineDistanceCalculator haversineDistanceCalculator,
+            @Value("${courier.tracking.distance.strategy:haversine}") String strategy,
+            @Value("${courier.tracking.distance.hybrid-threshold:10000}") double hybridThresholdMeters) {
+        logger.info("Using {} distance calculation", strategy);
+
+        switch (strategy.toLowerCase()) {
+            case "haversine":
+                return haversineDistanceCalculator;
+            case "equirectangular":
+                return new EquirectangularDistanceCalculator();
+            case "hybrid":
+                return new HybridDistanceCalculator(new EquirectangularDistanceCalculator(),
+                        haversineDistanceCalculator, hybridThresholdMeters);
+            default:
+                throw new IllegalArgumentException("Unknown distance calculation strategy: " + strategy);
+        }
+    }
+}
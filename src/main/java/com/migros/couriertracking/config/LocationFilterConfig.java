@@ -0,0 +1,44 @@
+package com.migros.couriertracking.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.migros.couriertracking.filter.CompositeLocationFilter;
+import com.migros.couriertracking.filter.LocationFilter;
+import com.migros.couriertracking.filter.MinimumDisplacementFilter;
+import com.migros.couriertracking.filter.SpeedGateFilter;
+
+/**
+ * Builds the {@link LocationFilter} chain applied before distance is accumulated:
+ * {@code courier.tracking.filter.min-displacement} (meters) and
+ * {@code courier.tracking.filter.max-speed} (meters per second). A value of 0
+ * disables the filter.
+ */
+@Configuration
+public class LocationFilterConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationFilterConfig.class);
+
+    @Bean
+    public LocationFilter locationFilter(
+            @Value("${courier.tracking.filter.min-displacement:5}") double minDisplacementMeters,
+            @Value("${courier.tracking.filter.max-speed:50}") double maxSpeedMetersPerSecond) {
+        List<LocationFilter> filters = new ArrayList<>();
+        if (minDisplacementMeters > 0) {
+            filters.add(new MinimumDisplacementFilter(minDisplacementMeters));
+        }
+        if (maxSpeedMetersPerSecond > 0) {
+            filters.add(new SpeedGateFilter(maxSpeedMetersPerSecond));
+        }
+        logger.info("Filtering fixes with minimum displacement {} m and maximum speed {} m/s",
+                minDisplacementMeters, maxSpeedMetersPerSecond);
+
+        return filters.isEmpty() ? LocationFilter.ACCEPT_ALL : new CompositeLocationFilter(filters);
+    }
+}
@@ -0,0 +1,24 @@
+package com.migros.couriertracking.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.migros.couriertracking.controller.LocationStreamHandler;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final LocationStreamHandler locationStreamHandler;
+
+    public WebSocketConfig(LocationStreamHandler locationStreamHandler) {
+        this.locationStreamHandler = locationStreamHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(locationStreamHandler, "/ws/couriers/locations");
+    }
+}
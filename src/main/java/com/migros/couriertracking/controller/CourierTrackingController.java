@@ -1,7 +1,11 @@
 package com.migros.couriertracking.controller;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,13 +13,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.migros.couriertracking.dto.BatchLocationResponse;
 import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationHistoryEntry;
+import com.migros.couriertracking.dto.LocationResult;
 import com.migros.couriertracking.dto.TotalTravelDistanceResponse;
+import com.migros.couriertracking.dto.TripSummaryResponse;
+import com.migros.couriertracking.history.LocationHistoryStore;
+import com.migros.couriertracking.ingestion.ShardedIngestionEngine;
 import com.migros.couriertracking.service.InMemoryCourierTrackingService;
+import com.migros.couriertracking.service.TripQueryService;
 
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 
 @RestController
 @RequestMapping("/api/couriers")
@@ -25,20 +38,62 @@ public class CourierTrackingController {
     private static final Logger logger = LoggerFactory.getLogger(CourierTrackingController.class);
 
     private final InMemoryCourierTrackingService courierTrackingService;
+    private final ShardedIngestionEngine ingestionEngine;
+    private final LocationHistoryStore locationHistoryStore;
+    private final TripQueryService tripQueryService;
+    private final LocationBatchSubmitter locationBatchSubmitter;
+
+    @Value("${courier.tracking.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${courier.tracking.history.max-span:86400000}")
+    private long maxHistorySpanMs;
 
-    public CourierTrackingController(InMemoryCourierTrackingService courierTrackingService) {
+    public CourierTrackingController(InMemoryCourierTrackingService courierTrackingService,
+            ShardedIngestionEngine ingestionEngine,
+            LocationHistoryStore locationHistoryStore,
+            TripQueryService tripQueryService,
+            Validator validator) {
         this.courierTrackingService = courierTrackingService;
+        this.ingestionEngine = ingestionEngine;
+        this.locationHistoryStore = locationHistoryStore;
+        this.tripQueryService = tripQueryService;
+        this.locationBatchSubmitter = new LocationBatchSubmitter(ingestionEngine, validator);
     }
 
     @PostMapping("/location")
     public ResponseEntity<String> logCourierLocation(@Valid @RequestBody CourierLocationRequest request) {
         logger.info("Received location update for courier: {}", request.getCourierId());
 
-        courierTrackingService.logCourierLocation(request);
+        String rejection = switch (ingestionEngine.submit(request)) {
+            case ACCEPTED -> null;
+            case QUEUE_FULL -> "Ingestion queue is full, retry later";
+            case LOG_FAILED -> "Location could not be logged, retry later";
+            // The fix is queued and will be applied, only its durability is unknown
+            case COMMIT_TIMED_OUT -> "Location was not confirmed in time and may already be applied, "
+                    + "retry with the same time";
+        };
+        if (rejection != null) {
+            logger.warn("Rejecting location update for courier {}: {}", request.getCourierId(), rejection);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(rejection);
+        }
 
         return ResponseEntity.ok("Location logged successfully");
     }
 
+    @PostMapping("/locations")
+    public ResponseEntity<BatchLocationResponse> logCourierLocations(@RequestBody List<CourierLocationRequest> requests) {
+        logger.info("Received batch of {} location updates", requests.size());
+
+        if (requests.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        List<LocationResult> results = locationBatchSubmitter.submit(requests);
+
+        return ResponseEntity.ok(new BatchLocationResponse(results));
+    }
+
     @GetMapping("/{courierId}/total-travel-distance")
     public ResponseEntity<TotalTravelDistanceResponse> getTotalTravelDistance(@PathVariable String courierId) {
         logger.info("Requesting total travel distance for courier: {}", courierId);
@@ -47,4 +102,51 @@ public class CourierTrackingController {
 
         return ResponseEntity.ok(response);
     }
+
+    @GetMapping("/total-travel-distances")
+    public ResponseEntity<List<TotalTravelDistanceResponse>> getTotalTravelDistances(
+            @RequestParam(name = "courierId", required = false) List<String> courierIds) {
+        if (courierIds == null) {
+            logger.info("Requesting total travel distance for all active couriers");
+            return ResponseEntity.ok(courierTrackingService.getActiveTotalTravelDistances());
+        }
+
+        logger.info("Requesting total travel distance for {} couriers", courierIds.size());
+
+        if (courierIds.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        return ResponseEntity.ok(courierTrackingService.getTotalTravelDistances(courierIds));
+    }
+
+    @GetMapping("/{courierId}/history")
+    public ResponseEntity<List<LocationHistoryEntry>> getLocationHistory(@PathVariable String courierId,
+            @RequestParam long from,
+            @RequestParam long to) {
+        logger.info("Requesting location history for courier: {} between {} and {}", courierId, from, to);
+
+        if (from < 0 || from > to || to - from > maxHistorySpanMs) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(locationHistoryStore.scan(courierId, from, to));
+    }
+
+    @GetMapping("/{courierId}/trip")
+    public ResponseEntity<TripSummaryResponse> getTrip(@PathVariable String courierId,
+            @RequestParam long from,
+            @RequestParam long to) {
+        logger.info("Requesting trip of courier: {} between {} and {}", courierId, from, to);
+
+        if (from > to) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            return ResponseEntity.ok(tripQueryService.getTrip(courierId, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package com.migros.couriertracking.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationResult;
+import com.migros.couriertracking.ingestion.ShardedIngestionEngine;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+/**
+ * Validates a batch of fixes item by item and hands the valid ones to the
+ * ingestion engine. Shared by the REST batch endpoint and the location stream.
+ */
+class LocationBatchSubmitter {
+
+    private final ShardedIngestionEngine ingestionEngine;
+    private final Validator validator;
+
+    LocationBatchSubmitter(ShardedIngestionEngine ingestionEngine, Validator validator) {
+        this.ingestionEngine = ingestionEngine;
+        this.validator = validator;
+    }
+
+    /**
+     * @return one result per request, in request order
+     */
+    List<LocationResult> submit(List<CourierLocationRequest> requests) {
+        LocationResult[] results = new LocationResult[requests.size()];
+        List<CourierLocationRequest> validRequests = new ArrayList<>(requests.size());
+        List<Integer> validIndexes = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+            CourierLocationRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = new LocationResult(i, null, LocationResult.Status.REJECTED, "Location is required");
+                continue;
+            }
+
+            Set<ConstraintViolation<CourierLocationRequest>> violations = validator.validate(request);
+            if (violations.isEmpty()) {
+                validRequests.add(request);
+                validIndexes.add(i);
+            } else {
+                String message = violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining(", "));
+                results[i] = new LocationResult(i, request.getCourierId(), LocationResult.Status.REJECTED, message);
+            }
+        }
+
+        if (!validRequests.isEmpty()) {
+            List<LocationResult> processed = ingestionEngine.submitAll(validRequests);
+            for (int i = 0; i < processed.size(); i++) {
+                LocationResult result = processed.get(i);
+                result.setIndex(validIndexes.get(i));
+                results[result.getIndex()] = result;
+            }
+        }
+
+        return List.of(results);
+    }
+}
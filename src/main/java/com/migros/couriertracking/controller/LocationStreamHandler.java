@@ -0,0 +1,120 @@
+package com.migros.couriertracking.controller;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.migros.couriertracking.dto.BatchLocationResponse;
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationResult;
+import com.migros.couriertracking.ingestion.ShardedIngestionEngine;
+
+import jakarta.validation.Validator;
+import jakarta.websocket.Session;
+
+/**
+ * Streaming ingestion over a long-lived WebSocket connection.
+ *
+ * Every text frame carries one {@link CourierLocationRequest} or a JSON array of
+ * them, and is validated and queued exactly like {@code POST /api/couriers/locations}.
+ * Connections hold no thread while idle. A frame is handled on a container thread,
+ * and frames of one connection are handled one at a time. A full shard queue holds
+ * a frame for at most {@code courier.tracking.ingestion.offer-timeout} ms; the fixes
+ * that still find no room are rejected rather than waited for, so the sender is
+ * not slowed down and has to resend them.
+ *
+ * Accepted fixes are not acknowledged. A frame with rejected or malformed fixes is
+ * answered with a {@link BatchLocationResponse} frame.
+ */
+@Component
+public class LocationStreamHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationStreamHandler.class);
+
+    private final ObjectMapper objectMapper;
+    private final LocationBatchSubmitter locationBatchSubmitter;
+
+    @Value("${courier.tracking.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${courier.tracking.stream.max-frame-size:524288}")
+    private int maxFrameSize;
+
+    @Value("${courier.tracking.stream.idle-timeout:300000}")
+    private long idleTimeoutMs;
+
+    public LocationStreamHandler(ObjectMapper objectMapper, ShardedIngestionEngine ingestionEngine,
+            Validator validator) {
+        this.objectMapper = objectMapper;
+        this.locationBatchSubmitter = new LocationBatchSubmitter(ingestionEngine, validator);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        session.setTextMessageSizeLimit(maxFrameSize);
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session containerSession = nativeSession.getNativeSession(Session.class);
+            if (containerSession != null) {
+                containerSession.setMaxIdleTimeout(idleTimeoutMs);
+            }
+        }
+
+        logger.debug("Location stream opened: {}", session.getId());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        List<CourierLocationRequest> requests;
+        try {
+            requests = readFrame(message.getPayload());
+        } catch (JsonProcessingException e) {
+            reject(session, "Malformed location frame");
+            return;
+        }
+
+        if (requests.size() > maxBatchSize) {
+            reject(session, "Frame exceeds " + maxBatchSize + " locations");
+            return;
+        }
+
+        BatchLocationResponse response = new BatchLocationResponse(locationBatchSubmitter.submit(requests));
+        if (response.getRejected() > 0) {
+            send(session, response);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        logger.debug("Location stream closed: {} ({})", session.getId(), status);
+    }
+
+    private List<CourierLocationRequest> readFrame(String payload) throws IOException {
+        JsonNode frame = objectMapper.readTree(payload);
+        if (frame.isArray()) {
+            return objectMapper.readerForListOf(CourierLocationRequest.class).readValue(frame);
+        }
+        return Collections.singletonList(objectMapper.treeToValue(frame, CourierLocationRequest.class));
+    }
+
+    private void reject(WebSocketSession session, String message) throws IOException {
+        send(session, new BatchLocationResponse(List.of(
+                new LocationResult(0, null, LocationResult.Status.REJECTED, message))));
+    }
+
+    private void send(WebSocketSession session, BatchLocationResponse response) throws IOException {
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(response)));
+    }
+}
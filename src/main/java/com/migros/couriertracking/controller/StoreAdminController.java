@@ -0,0 +1,95 @@
+package com.migros.couriertracking.controller;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.migros.couriertracking.dto.StoreRequest;
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.service.StoreCatalogService;
+
+import jakarta.validation.Valid;
+
+@RestController
+@RequestMapping("/api/admin/stores")
+public class StoreAdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreAdminController.class);
+
+    private final StoreCatalogService storeCatalogService;
+
+    public StoreAdminController(StoreCatalogService storeCatalogService) {
+        this.storeCatalogService = storeCatalogService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Store>> getStores() {
+        return ResponseEntity.ok(storeCatalogService.getStores());
+    }
+
+    @PostMapping
+    public ResponseEntity<?> addStore(@Valid @RequestBody StoreRequest request) {
+        logger.info("Adding store: {}", request.getName());
+
+        try {
+            Store store = storeCatalogService.addStore(request.getName(), request.getLatitude(), request.getLongitude(),
+                    request.getRadius(), request.getPolygon());
+            return ResponseEntity.status(HttpStatus.CREATED).body(store);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<?> updateStore(@PathVariable Long id, @Valid @RequestBody StoreRequest request) {
+        logger.info("Updating store: {}", id);
+
+        try {
+            return storeCatalogService.updateStore(id, request.getName(), request.getLatitude(), request.getLongitude(),
+                            request.getRadius(), request.getPolygon())
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<String> deleteStore(@PathVariable Long id) {
+        logger.info("Deleting store: {}", id);
+
+        try {
+            if (!storeCatalogService.deleteStore(id)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.noContent().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/reload")
+    public ResponseEntity<String> reload() throws IOException {
+        logger.info("Reloading store catalog");
+
+        int storeCount = storeCatalogService.reload();
+
+        return ResponseEntity.ok("Store catalog reloaded with " + storeCount + " stores");
+    }
+}
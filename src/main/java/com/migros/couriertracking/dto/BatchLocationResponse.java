@@ -0,0 +1,49 @@
+package com.migros.couriertracking.dto;
+
+import java.util.List;
+
+public class BatchLocationResponse {
+
+    private int accepted;
+    private int rejected;
+    private List<LocationResult> results;
+
+    public BatchLocationResponse() {
+    }
+
+    public BatchLocationResponse(List<LocationResult> results) {
+        this.results = results;
+        for (LocationResult result : results) {
+            if (result.getStatus() == LocationResult.Status.ACCEPTED) {
+                accepted++;
+            } else {
+                rejected++;
+            }
+        }
+    }
+
+    // Getters and Setters
+    public int getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(int accepted) {
+        this.accepted = accepted;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<LocationResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<LocationResult> results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,52 @@
+package com.migros.couriertracking.dto;
+
+public class LocationHistoryEntry {
+
+    private String courierId;
+    private double latitude;
+    private double longitude;
+    private long time;
+
+    public LocationHistoryEntry() {
+    }
+
+    public LocationHistoryEntry(String courierId, double latitude, double longitude, long time) {
+        this.courierId = courierId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.time = time;
+    }
+
+    // Getters and Setters
+    public String getCourierId() {
+        return courierId;
+    }
+
+    public void setCourierId(String courierId) {
+        this.courierId = courierId;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+}
@@ -0,0 +1,57 @@
+package com.migros.couriertracking.dto;
+
+public class LocationResult {
+
+    public enum Status {
+        ACCEPTED,
+        REJECTED
+    }
+
+    private int index;
+    private String courierId;
+    private Status status;
+    private String message;
+
+    public LocationResult() {
+    }
+
+    public LocationResult(int index, String courierId, Status status, String message) {
+        this.index = index;
+        this.courierId = courierId;
+        this.status = status;
+        this.message = message;
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getCourierId() {
+        return courierId;
+    }
+
+    public void setCourierId(String courierId) {
+        this.courierId = courierId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
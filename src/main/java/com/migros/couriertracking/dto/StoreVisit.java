@@ -0,0 +1,63 @@
+package com.migros.couriertracking.dto;
+
+public class StoreVisit {
+
+    private Long storeId;
+    private String storeName;
+    private long time;
+    // Null while the courier is still in the store
+    private Long exitTime;
+    private Long dwellTime;
+
+    public StoreVisit() {
+    }
+
+    public StoreVisit(Long storeId, String storeName, long time, Long exitTime) {
+        this.storeId = storeId;
+        this.storeName = storeName;
+        this.time = time;
+        this.exitTime = exitTime;
+        this.dwellTime = exitTime != null ? exitTime - time : null;
+    }
+
+    // Getters and Setters
+    public Long getStoreId() {
+        return storeId;
+    }
+
+    public void setStoreId(Long storeId) {
+        this.storeId = storeId;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    public void setStoreName(String storeName) {
+        this.storeName = storeName;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public Long getExitTime() {
+        return exitTime;
+    }
+
+    public void setExitTime(Long exitTime) {
+        this.exitTime = exitTime;
+    }
+
+    public Long getDwellTime() {
+        return dwellTime;
+    }
+
+    public void setDwellTime(Long dwellTime) {
+        this.dwellTime = dwellTime;
+    }
+}
@@ -0,0 +1,64 @@
+package com.migros.couriertracking.dto;
+
+import java.util.List;
+
+public class TripSummaryResponse {
+
+    private String courierId;
+    private long from;
+    private long to;
+    private Double distance;
+    private List<StoreVisit> storeVisits;
+
+    public TripSummaryResponse() {
+    }
+
+    public TripSummaryResponse(String courierId, long from, long to, Double distance, List<StoreVisit> storeVisits) {
+        this.courierId = courierId;
+        this.from = from;
+        this.to = to;
+        this.distance = distance;
+        this.storeVisits = storeVisits;
+    }
+
+    // Getters and Setters
+    public String getCourierId() {
+        return courierId;
+    }
+
+    public void setCourierId(String courierId) {
+        this.courierId = courierId;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public void setFrom(long from) {
+        this.from = from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public void setTo(long to) {
+        this.to = to;
+    }
+
+    public Double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(Double distance) {
+        this.distance = distance;
+    }
+
+    public List<StoreVisit> getStoreVisits() {
+        return storeVisits;
+    }
+
+    public void setStoreVisits(List<StoreVisit> storeVisits) {
+        this.storeVisits = storeVisits;
+    }
+}
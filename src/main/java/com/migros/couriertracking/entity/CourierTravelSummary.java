@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
 public class CourierTravelSummary {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "courier_travel_summary_seq")
+    @SequenceGenerator(name = "courier_travel_summary_seq", sequenceName = "courier_travel_summary_seq",
+            allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Courier ID is required")
@@ -28,6 +30,14 @@ public class CourierTravelSummary {
     @Column(name = "last_longitude")
     private Double lastLongitude;
 
+    // Time of the newest fix included in the total, in epoch milliseconds
+    @Column(name = "last_fix_time")
+    private Long lastFixTime;
+
+    // Newest write-ahead log record included in the total
+    @Column(name = "last_record_id")
+    private Long lastRecordId;
+
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
@@ -85,6 +95,22 @@ public class CourierTravelSummary {
         this.lastLongitude = lastLongitude;
     }
 
+    public Long getLastFixTime() {
+        return lastFixTime;
+    }
+
+    public void setLastFixTime(Long lastFixTime) {
+        this.lastFixTime = lastFixTime;
+    }
+
+    public Long getLastRecordId() {
+        return lastRecordId;
+    }
+
+    public void setLastRecordId(Long lastRecordId) {
+        this.lastRecordId = lastRecordId;
+    }
+
     public LocalDateTime getLastUpdated() {
         return lastUpdated;
     }
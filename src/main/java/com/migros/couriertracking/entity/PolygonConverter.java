@@ -0,0 +1,43 @@
+package com.migros.couriertracking.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores a polygon given as {@code [latitude, longitude]} vertices in a single text
+ * column as {@code "lat lng,lat lng,..."}.
+ */
+@Converter
+public class PolygonConverter implements AttributeConverter<double[][], String> {
+
+    @Override
+    public String convertToDatabaseColumn(double[][] polygon) {
+        if (polygon == null) {
+            return null;
+        }
+
+        StringBuilder column = new StringBuilder();
+        for (double[] vertex : polygon) {
+            if (column.length() > 0) {
+                column.append(',');
+            }
+            column.append(vertex[0]).append(' ').append(vertex[1]);
+        }
+        return column.toString();
+    }
+
+    @Override
+    public double[][] convertToEntityAttribute(String column) {
+        if (column == null || column.isEmpty()) {
+            return null;
+        }
+
+        String[] vertices = column.split(",");
+        double[][] polygon = new double[vertices.length][];
+        for (int i = 0; i < vertices.length; i++) {
+            String[] coordinates = vertices[i].trim().split(" ");
+            polygon[i] = new double[] { Double.parseDouble(coordinates[0]), Double.parseDouble(coordinates[1]) };
+        }
+        return polygon;
+    }
+}
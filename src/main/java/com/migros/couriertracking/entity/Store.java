@@ -1,6 +1,7 @@
 package com.migros.couriertracking.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -29,6 +30,15 @@ public class Store {
     @Column(nullable = false)
     private Double longitude;
 
+    // Geofence radius in meters; null uses courier.tracking.store.radius
+    @Column(name = "radius")
+    private Double radius;
+
+    // Geofence as [latitude, longitude] vertices; takes precedence over the radius
+    @Convert(converter = PolygonConverter.class)
+    @Column(name = "polygon", length = 8192)
+    private double[][] polygon;
+
     public Store() {
     }
 
@@ -70,4 +80,20 @@ public class Store {
     public void setLongitude(Double longitude) {
         this.longitude = longitude;
     }
+
+    public Double getRadius() {
+        return radius;
+    }
+
+    public void setRadius(Double radius) {
+        this.radius = radius;
+    }
+
+    public double[][] getPolygon() {
+        return polygon;
+    }
+
+    public void setPolygon(double[][] polygon) {
+        this.polygon = polygon;
+    }
 }
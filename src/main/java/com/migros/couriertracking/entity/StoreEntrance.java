@@ -7,11 +7,14 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "store_entrances")
+@Table(name = "store_entrances",
+        indexes = @Index(name = "idx_store_entrances_courier_time", columnList = "courier_id, entrance_time"))
 public class StoreEntrance {
 
+    // Pooled sequence ids leave JDBC insert batching enabled, unlike IDENTITY
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "store_entrances_seq")
+    @SequenceGenerator(name = "store_entrances_seq", sequenceName = "store_entrances_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Courier ID is required")
@@ -26,6 +29,10 @@ public class StoreEntrance {
     @Column(name = "entrance_time", nullable = false)
     private LocalDateTime entranceTime;
 
+    // Set once the courier has left the store; null while the visit is open
+    @Column(name = "exit_time")
+    private LocalDateTime exitTime;
+
     public StoreEntrance() {
         this.entranceTime = LocalDateTime.now();
     }
@@ -68,4 +75,12 @@ public class StoreEntrance {
     public void setEntranceTime(LocalDateTime entranceTime) {
         this.entranceTime = entranceTime;
     }
+
+    public LocalDateTime getExitTime() {
+        return exitTime;
+    }
+
+    public void setExitTime(LocalDateTime exitTime) {
+        this.exitTime = exitTime;
+    }
 }
@@ -0,0 +1,25 @@
+package com.migros.couriertracking.filter;
+
+import java.util.List;
+
+/**
+ * Accepts a fix only if every filter accepts it, in order.
+ */
+public class CompositeLocationFilter implements LocationFilter {
+
+    private final LocationFilter[] filters;
+
+    public CompositeLocationFilter(List<LocationFilter> filters) {
+        this.filters = filters.toArray(new LocationFilter[0]);
+    }
+
+    @Override
+    public boolean accept(double distance, long elapsedMs) {
+        for (LocationFilter filter : filters) {
+            if (!filter.accept(distance, elapsedMs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.migros.couriertracking.filter;
+
+/**
+ * Strategy Pattern: Interface for filters that decide whether a fix moved the
+ * courier far and plausibly enough to count.
+ *
+ * Filters are stateless and get the distance already calculated from the last
+ * accepted fix, so they add no distance calculation of their own.
+ */
+public interface LocationFilter {
+
+    LocationFilter ACCEPT_ALL = (distance, elapsedMs) -> true;
+
+    /**
+     * @param distance  meters between the last accepted fix and this one
+     * @param elapsedMs milliseconds between the two fixes, always positive
+     * @return {@code true} if the fix should be added to the route
+     */
+    boolean accept(double distance, long elapsedMs);
+}
@@ -0,0 +1,24 @@
+package com.migros.couriertracking.filter;
+
+/**
+ * Strategy Pattern Implementation: drops fixes that moved less than a minimum
+ * distance from the last accepted fix.
+ *
+ * GPS fixes of a standing courier scatter by a few meters, and summing that
+ * scatter adds distance that was never travelled. Slow real movement is not lost:
+ * distance is always measured from the last accepted fix, so it is counted once it
+ * adds up to the threshold.
+ */
+public class MinimumDisplacementFilter implements LocationFilter {
+
+    private final double minDisplacementMeters;
+
+    public MinimumDisplacementFilter(double minDisplacementMeters) {
+        this.minDisplacementMeters = minDisplacementMeters;
+    }
+
+    @Override
+    public boolean accept(double distance, long elapsedMs) {
+        return distance >= minDisplacementMeters;
+    }
+}
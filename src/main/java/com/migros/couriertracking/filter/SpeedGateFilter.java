@@ -0,0 +1,23 @@
+package com.migros.couriertracking.filter;
+
+/**
+ * Strategy Pattern Implementation: drops fixes that would need the courier to move
+ * faster than a maximum speed since the last accepted fix.
+ *
+ * Catches multipath and cell-tower fallback fixes that jump hundreds of meters and
+ * back. As the time since the last accepted fix grows, so does the distance let
+ * through, so a courier that really moved is picked up again.
+ */
+public class SpeedGateFilter implements LocationFilter {
+
+    private final double maxSpeedMetersPerSecond;
+
+    public SpeedGateFilter(double maxSpeedMetersPerSecond) {
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+    }
+
+    @Override
+    public boolean accept(double distance, long elapsedMs) {
+        return distance * 1000 <= maxSpeedMetersPerSecond * elapsedMs;
+    }
+}
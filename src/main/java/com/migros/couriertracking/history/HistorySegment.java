@@ -0,0 +1,302 @@
+package com.migros.couriertracking.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import com.migros.couriertracking.dto.LocationHistoryEntry;
+
+/**
+ * One memory-mapped, append-only file of the location history.
+ *
+ * Layout: a 32 byte header (magic, end of data, window start, min and max fix time)
+ * followed by records. A courier record assigns the next index to a courier id; a
+ * fix record carries a courier index and the zigzag varint deltas of time, latitude
+ * and longitude (in 1e-7 degrees) from that courier's previous fix in the segment,
+ * so a typical fix takes around 8 bytes. The unwritten tail of the file is zero,
+ * which reads as the end marker.
+ *
+ * Only one thread appends at a time. Readers work on their own view of the buffer
+ * and only look at data before the published end, so they never see a partial
+ * record. The segment also keeps the ids of its couriers, so scans for one courier
+ * can skip it without decoding; for segments opened from disk they are collected
+ * by the first full read.
+ */
+final class HistorySegment {
+
+    static final int HEADER_SIZE = 32;
+
+    private static final int MAGIC = 0x43544831;
+    private static final int END_OFFSET = 4;
+    private static final int WINDOW_START_OFFSET = 8;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+
+    private static final byte END = 0;
+    private static final byte COURIER = 1;
+    private static final byte FIX = 2;
+
+    private static final int MAX_FIX_SIZE = 1 + 5 + 3 * 10;
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final long windowStart;
+    private final boolean writable;
+
+    private volatile int end;
+    private volatile long minTime;
+    private volatile long maxTime;
+    private volatile Set<String> courierIds;
+
+    // Writer state, dropped once the segment is sealed
+    private Map<String, Cursor> cursors = new HashMap<>();
+
+    private HistorySegment(Path path, MappedByteBuffer buffer, long windowStart, boolean writable,
+            int end, long minTime, long maxTime) {
+        this.path = path;
+        this.buffer = buffer;
+        this.windowStart = windowStart;
+        this.writable = writable;
+        this.end = end;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Creates a new segment file of the given size for appending.
+     */
+    static HistorySegment create(Path path, long windowStart, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(END_OFFSET, HEADER_SIZE);
+            buffer.putLong(WINDOW_START_OFFSET, windowStart);
+            buffer.putLong(MIN_TIME_OFFSET, Long.MAX_VALUE);
+            buffer.putLong(MAX_TIME_OFFSET, Long.MIN_VALUE);
+            buffer.position(HEADER_SIZE);
+            HistorySegment segment = new HistorySegment(path, buffer, windowStart, true, HEADER_SIZE,
+                    Long.MAX_VALUE, Long.MIN_VALUE);
+            segment.courierIds = ConcurrentHashMap.newKeySet();
+            return segment;
+        }
+    }
+
+    /**
+     * Opens an existing segment read-only.
+     */
+    static HistorySegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a location history segment: " + path);
+            }
+            int end = Math.min(buffer.getInt(END_OFFSET), buffer.capacity());
+            HistorySegment segment = new HistorySegment(path, buffer, buffer.getLong(WINDOW_START_OFFSET), false,
+                    end, buffer.getLong(MIN_TIME_OFFSET), buffer.getLong(MAX_TIME_OFFSET));
+            segment.cursors = null;
+            return segment;
+        }
+    }
+
+    long getWindowStart() {
+        return windowStart;
+    }
+
+    int getSize() {
+        return end;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    boolean overlaps(long from, long to) {
+        return minTime <= to && maxTime >= from;
+    }
+
+    /**
+     * @return {@code false} if the segment is known to hold no fix of the courier
+     */
+    boolean mayContain(String courierId) {
+        Set<String> ids = courierIds;
+        return ids == null || ids.contains(courierId);
+    }
+
+    /**
+     * Appends a fix.
+     *
+     * @return {@code false} if the segment has no room left for it
+     */
+    boolean append(String courierId, double latitude, double longitude, long time) {
+        Cursor cursor = cursors.get(courierId);
+        if (cursor == null) {
+            byte[] id = courierId.getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < 1 + 5 + id.length + MAX_FIX_SIZE) {
+                return false;
+            }
+            buffer.put(COURIER);
+            putVarLong(id.length);
+            buffer.put(id);
+            cursor = new Cursor(cursors.size());
+            cursors.put(courierId, cursor);
+            courierIds.add(courierId);
+        } else if (buffer.remaining() < MAX_FIX_SIZE) {
+            return false;
+        }
+
+        int latitudeE7 = (int) Math.round(latitude * COORDINATE_SCALE);
+        int longitudeE7 = (int) Math.round(longitude * COORDINATE_SCALE);
+
+        buffer.put(FIX);
+        putVarLong(cursor.index);
+        putVarLong(zigzag(time - cursor.time));
+        putVarLong(zigzag((long) latitudeE7 - cursor.latitudeE7));
+        putVarLong(zigzag((long) longitudeE7 - cursor.longitudeE7));
+        cursor.time = time;
+        cursor.latitudeE7 = latitudeE7;
+        cursor.longitudeE7 = longitudeE7;
+
+        if (time < minTime) {
+            minTime = time;
+            buffer.putLong(MIN_TIME_OFFSET, time);
+        }
+        if (time > maxTime) {
+            maxTime = time;
+            buffer.putLong(MAX_TIME_OFFSET, time);
+        }
+        int position = buffer.position();
+        buffer.putInt(END_OFFSET, position);
+        end = position;
+        return true;
+    }
+
+    /**
+     * Flushes written data to the file.
+     */
+    void force() {
+        if (writable) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Stops appending and releases the writer state.
+     */
+    void seal() {
+        force();
+        cursors = null;
+    }
+
+    /**
+     * Decodes the fixes with a time in {@code [from, to]}, in log order.
+     *
+     * @param courierId only decode fixes of this courier, or {@code null} for all
+     */
+    void read(String courierId, long from, long to, Consumer<LocationHistoryEntry> consumer) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(end).position(HEADER_SIZE);
+
+        List<String> couriers = new ArrayList<>();
+        long[] times = new long[16];
+        long[] latitudes = new long[16];
+        long[] longitudes = new long[16];
+        int wanted = -1;
+
+        while (view.hasRemaining()) {
+            byte type = view.get();
+            if (type == COURIER) {
+                byte[] id = new byte[(int) getVarLong(view)];
+                view.get(id);
+                String decoded = new String(id, StandardCharsets.UTF_8);
+                if (decoded.equals(courierId)) {
+                    wanted = couriers.size();
+                }
+                couriers.add(decoded);
+                if (couriers.size() > times.length) {
+                    times = Arrays.copyOf(times, times.length * 2);
+                    latitudes = Arrays.copyOf(latitudes, latitudes.length * 2);
+                    longitudes = Arrays.copyOf(longitudes, longitudes.length * 2);
+                }
+            } else if (type == FIX) {
+                int index = (int) getVarLong(view);
+                long time = times[index] + unzigzag(getVarLong(view));
+                long latitude = latitudes[index] + unzigzag(getVarLong(view));
+                long longitude = longitudes[index] + unzigzag(getVarLong(view));
+                times[index] = time;
+                latitudes[index] = latitude;
+                longitudes[index] = longitude;
+
+                if ((courierId == null || index == wanted) && time >= from && time <= to) {
+                    consumer.accept(new LocationHistoryEntry(couriers.get(index),
+                            latitude / COORDINATE_SCALE, longitude / COORDINATE_SCALE, time));
+                }
+            } else if (type == END) {
+                break;
+            } else {
+                throw new IllegalStateException(
+                        "Corrupt location history segment " + path + " at " + (view.position() - 1));
+            }
+        }
+
+        if (courierIds == null) {
+            courierIds = Set.copyOf(couriers);
+        }
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer view) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = view.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Cursor {
+        final int index;
+        long time;
+        int latitudeE7;
+        int longitudeE7;
+
+        Cursor(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.migros.couriertracking.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.migros.couriertracking.dto.LocationHistoryEntry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Append-only history of every fix added to a courier's route.
+ *
+ * Fixes are written to memory-mapped {@link HistorySegment} files in
+ * {@code courier.tracking.history.dir}, so appending is a few buffer writes
+ * without any JPA or system call on the ingestion path. Couriers are spread over
+ * as many stripes as there are ingestion shards, with the same hash, and each
+ * stripe writes its own segment under its own lock, so shards do not wait for
+ * each other. A stripe starts a new segment for each
+ * {@code courier.tracking.history.window} of fix time and whenever its current one
+ * is full; late fixes go to the current segment. Each segment knows
+ * the time range and the couriers of its fixes, so range scans only decode the
+ * segments that can match. Written data is forced to disk every
+ * {@code courier.tracking.history.flush-interval} ms, and segments whose newest fix
+ * is older than {@code courier.tracking.history.retention} ms are deleted.
+ */
+@Component
+public class LocationHistoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationHistoryStore.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final List<HistorySegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final Counter appendedFixes;
+
+    @Value("${courier.tracking.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${courier.tracking.history.dir:data/history}")
+    private String directory;
+
+    @Value("${courier.tracking.history.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${courier.tracking.history.window:3600000}")
+    private long windowMs;
+
+    @Value("${courier.tracking.history.retention:604800000}")
+    private long retentionMs;
+
+    @Value("${courier.tracking.ingestion.shards:0}")
+    private int stripeCount;
+
+    private Path path;
+    private Stripe[] stripes;
+
+    public LocationHistoryStore(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.appendedFixes = Counter.builder("courier.history.appended")
+                .description("Fixes appended to the location history")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the existing segments read-only; appending always starts a new segment.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            logger.info("Location history is disabled");
+            return;
+        }
+
+        path = Paths.get(directory);
+        Files.createDirectories(path);
+
+        stripes = new Stripe[stripeCount > 0 ? stripeCount : Runtime.getRuntime().availableProcessors()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::getFileName));
+        for (Path file : files) {
+            try {
+                segments.add(HistorySegment.open(file));
+                nextSequence.accumulateAndGet(sequenceOf(file) + 1, Math::max);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Skipping unreadable location history segment " + file, e);
+            }
+        }
+
+        Gauge.builder("courier.history.segments", segments, List::size)
+                .description("Location history segment files")
+                .register(meterRegistry);
+
+        logger.info("Opened location history in {} with {} segments", path.toAbsolutePath(), segments.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (stripes == null) {
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                if (stripe.current != null) {
+                    stripe.current.seal();
+                    stripe.current = null;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    public void append(String courierId, double latitude, double longitude, long time) {
+        if (!enabled) {
+            return;
+        }
+
+        Stripe stripe = stripeFor(courierId);
+        stripe.lock.lock();
+        try {
+            HistorySegment current = stripe.current;
+            if (current == null || time >= current.getWindowStart() + windowMs) {
+                current = roll(stripe, time);
+            }
+            if (!current.append(courierId, latitude, longitude, time)) {
+                current = roll(stripe, time);
+                if (!current.append(courierId, latitude, longitude, time)) {
+                    throw new IllegalStateException("Fix does not fit into an empty location history segment");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error appending to location history", e);
+        } finally {
+            stripe.lock.unlock();
+        }
+        appendedFixes.increment();
+    }
+
+    /**
+     * Hands every fix with a time in {@code [from, to]} to the consumer, segment by
+     * segment in the order they were started.
+     */
+    public void replay(long from, long to, Consumer<LocationHistoryEntry> consumer) {
+        for (HistorySegment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                segment.read(null, from, to, consumer);
+            }
+        }
+    }
+
+    /**
+     * @return the fixes of the courier with a time in {@code [from, to]}, in time order
+     */
+    public List<LocationHistoryEntry> scan(String courierId, long from, long to) {
+        List<LocationHistoryEntry> entries = new ArrayList<>();
+        for (HistorySegment segment : segments) {
+            if (segment.overlaps(from, to) && segment.mayContain(courierId)) {
+                segment.read(courierId, from, to, entries::add);
+            }
+        }
+        // Late fixes are logged after newer ones
+        entries.sort(Comparator.comparingLong(LocationHistoryEntry::getTime));
+        return entries;
+    }
+
+    @Scheduled(fixedDelayString = "${courier.tracking.history.flush-interval:1000}")
+    public void force() {
+        if (stripes == null) {
+            return;
+        }
+        for (Stripe stripe : stripes) {
+            HistorySegment segment = stripe.current;
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${courier.tracking.history.retention-interval:60000}")
+    public void retire() {
+        retire(System.currentTimeMillis() - retentionMs);
+    }
+
+    /**
+     * Deletes the segments whose fixes are all older than the given time. Readers
+     * still holding a deleted segment keep their mapping until they drop it.
+     */
+    void retire(long before) {
+        List<HistorySegment> deleted = new ArrayList<>();
+        for (HistorySegment segment : segments) {
+            if (segment.getMaxTime() < before && !isCurrent(segment)) {
+                deleted.add(segment);
+            }
+        }
+        segments.removeAll(deleted);
+
+        for (HistorySegment segment : deleted) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                logger.warn("Could not delete location history segment {}: {}", segment.getPath(), e.getMessage());
+            }
+        }
+        if (!deleted.isEmpty()) {
+            logger.debug("Retired {} location history segments", deleted.size());
+        }
+    }
+
+    private HistorySegment roll(Stripe stripe, long time) throws IOException {
+        if (stripe.current != null) {
+            stripe.current.seal();
+        }
+
+        long windowStart = Math.floorDiv(time, windowMs) * windowMs;
+        Path file = path.resolve(String.format("%012d%s", nextSequence.getAndIncrement(), SEGMENT_SUFFIX));
+        HistorySegment segment = HistorySegment.create(file, windowStart, segmentSize);
+        // Current before listed, so retire never sees it as a sealed empty segment
+        stripe.current = segment;
+        segments.add(segment);
+
+        logger.debug("Started location history segment {}", file);
+        return segment;
+    }
+
+    private boolean isCurrent(HistorySegment segment) {
+        for (Stripe stripe : stripes) {
+            if (stripe.current == segment) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Stripe stripeFor(String courierId) {
+        // Same spread as the ingestion shards, so each shard thread keeps to one stripe
+        int hash = courierId.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile HistorySegment current;
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
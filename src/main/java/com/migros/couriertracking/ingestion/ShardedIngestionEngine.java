@@ -0,0 +1,395 @@
+package com.migros.couriertracking.ingestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationResult;
+import com.migros.couriertracking.service.InMemoryCourierTrackingService;
+import com.migros.couriertracking.wal.LoggedFix;
+import com.migros.couriertracking.wal.WriteAheadLog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Routes location fixes onto a fixed number of single-threaded shards.
+ *
+ * A courier is always hashed onto the same shard, so all fixes of one courier are
+ * applied by a single worker thread in submission order and never interleave. Each
+ * shard holds at most {@code courier.tracking.ingestion.queue-capacity} fixes; when
+ * it is full, submissions wait up to {@code courier.tracking.ingestion.offer-timeout}
+ * and are then rejected so callers can push back on the client. A batch shares one
+ * such wait, and once a shard rejects a fix the rest of the batch for that shard is
+ * rejected without waiting.
+ *
+ * A fix is queued only after it has been appended to the {@link WriteAheadLog}, and
+ * acknowledged only once the log has committed it. On startup the fixes left in the
+ * log are replayed before the shards start, and every
+ * {@code courier.tracking.wal.checkpoint-interval} ms a checkpoint writes all pending
+ * distance to the database so the log segments it covers can be deleted.
+ */
+@Component
+public class ShardedIngestionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedIngestionEngine.class);
+
+    private static final QueuedFix POISON_PILL = new QueuedFix(null, 0);
+
+    private static final long QUEUE_FULL = -1;
+    private static final long LOG_FAILED = -2;
+
+    /**
+     * What became of a submitted fix.
+     */
+    public enum SubmitOutcome {
+        /** Queued and committed to the write-ahead log. */
+        ACCEPTED,
+        /** Not applied, the shard queue stayed full. */
+        QUEUE_FULL,
+        /** Not applied, the fix could not be appended to the write-ahead log. */
+        LOG_FAILED,
+        /**
+         * Queued, so it will be applied, but not committed to the write-ahead log in
+         * time and may be lost in a crash. A resent copy with the same fix time is
+         * ignored as a duplicate or late fix.
+         */
+        COMMIT_TIMED_OUT
+    }
+
+    private final InMemoryCourierTrackingService courierTrackingService;
+    private final WriteAheadLog writeAheadLog;
+    private final MeterRegistry meterRegistry;
+    private final Counter rejectedFixes;
+
+    @Value("${courier.tracking.ingestion.shards:0}")
+    private int shardCount;
+
+    @Value("${courier.tracking.ingestion.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${courier.tracking.ingestion.offer-timeout:100}")
+    private long offerTimeoutMs;
+
+    @Value("${courier.tracking.wal.checkpoint-timeout:30000}")
+    private long checkpointTimeoutMs;
+
+    private Shard[] shards;
+
+    public ShardedIngestionEngine(InMemoryCourierTrackingService courierTrackingService,
+            WriteAheadLog writeAheadLog,
+            MeterRegistry meterRegistry) {
+        this.courierTrackingService = courierTrackingService;
+        this.writeAheadLog = writeAheadLog;
+        this.meterRegistry = meterRegistry;
+        this.rejectedFixes = Counter.builder("courier.ingestion.rejected")
+                .description("Fixes rejected because their shard queue stayed full")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        replayWriteAheadLog();
+
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+            shards[i].thread.start();
+        }
+
+        Gauge.builder("courier.ingestion.queued", this, ShardedIngestionEngine::getQueuedCount)
+                .description("Fixes waiting in the shard queues")
+                .register(meterRegistry);
+
+        logger.info("Started ingestion engine with {} shards and queue capacity {}", count, queueCapacity);
+    }
+
+    /**
+     * Rebuilds the distance of the fixes logged before the last shutdown or crash,
+     * before any new fix can be applied.
+     */
+    private void replayWriteAheadLog() {
+        List<LoggedFix> logged = new ArrayList<>();
+        writeAheadLog.replay(logged::add);
+        if (logged.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        int replayed = courierTrackingService.replayLocations(logged);
+        logger.info("Replayed {} of {} fixes from the write-ahead log in {} ms",
+                replayed, logged.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Drains the queued fixes and stops the shard workers.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.queue.put(POISON_PILL);
+        }
+        for (Shard shard : shards) {
+            shard.thread.join();
+        }
+
+        logger.info("Stopped ingestion engine");
+    }
+
+    /**
+     * Queues a single fix on the shard owning its courier and waits for it to be
+     * committed to the write-ahead log.
+     */
+    public SubmitOutcome submit(CourierLocationRequest request) {
+        long position = enqueue(shardFor(request.getCourierId()), request, deadline());
+        if (position == QUEUE_FULL) {
+            return SubmitOutcome.QUEUE_FULL;
+        }
+        if (position == LOG_FAILED) {
+            return SubmitOutcome.LOG_FAILED;
+        }
+        return writeAheadLog.awaitCommit(position) ? SubmitOutcome.ACCEPTED : SubmitOutcome.COMMIT_TIMED_OUT;
+    }
+
+    /**
+     * Reserves room on the shard, then appends the fix to the write-ahead log and
+     * queues it while still holding the log's append lock. A fix is therefore applied
+     * only if it is in the log, and a checkpoint barrier queued after a segment is
+     * sealed comes after every fix in that segment.
+     *
+     * @param deadline {@link System#nanoTime()} until which to wait for room
+     * @return the log position of the fix, {@link #QUEUE_FULL} or {@link #LOG_FAILED}
+     */
+    private long enqueue(Shard shard, CourierLocationRequest request, long deadline) {
+        boolean reserved;
+        try {
+            reserved = shard.slots.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reserved = false;
+        }
+
+        if (!reserved) {
+            rejectedFixes.increment();
+            return QUEUE_FULL;
+        }
+
+        try {
+            return writeAheadLog.append(request, recordId -> shard.queue.add(new QueuedFix(request, recordId)));
+        } catch (RuntimeException e) {
+            shard.slots.release();
+            logger.error("Error logging location for courier: " + request.getCourierId(), e);
+            return LOG_FAILED;
+        }
+    }
+
+    /**
+     * Queues a batch of already validated fixes. Fixes are submitted in time order per
+     * courier regardless of their position in the batch. Waiting for room is bounded
+     * by one offer timeout for the whole batch, and after a shard rejects a fix its
+     * remaining fixes are rejected at once, so no later fix of a courier overtakes a
+     * rejected one. The whole batch waits for a single write-ahead log commit. Results
+     * are returned in request order.
+     */
+    public List<LocationResult> submitAll(List<CourierLocationRequest> requests) {
+        Integer[] order = new Integer[requests.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator
+                .comparing((Integer i) -> requests.get(i).getCourierId())
+                .thenComparing(i -> requests.get(i).getTime()));
+
+        LocationResult[] results = new LocationResult[order.length];
+        long deadline = deadline();
+        Set<Shard> fullShards = new HashSet<>();
+        long lastPosition = 0;
+        for (int index : order) {
+            CourierLocationRequest request = requests.get(index);
+            Shard shard = shardFor(request.getCourierId());
+            long position;
+            if (fullShards.contains(shard)) {
+                rejectedFixes.increment();
+                position = QUEUE_FULL;
+            } else {
+                position = enqueue(shard, request, deadline);
+            }
+            if (position == QUEUE_FULL) {
+                fullShards.add(shard);
+                results[index] = new LocationResult(index, request.getCourierId(),
+                        LocationResult.Status.REJECTED, "Ingestion queue is full");
+            } else if (position == LOG_FAILED) {
+                results[index] = new LocationResult(index, request.getCourierId(),
+                        LocationResult.Status.REJECTED, "Write-ahead log append failed");
+            } else {
+                lastPosition = Math.max(lastPosition, position);
+                results[index] = new LocationResult(index, request.getCourierId(),
+                        LocationResult.Status.ACCEPTED, null);
+            }
+        }
+
+        // The fixes are already queued and will be applied; only their durability is unknown
+        if (!writeAheadLog.awaitCommit(lastPosition)) {
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].getStatus() == LocationResult.Status.ACCEPTED) {
+                    results[i] = new LocationResult(i, results[i].getCourierId(), LocationResult.Status.REJECTED,
+                            "Write-ahead log commit timed out, the fix may already be applied");
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Makes the sealed write-ahead log segments redundant and deletes them: waits
+     * until every shard has applied the fixes queued before the segments were sealed,
+     * then writes all pending distance. If either does not succeed, the segments are
+     * kept for the next checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${courier.tracking.wal.checkpoint-interval:60000}")
+    public void checkpoint() {
+        long sealed = writeAheadLog.seal();
+        if (sealed < 0) {
+            return;
+        }
+
+        try {
+            if (!awaitShards()) {
+                logger.warn("Write-ahead log checkpoint skipped, shards did not drain within {} ms",
+                        checkpointTimeoutMs);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (courierTrackingService.flushAll()) {
+            writeAheadLog.truncate(sealed);
+        } else {
+            logger.warn("Write-ahead log checkpoint skipped, pending distance could not be written");
+        }
+    }
+
+    private boolean awaitShards() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkpointTimeoutMs);
+        CheckpointBarrier barrier = new CheckpointBarrier(shards.length);
+        for (Shard shard : shards) {
+            shard.queue.add(barrier);
+        }
+        return barrier.latch.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.queue.size();
+        }
+        return queued;
+    }
+
+    private long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+    }
+
+    private Shard shardFor(String courierId) {
+        int hash = courierId.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * The queue itself is unbounded so a fix can always be queued once it is logged,
+     * and barriers and the poison pill never wait; fixes are bounded by the slots
+     * reserved before logging.
+     */
+    private final class Shard implements Runnable {
+
+        final BlockingQueue<QueuedFix> queue = new LinkedBlockingQueue<>();
+        final Semaphore slots = new Semaphore(queueCapacity);
+        final Thread thread;
+
+        Shard(int index) {
+            this.thread = new Thread(this, "courier-ingestion-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                QueuedFix fix;
+                try {
+                    fix = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (fix == POISON_PILL) {
+                    return;
+                }
+                if (fix instanceof CheckpointBarrier barrier) {
+                    barrier.latch.countDown();
+                    continue;
+                }
+                slots.release();
+
+                try {
+                    courierTrackingService.logCourierLocation(fix.request, fix.recordId);
+                } catch (Exception e) {
+                    logger.error("Error processing location for courier: " + fix.request.getCourierId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A logged fix waiting for its shard, with its write-ahead log record id.
+     */
+    private static class QueuedFix {
+
+        final CourierLocationRequest request;
+        final long recordId;
+
+        QueuedFix(CourierLocationRequest request, long recordId) {
+            this.request = request;
+            this.recordId = recordId;
+        }
+    }
+
+    /**
+     * Queued on every shard by a checkpoint; each shard counts down when it reaches it.
+     */
+    private static final class CheckpointBarrier extends QueuedFix {
+
+        final CountDownLatch latch;
+
+        CheckpointBarrier(int shards) {
+            super(null, 0);
+            this.latch = new CountDownLatch(shards);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 public class LoggingStoreEntranceObserver implements StoreEntranceObserver {
 
@@ -25,4 +27,21 @@ public class LoggingStoreEntranceObserver implements StoreEntranceObserver {
                 storeName,
                 storeEntrance.getEntranceTime());
     }
+
+    @Override
+    public void onStoreExit(StoreEntrance storeEntrance) {
+        if (storeEntrance == null) {
+            logger.warn("Received null store exit event");
+            return;
+        }
+
+        String storeName = storeEntrance.getStore() != null ? storeEntrance.getStore().getName() : "Unknown Store";
+        Duration dwellTime = Duration.between(storeEntrance.getEntranceTime(), storeEntrance.getExitTime());
+
+        logger.info("Store exit recorded: Courier '{}' left store '{}' at {} after {} s",
+                storeEntrance.getCourierId(),
+                storeName,
+                storeEntrance.getExitTime(),
+                dwellTime.toSeconds());
+    }
 }
@@ -5,4 +5,11 @@ import com.migros.couriertracking.entity.StoreEntrance;
 public interface StoreEntranceObserver {
 
     void onStoreEntrance(StoreEntrance storeEntrance);
+
+    /**
+     * Called once the courier has left the store, with both the entrance and exit
+     * time of the visit set.
+     */
+    default void onStoreExit(StoreEntrance storeEntrance) {
+    }
 }
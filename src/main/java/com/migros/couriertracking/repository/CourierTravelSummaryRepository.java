@@ -4,12 +4,17 @@ import com.migros.couriertracking.entity.CourierTravelSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CourierTravelSummaryRepository extends JpaRepository<CourierTravelSummary, Long> {
+public interface CourierTravelSummaryRepository extends JpaRepository<CourierTravelSummary, Long>,
+        CourierTravelSummaryRepositoryCustom {
 
     Optional<CourierTravelSummary> findByCourierId(String courierId);
 
+    List<CourierTravelSummary> findByCourierIdIn(Collection<String> courierIds);
+
     boolean existsByCourierId(String courierId);
 }
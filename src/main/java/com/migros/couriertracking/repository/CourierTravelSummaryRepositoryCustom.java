@@ -0,0 +1,27 @@
+package com.migros.couriertracking.repository;
+
+import java.util.Collection;
+
+public interface CourierTravelSummaryRepositoryCustom {
+
+    /**
+     * Distance to add to a courier's total, with the courier's latest fix if known and
+     * the newest write-ahead log record the distance includes.
+     */
+    record DistanceIncrement(String courierId, double distance, Long lastFixTime, Double lastLatitude,
+            Double lastLongitude, long lastRecordId) {
+    }
+
+    /**
+     * Adds the distance to the courier's total in the database, creating the summary
+     * if it does not exist yet.
+     */
+    void addDistance(DistanceIncrement increment);
+
+    /**
+     * Adds each distance to its courier's total with a single JDBC batch. The totals
+     * are incremented by the database, so concurrent writers for the same courier
+     * never lose an update and nothing is read first.
+     */
+    void addDistances(Collection<DistanceIncrement> increments);
+}
@@ -0,0 +1,106 @@
+package com.migros.couriertracking.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Native batch writes for {@link CourierTravelSummaryRepository}.
+ *
+ * The statement is a standard SQL {@code MERGE} keyed by the unique
+ * {@code courier_id} that adds to {@code total_distance} in place, so a distance is
+ * written in one statement whether or not its row exists, and new rows take their
+ * id from the same pooled sequence as the entity. The latest fix only replaces the
+ * stored one if it is not older, so {@code last_fix_time} never moves backwards, and
+ * {@code last_record_id} only ever grows.
+ * Two writers inserting the same new courier at once make one of them fail on the
+ * unique key rather than lose an update. Runs on the connection of the surrounding
+ * JPA transaction.
+ */
+class CourierTravelSummaryRepositoryImpl implements CourierTravelSummaryRepositoryCustom {
+
+    private static final String NEWER_FIX =
+            "v.last_fix_time IS NOT NULL AND (s.last_fix_time IS NULL OR v.last_fix_time >= s.last_fix_time)";
+
+    private static final String ADD_DISTANCE_SQL = """
+            MERGE INTO courier_travel_summary s
+            USING (VALUES (CAST(? AS VARCHAR(255)), CAST(? AS DOUBLE PRECISION), CAST(? AS BIGINT),
+                    CAST(? AS DOUBLE PRECISION), CAST(? AS DOUBLE PRECISION), CAST(? AS BIGINT),
+                    CAST(? AS TIMESTAMP)))
+                AS v (courier_id, distance, last_fix_time, last_latitude, last_longitude, last_record_id,
+                    updated_at)
+            ON s.courier_id = v.courier_id
+            WHEN MATCHED THEN UPDATE SET
+                total_distance = s.total_distance + v.distance,
+                last_latitude = CASE WHEN %1$s THEN v.last_latitude ELSE s.last_latitude END,
+                last_longitude = CASE WHEN %1$s THEN v.last_longitude ELSE s.last_longitude END,
+                last_fix_time = CASE WHEN %1$s THEN v.last_fix_time ELSE s.last_fix_time END,
+                last_record_id = CASE WHEN s.last_record_id IS NULL OR v.last_record_id > s.last_record_id
+                    THEN v.last_record_id ELSE s.last_record_id END,
+                last_updated = v.updated_at
+            WHEN NOT MATCHED THEN INSERT
+                (id, courier_id, total_distance, last_fix_time, last_latitude, last_longitude, last_record_id,
+                    last_updated, created_at)
+                VALUES (NEXT VALUE FOR courier_travel_summary_seq, v.courier_id, v.distance, v.last_fix_time,
+                    v.last_latitude, v.last_longitude, v.last_record_id, v.updated_at, v.updated_at)
+            """.formatted(NEWER_FIX);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    CourierTravelSummaryRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void addDistance(DistanceIncrement increment) {
+        addDistances(List.of(increment));
+    }
+
+    @Override
+    public void addDistances(Collection<DistanceIncrement> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        List<DistanceIncrement> rows = new ArrayList<>(increments);
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(ADD_DISTANCE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                DistanceIncrement increment = rows.get(i);
+                statement.setString(1, increment.courierId());
+                statement.setDouble(2, increment.distance());
+                if (increment.lastFixTime() != null) {
+                    statement.setLong(3, increment.lastFixTime());
+                } else {
+                    statement.setNull(3, Types.BIGINT);
+                }
+                setNullableDouble(statement, 4, increment.lastLatitude());
+                setNullableDouble(statement, 5, increment.lastLongitude());
+                statement.setLong(6, increment.lastRecordId());
+                statement.setTimestamp(7, updatedAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    private static void setNullableDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+        if (value != null) {
+            statement.setDouble(index, value);
+        } else {
+            statement.setNull(index, Types.DOUBLE);
+        }
+    }
+}
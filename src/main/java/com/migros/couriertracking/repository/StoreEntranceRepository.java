@@ -11,7 +11,8 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface StoreEntranceRepository extends JpaRepository<StoreEntrance, Long> {
+public interface StoreEntranceRepository extends JpaRepository<StoreEntrance, Long>,
+        StoreEntranceRepositoryCustom {
 
     @Query("SELECT se FROM StoreEntrance se WHERE se.courierId = :courierId AND se.store.id = :storeId AND se.entranceTime >= :startTime ORDER BY se.entranceTime DESC")
     Optional<StoreEntrance> findLastEntranceInPeriod(
@@ -21,4 +22,12 @@ public interface StoreEntranceRepository extends JpaRepository<StoreEntrance, Lo
 
     @Query("SELECT se FROM StoreEntrance se WHERE se.courierId = :courierId ORDER BY se.entranceTime DESC")
     List<StoreEntrance> findByCourierIdOrderByEntranceTimeDesc(@Param("courierId") String courierId);
+
+    @Query("SELECT se FROM StoreEntrance se JOIN FETCH se.store WHERE se.courierId = :courierId AND se.entranceTime BETWEEN :from AND :to ORDER BY se.entranceTime")
+    List<StoreEntrance> findByCourierIdInPeriod(
+            @Param("courierId") String courierId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    boolean existsByStoreId(Long storeId);
 }
@@ -0,0 +1,17 @@
+package com.migros.couriertracking.repository;
+
+import java.util.Collection;
+
+import com.migros.couriertracking.entity.StoreEntrance;
+
+public interface StoreEntranceRepositoryCustom {
+
+    /**
+     * Sets the exit time of each visit with a single JDBC batch. A visit is matched by
+     * courier, store and entrance time; entrances still pending in the persistence
+     * context must be flushed first.
+     *
+     * @return the number of rows updated per exit
+     */
+    int[] recordExits(Collection<StoreEntrance> exits);
+}
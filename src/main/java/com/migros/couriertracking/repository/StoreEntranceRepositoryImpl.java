@@ -0,0 +1,55 @@
+package com.migros.couriertracking.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.migros.couriertracking.entity.StoreEntrance;
+
+/**
+ * Native batch writes for {@link StoreEntranceRepository}. Runs on the connection
+ * of the surrounding JPA transaction.
+ */
+class StoreEntranceRepositoryImpl implements StoreEntranceRepositoryCustom {
+
+    private static final String RECORD_EXIT_SQL = """
+            UPDATE store_entrances SET exit_time = ?
+            WHERE courier_id = ? AND store_id = ? AND entrance_time = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    StoreEntranceRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int[] recordExits(Collection<StoreEntrance> exits) {
+        if (exits.isEmpty()) {
+            return new int[0];
+        }
+
+        List<StoreEntrance> rows = new ArrayList<>(exits);
+        return jdbcTemplate.batchUpdate(RECORD_EXIT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                StoreEntrance exit = rows.get(i);
+                statement.setTimestamp(1, Timestamp.valueOf(exit.getExitTime()));
+                statement.setString(2, exit.getCourierId());
+                statement.setLong(3, exit.getStore().getId());
+                statement.setTimestamp(4, Timestamp.valueOf(exit.getEntranceTime()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package com.migros.couriertracking.rollup;
+
+/**
+ * Per-minute and per-hour travelled distance of a single courier.
+ *
+ * Minute buckets are kept for the most recent part of the courier's timeline and
+ * dropped a whole hour at a time, so everything before the minute horizon is
+ * covered by hour buckets alone and a range query never counts a fix twice.
+ * Written by the ingestion shard that owns the courier and read by queries, so
+ * access goes through the monitor.
+ */
+final class CourierRollup {
+
+    static final long MINUTE_MS = 60_000L;
+    static final long HOUR_MS = 3_600_000L;
+
+    private final RollupSeries minutes = new RollupSeries(MINUTE_MS);
+    private final RollupSeries hours = new RollupSeries(HOUR_MS);
+
+    // Minute buckets before this hour-aligned time are dropped
+    private long minuteHorizon = Long.MIN_VALUE;
+    private long hourHorizon = Long.MIN_VALUE;
+    private long lastUpdatedAt;
+
+    synchronized void add(long time, double distance, long minuteRetentionMs, long hourRetentionMs, long now) {
+        lastUpdatedAt = now;
+        if (time < hourHorizon) {
+            return;
+        }
+        hours.add(time, distance);
+        if (time >= minuteHorizon) {
+            minutes.add(time, distance);
+        }
+
+        long newest = minutes.newestBucketStart();
+        long horizon = hours.bucketStart(newest - minuteRetentionMs);
+        if (horizon > minuteHorizon) {
+            minuteHorizon = horizon;
+            minutes.pruneBefore(horizon);
+        }
+        horizon = hours.bucketStart(hours.newestBucketStart() - hourRetentionMs);
+        if (horizon > hourHorizon) {
+            hourHorizon = horizon;
+            hours.pruneBefore(horizon);
+        }
+    }
+
+    /**
+     * Sums the buckets that start in {@code [from, to]} once {@code from} is rounded
+     * down to its bucket: minutes after the minute horizon and hours before it.
+     */
+    synchronized double distance(long from, long to) {
+        double distance = 0;
+        long minuteFrom = minutes.bucketStart(from);
+        if (minuteFrom < minuteHorizon) {
+            distance += hours.sum(hours.bucketStart(from), Math.min(to, minuteHorizon - 1));
+            minuteFrom = minuteHorizon;
+        }
+        if (minuteFrom <= to) {
+            distance += minutes.sum(minuteFrom, to);
+        }
+        return distance;
+    }
+
+    synchronized long getLastUpdatedAt() {
+        return lastUpdatedAt;
+    }
+}
@@ -0,0 +1,79 @@
+package com.migros.couriertracking.rollup;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Travelled distance per courier in minute and hour buckets, maintained as fixes
+ * are applied so that the distance over a time range is a sum over its buckets
+ * instead of a scan of the raw fixes.
+ *
+ * Each fix's distance is booked in the buckets of the fix time. Minute buckets
+ * cover the last {@code courier.tracking.rollup.minute-retention} ms of a courier's
+ * timeline and hour buckets the last {@code courier.tracking.rollup.hour-retention}
+ * ms; couriers without fixes for the hour retention are dropped. Like the courier
+ * states, the rollups are held in memory only.
+ */
+@Component
+public class DistanceRollupStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceRollupStore.class);
+
+    private final Map<String, CourierRollup> rollups = new ConcurrentHashMap<>();
+
+    @Value("${courier.tracking.rollup.minute-retention:21600000}")
+    private long minuteRetentionMs;
+
+    @Value("${courier.tracking.rollup.hour-retention:604800000}")
+    private long hourRetentionMs;
+
+    public DistanceRollupStore(MeterRegistry meterRegistry) {
+        Gauge.builder("courier.rollup.couriers", rollups, Map::size)
+                .description("Couriers with distance rollups held in memory")
+                .register(meterRegistry);
+    }
+
+    public void add(String courierId, long time, double distance) {
+        add(courierId, time, distance, System.currentTimeMillis());
+    }
+
+    void add(String courierId, long time, double distance, long now) {
+        rollups.computeIfAbsent(courierId, id -> new CourierRollup())
+                .add(time, distance, minuteRetentionMs, hourRetentionMs, now);
+    }
+
+    /**
+     * Returns the distance travelled by the courier in {@code [from, to]}, with
+     * {@code from} rounded down to the start of its minute, or of its hour once it
+     * is older than the minute retention.
+     */
+    public double getDistance(String courierId, long from, long to) {
+        CourierRollup rollup = rollups.get(courierId);
+        return rollup != null ? rollup.distance(from, to) : 0.0;
+    }
+
+    @Scheduled(fixedDelayString = "${courier.tracking.rollup.cleanup-interval:60000}")
+    public void removeIdleCouriers() {
+        removeIdleCouriers(System.currentTimeMillis());
+    }
+
+    void removeIdleCouriers(long currentTime) {
+        long idleBefore = currentTime - hourRetentionMs;
+        int before = rollups.size();
+        rollups.values().removeIf(rollup -> rollup.getLastUpdatedAt() < idleBefore);
+
+        int removed = before - rollups.size();
+        if (removed > 0) {
+            logger.debug("Removed distance rollups of {} idle couriers", removed);
+        }
+    }
+}
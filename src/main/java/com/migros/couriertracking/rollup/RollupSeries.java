@@ -0,0 +1,112 @@
+package com.migros.couriertracking.rollup;
+
+import java.util.Arrays;
+
+/**
+ * Distance per fixed-size time bucket, kept sorted by bucket start in parallel
+ * arrays. Fixes mostly arrive in time order, so adding usually updates or appends
+ * the last bucket; late fixes are found by binary search. Pruned buckets are
+ * skipped by moving the head and reclaimed when the arrays would otherwise grow.
+ *
+ * Not thread-safe; {@link CourierRollup} guards access.
+ */
+final class RollupSeries {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final long bucketMs;
+
+    private long[] bucketStarts = new long[INITIAL_CAPACITY];
+    private double[] distances = new double[INITIAL_CAPACITY];
+    private int head;
+    private int tail;
+
+    RollupSeries(long bucketMs) {
+        this.bucketMs = bucketMs;
+    }
+
+    long bucketStart(long time) {
+        return Math.floorDiv(time, bucketMs) * bucketMs;
+    }
+
+    /**
+     * @return the start of the newest bucket; only valid if the series is not empty
+     */
+    long newestBucketStart() {
+        return bucketStarts[tail - 1];
+    }
+
+    void add(long time, double distance) {
+        long bucketStart = bucketStart(time);
+        if (head < tail && bucketStarts[tail - 1] == bucketStart) {
+            distances[tail - 1] += distance;
+            return;
+        }
+
+        int index = tail;
+        if (head < tail && bucketStarts[tail - 1] > bucketStart) {
+            index = Arrays.binarySearch(bucketStarts, head, tail, bucketStart);
+            if (index >= 0) {
+                distances[index] += distance;
+                return;
+            }
+            index = -index - 1;
+        }
+
+        if (tail == bucketStarts.length) {
+            index -= head;
+            makeRoom();
+        }
+        System.arraycopy(bucketStarts, index, bucketStarts, index + 1, tail - index);
+        System.arraycopy(distances, index, distances, index + 1, tail - index);
+        bucketStarts[index] = bucketStart;
+        distances[index] = distance;
+        tail++;
+    }
+
+    /**
+     * Drops the buckets that start before the given time.
+     */
+    void pruneBefore(long time) {
+        while (head < tail && bucketStarts[head] < time) {
+            head++;
+        }
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+    }
+
+    /**
+     * @return the distance of the buckets starting in {@code [from, to]}
+     */
+    double sum(long from, long to) {
+        int index = Arrays.binarySearch(bucketStarts, head, tail, from);
+        if (index < 0) {
+            index = -index - 1;
+        }
+
+        double sum = 0;
+        for (; index < tail && bucketStarts[index] <= to; index++) {
+            sum += distances[index];
+        }
+        return sum;
+    }
+
+    private void makeRoom() {
+        int size = tail - head;
+        if (head > 0 && size <= bucketStarts.length / 2) {
+            System.arraycopy(bucketStarts, head, bucketStarts, 0, size);
+            System.arraycopy(distances, head, distances, 0, size);
+        } else {
+            long[] grownStarts = new long[bucketStarts.length * 2];
+            double[] grownDistances = new double[distances.length * 2];
+            System.arraycopy(bucketStarts, head, grownStarts, 0, size);
+            System.arraycopy(distances, head, grownDistances, 0, size);
+            bucketStarts = grownStarts;
+            distances = grownDistances;
+        }
+        head = 0;
+        tail = size;
+    }
+}
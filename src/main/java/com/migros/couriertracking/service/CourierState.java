@@ -0,0 +1,457 @@
+package com.migros.couriertracking.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.filter.LocationFilter;
+import com.migros.couriertracking.util.DistanceCalculator;
+
+/**
+ * Mutable in-memory tracking state of a single courier.
+ *
+ * Location fields are only written by the ingestion shard that owns the courier.
+ * Pending distance and open store visits are also drained or closed by sync and
+ * eviction running on other threads, so every access goes through the state's monitor,
+ * which stays uncontended on the ingestion path.
+ *
+ * The latest fixes are kept sorted by time in a small fixed-size buffer, so fixes
+ * that arrive late or more than once can be placed by their own time instead of
+ * being treated as a jump back along the route.
+ *
+ * Store visits are a small inside/outside state machine per store: the first fix
+ * inside a geofence opens a visit, later fixes inside only extend it, and it is
+ * closed once the courier has been outside for the exit delay. That hysteresis
+ * keeps GPS scatter around the geofence edge from producing extra visits. A late
+ * fix inside a store whose visit was already closed by a newer fix belongs to that
+ * visit and does not open another one.
+ */
+class CourierState {
+
+    static final int DEFAULT_REORDER_WINDOW = 4;
+
+    private static final int INITIAL_VISIT_CAPACITY = 2;
+    private static final long INSIDE = Long.MIN_VALUE;
+
+    /**
+     * A store visit that has ended, with the time of the first fix inside and of the
+     * first fix outside the geofence.
+     */
+    record ClosedVisit(Store store, long enteredAt, long exitedAt) {
+    }
+
+    /**
+     * Pending distance drained for the flusher, with the newest fix it covers so the
+     * persisted summary records how far into the route it is, and the newest
+     * write-ahead log record it includes. The fix fields are {@code null} before the
+     * first fix.
+     */
+    record DrainedDistance(double distance, Long lastTime, Double lastLatitude, Double lastLongitude,
+            long lastRecordId) {
+    }
+
+    /**
+     * How {@link #record} handled a fix.
+     */
+    enum FixOutcome {
+        /** Newest fix so far, appended to the route. */
+        APPLIED,
+        /** Late fix spliced into the route between its neighbours. */
+        REORDERED,
+        /** Rejected by the location filter, ignored. */
+        FILTERED,
+        /** Same time as a buffered fix, ignored. */
+        DUPLICATE,
+        /** Older than every buffered fix, ignored. */
+        TOO_LATE,
+        /** The state is evicted and accepts no more fixes. */
+        EVICTED
+    }
+
+    private final String courierId;
+
+    private final long[] fixTimes;
+    private final double[] fixLatitudes;
+    private final double[] fixLongitudes;
+    private int fixCount;
+
+    private double pendingDistance;
+    private double lastDistance;
+    private long lastRecordId;
+    private long locationCount;
+    private long lastSyncTime;
+    private long lastSeenAt;
+    private boolean dirty;
+    private boolean evicted;
+
+    private Store[] visitStores = new Store[INITIAL_VISIT_CAPACITY];
+    private long[] visitEnteredAt = new long[INITIAL_VISIT_CAPACITY];
+    private long[] visitLastInsideAt = new long[INITIAL_VISIT_CAPACITY];
+    // Time of the first fix outside since the last one inside, or INSIDE
+    private long[] visitOutsideSince = new long[INITIAL_VISIT_CAPACITY];
+    private int visitCount;
+
+    // Stores of recently closed visits and the time of the fix that closed each
+    private long[] closedStoreIds = new long[INITIAL_VISIT_CAPACITY];
+    private long[] closedAt = new long[INITIAL_VISIT_CAPACITY];
+    private int closedCount;
+
+    CourierState(String courierId) {
+        this(courierId, DEFAULT_REORDER_WINDOW);
+    }
+
+    CourierState(String courierId, int reorderWindow) {
+        this.courierId = courierId;
+        int capacity = Math.max(reorderWindow, 1);
+        this.fixTimes = new long[capacity];
+        this.fixLatitudes = new double[capacity];
+        this.fixLongitudes = new double[capacity];
+    }
+
+    String getCourierId() {
+        return courierId;
+    }
+
+    /**
+     * Adds a fix to the route and its travelled distance to the pending (not yet
+     * synced) distance.
+     *
+     * A fix newer than all buffered ones is appended. A late fix that still falls
+     * within the buffer replaces the straight line between its neighbours with the
+     * detour through it. Fixes with the time of a buffered fix, and fixes older than
+     * the whole buffer once it is full, are ignored. So are fixes the filter rejects
+     * when measured against their preceding neighbour (or, for a new first fix, the
+     * following one); they still count as a sign of life for eviction.
+     */
+    synchronized FixOutcome record(double latitude, double longitude, long time, long now,
+            DistanceCalculator distanceCalculator, LocationFilter locationFilter) {
+        return record(latitude, longitude, time, 0, now, distanceCalculator, locationFilter);
+    }
+
+    /**
+     * Same as {@link #record(double, double, long, long, DistanceCalculator, LocationFilter)}
+     * for a fix from the given write-ahead log record. Whatever the outcome, the
+     * pending distance includes the record from then on.
+     */
+    synchronized FixOutcome record(double latitude, double longitude, long time, long recordId, long now,
+            DistanceCalculator distanceCalculator, LocationFilter locationFilter) {
+        if (evicted) {
+            return FixOutcome.EVICTED;
+        }
+        lastRecordId = Math.max(lastRecordId, recordId);
+
+        int position = fixCount;
+        while (position > 0 && fixTimes[position - 1] >= time) {
+            position--;
+        }
+        if (position < fixCount && fixTimes[position] == time) {
+            return FixOutcome.DUPLICATE;
+        }
+        if (position == 0 && fixCount == fixTimes.length) {
+            return FixOutcome.TOO_LATE;
+        }
+
+        double distance;
+        FixOutcome outcome;
+        if (fixCount == 0) {
+            distance = 0;
+            outcome = FixOutcome.APPLIED;
+        } else if (position == 0) {
+            distance = distanceCalculator.calculateDistance(
+                    latitude, longitude, fixLatitudes[0], fixLongitudes[0]);
+            if (!locationFilter.accept(distance, fixTimes[0] - time)) {
+                return filtered(now);
+            }
+            outcome = FixOutcome.REORDERED;
+        } else {
+            int previous = position - 1;
+            double leg = distanceCalculator.calculateDistance(
+                    fixLatitudes[previous], fixLongitudes[previous], latitude, longitude);
+            if (!locationFilter.accept(leg, time - fixTimes[previous])) {
+                return filtered(now);
+            }
+
+            if (position == fixCount) {
+                distance = leg;
+                outcome = FixOutcome.APPLIED;
+            } else {
+                double detour = leg + distanceCalculator.calculateDistance(
+                        latitude, longitude, fixLatitudes[position], fixLongitudes[position]);
+                double direct = distanceCalculator.calculateDistance(
+                        fixLatitudes[previous], fixLongitudes[previous],
+                        fixLatitudes[position], fixLongitudes[position]);
+                // Approximate calculators can break the triangle inequality slightly
+                distance = Math.max(detour - direct, 0);
+                outcome = FixOutcome.REORDERED;
+            }
+        }
+
+        if (fixCount == fixTimes.length) {
+            // Drop the oldest fix; the older neighbours move down to make room
+            position--;
+            moveFixes(1, 0, position);
+        } else {
+            moveFixes(position, position + 1, fixCount - position);
+            fixCount++;
+        }
+        fixTimes[position] = time;
+        fixLatitudes[position] = latitude;
+        fixLongitudes[position] = longitude;
+
+        this.pendingDistance += distance;
+        this.lastDistance = distance;
+        this.lastSeenAt = now;
+        return outcome;
+    }
+
+    private FixOutcome filtered(long now) {
+        this.lastSeenAt = now;
+        return FixOutcome.FILTERED;
+    }
+
+    private void moveFixes(int from, int to, int length) {
+        System.arraycopy(fixTimes, from, fixTimes, to, length);
+        System.arraycopy(fixLatitudes, from, fixLatitudes, to, length);
+        System.arraycopy(fixLongitudes, from, fixLongitudes, to, length);
+    }
+
+    /**
+     * Evicts the state if it has not moved since the given time. An evicted state
+     * rejects all further fixes, so nothing can be added after its final flush.
+     *
+     * @return {@code true} if the state was evicted by this call
+     */
+    synchronized boolean evictIfIdle(long idleBefore) {
+        if (evicted || lastSeenAt >= idleBefore) {
+            return false;
+        }
+        evicted = true;
+        return true;
+    }
+
+    synchronized boolean hasLocation() {
+        return fixCount > 0;
+    }
+
+    synchronized double getLastLatitude() {
+        return fixLatitudes[fixCount - 1];
+    }
+
+    synchronized double getLastLongitude() {
+        return fixLongitudes[fixCount - 1];
+    }
+
+    synchronized long getLastTime() {
+        return fixTimes[fixCount - 1];
+    }
+
+    synchronized long getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    /**
+     * @return the distance the last applied or reordered fix added to the route
+     */
+    synchronized double getLastDistance() {
+        return lastDistance;
+    }
+
+    synchronized double getPendingDistance() {
+        return pendingDistance;
+    }
+
+    synchronized DrainedDistance drainPendingDistance() {
+        double drained = pendingDistance;
+        pendingDistance = 0;
+        if (fixCount == 0) {
+            return new DrainedDistance(drained, null, null, null, lastRecordId);
+        }
+        int last = fixCount - 1;
+        return new DrainedDistance(drained, fixTimes[last], fixLatitudes[last], fixLongitudes[last], lastRecordId);
+    }
+
+    /**
+     * Puts back distance that was drained but could not be persisted.
+     */
+    synchronized void restorePendingDistance(double distance) {
+        pendingDistance += distance;
+    }
+
+    /**
+     * Flags the state as waiting for the write-behind flusher.
+     *
+     * @return {@code true} if the state was clean, i.e. the caller has to queue it
+     */
+    synchronized boolean markDirty() {
+        if (dirty) {
+            return false;
+        }
+        dirty = true;
+        return true;
+    }
+
+    synchronized void clearDirty() {
+        dirty = false;
+    }
+
+    synchronized long incrementLocationCount() {
+        return ++locationCount;
+    }
+
+    synchronized long getLastSyncTime() {
+        return lastSyncTime;
+    }
+
+    synchronized void setLastSyncTime(long lastSyncTime) {
+        this.lastSyncTime = lastSyncTime;
+    }
+
+    /**
+     * Marks the courier as inside the store at the given time. A fix older than the
+     * one that closed the last visit to the store is ignored.
+     *
+     * @return {@code true} if this opened a new visit
+     */
+    synchronized boolean enterStore(Store store, long time) {
+        int visit = findVisit(store.getId());
+        if (visit >= 0) {
+            visitLastInsideAt[visit] = Math.max(visitLastInsideAt[visit], time);
+            if (time >= visitOutsideSince[visit]) {
+                visitOutsideSince[visit] = INSIDE;
+            }
+            return false;
+        }
+
+        int closedVisit = findClosedVisit(store.getId());
+        if (closedVisit >= 0 && time < closedAt[closedVisit]) {
+            return false;
+        }
+
+        if (visitCount == visitStores.length) {
+            visitStores = Arrays.copyOf(visitStores, visitCount * 2);
+            visitEnteredAt = Arrays.copyOf(visitEnteredAt, visitCount * 2);
+            visitLastInsideAt = Arrays.copyOf(visitLastInsideAt, visitCount * 2);
+            visitOutsideSince = Arrays.copyOf(visitOutsideSince, visitCount * 2);
+        }
+        visitStores[visitCount] = store;
+        visitEnteredAt[visitCount] = time;
+        visitLastInsideAt[visitCount] = time;
+        visitOutsideSince[visitCount] = INSIDE;
+        visitCount++;
+        return true;
+    }
+
+    /**
+     * Marks the courier as outside every open visit's store that is not in the given
+     * list, and closes the visits it has been outside of for at least the exit delay.
+     * Allocates only when a visit is closed.
+     *
+     * @return the closed visits
+     */
+    synchronized List<ClosedVisit> leaveStores(List<Store> inside, long time, long exitDelayMs) {
+        List<ClosedVisit> closed = null;
+        int kept = 0;
+        for (int i = 0; i < visitCount; i++) {
+            if (!containsStore(inside, visitStores[i].getId()) && time > visitLastInsideAt[i]) {
+                if (visitOutsideSince[i] == INSIDE || time < visitOutsideSince[i]) {
+                    visitOutsideSince[i] = time;
+                }
+                if (time - visitOutsideSince[i] >= exitDelayMs) {
+                    if (closed == null) {
+                        closed = new ArrayList<>(1);
+                    }
+                    closed.add(new ClosedVisit(visitStores[i], visitEnteredAt[i], visitOutsideSince[i]));
+                    rememberClosedVisit(visitStores[i].getId(), time);
+                    continue;
+                }
+            }
+            moveVisit(i, kept++);
+        }
+        clearVisits(kept);
+        return closed != null ? closed : List.of();
+    }
+
+    /**
+     * Closes every open visit, e.g. when the courier is evicted. A visit still inside
+     * ends at its last fix inside the store.
+     */
+    synchronized List<ClosedVisit> closeVisits() {
+        List<ClosedVisit> closed = new ArrayList<>(visitCount);
+        for (int i = 0; i < visitCount; i++) {
+            long exitedAt = visitOutsideSince[i] == INSIDE ? visitLastInsideAt[i] : visitOutsideSince[i];
+            closed.add(new ClosedVisit(visitStores[i], visitEnteredAt[i], exitedAt));
+        }
+        clearVisits(0);
+        return closed;
+    }
+
+    synchronized int getOpenVisitCount() {
+        return visitCount;
+    }
+
+    private int findVisit(long storeId) {
+        for (int i = 0; i < visitCount; i++) {
+            if (visitStores[i].getId() == storeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int findClosedVisit(long storeId) {
+        for (int i = 0; i < closedCount; i++) {
+            if (closedStoreIds[i] == storeId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remembers the fix that closed a visit, dropping closed visits that no fix can
+     * be late for any more: once the reorder buffer is full, fixes older than its
+     * oldest fix are rejected before they reach the visits.
+     */
+    private void rememberClosedVisit(long storeId, long time) {
+        long oldestAccepted = fixCount == fixTimes.length ? fixTimes[0] : Long.MIN_VALUE;
+        int kept = 0;
+        for (int i = 0; i < closedCount; i++) {
+            if (closedStoreIds[i] != storeId && closedAt[i] >= oldestAccepted) {
+                closedStoreIds[kept] = closedStoreIds[i];
+                closedAt[kept] = closedAt[i];
+                kept++;
+            }
+        }
+        closedCount = kept;
+
+        if (closedCount == closedStoreIds.length) {
+            closedStoreIds = Arrays.copyOf(closedStoreIds, closedCount * 2);
+            closedAt = Arrays.copyOf(closedAt, closedCount * 2);
+        }
+        closedStoreIds[closedCount] = storeId;
+        closedAt[closedCount] = time;
+        closedCount++;
+    }
+
+    private static boolean containsStore(List<Store> stores, long storeId) {
+        for (int i = 0; i < stores.size(); i++) {
+            if (stores.get(i).getId() == storeId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void moveVisit(int from, int to) {
+        visitStores[to] = visitStores[from];
+        visitEnteredAt[to] = visitEnteredAt[from];
+        visitLastInsideAt[to] = visitLastInsideAt[from];
+        visitOutsideSince[to] = visitOutsideSince[from];
+    }
+
+    private void clearVisits(int count) {
+        Arrays.fill(visitStores, count, visitCount, null);
+        visitCount = count;
+    }
+}
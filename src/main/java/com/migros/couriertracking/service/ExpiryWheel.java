@@ -0,0 +1,93 @@
+package com.migros.couriertracking.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel for coarse expiry deadlines.
+ *
+ * Items are dropped into the bucket of the tick their deadline falls in, and
+ * {@link #advance} hands over only the items of the ticks that have passed, so
+ * expiring costs O(expired) instead of a scan over everything that is scheduled.
+ * An item is handed over at most one tick late; whoever receives it decides whether
+ * it really expired or has to be scheduled again.
+ *
+ * Any thread may schedule; {@link #advance} must only be called by one thread at a
+ * time. An item scheduled concurrently with the advance of its own tick can end up
+ * one full rotation late, which callers treat as a delayed, not a lost, expiry.
+ */
+final class ExpiryWheel<T> {
+
+    private final long tickMs;
+    private final List<Queue<T>> buckets;
+    private final int mask;
+
+    private volatile long processedTick;
+
+    ExpiryWheel(long tickMs, long horizonMs, long now) {
+        this.tickMs = Math.max(tickMs, 1);
+
+        long ticks = horizonMs / this.tickMs + 2;
+        int size = Integer.highestOneBit((int) Math.min(ticks, 1 << 20) - 1) << 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ConcurrentLinkedQueue<>());
+        }
+        this.mask = size - 1;
+        this.processedTick = now / this.tickMs;
+    }
+
+    /**
+     * Schedules the item for the first tick at or after the deadline. Deadlines
+     * beyond the wheel horizon are clamped to the last bucket, so the item comes
+     * back early and can be scheduled again.
+     */
+    void schedule(T item, long deadline) {
+        long current = processedTick;
+        long tick = (deadline + tickMs - 1) / tickMs;
+        tick = Math.max(tick, current + 1);
+        tick = Math.min(tick, current + mask);
+
+        buckets.get((int) (tick & mask)).add(item);
+    }
+
+    /**
+     * Hands every item whose tick has passed by {@code now} to the consumer.
+     *
+     * @return the number of items handed over
+     */
+    int advance(long now, Consumer<T> expired) {
+        long target = now / tickMs;
+        if (target - processedTick > buckets.size()) {
+            // Every bucket is due; visit each once instead of every missed tick.
+            processedTick = target - buckets.size();
+        }
+
+        int count = 0;
+        while (processedTick < target) {
+            long tick = processedTick + 1;
+            // Publish the tick before draining, so items scheduled by the consumer
+            // land in later buckets.
+            processedTick = tick;
+
+            Queue<T> bucket = buckets.get((int) (tick & mask));
+            T item;
+            while ((item = bucket.poll()) != null) {
+                expired.accept(item);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        int size = 0;
+        for (Queue<T> bucket : buckets) {
+            size += bucket.size();
+        }
+        return size;
+    }
+}
@@ -3,17 +3,21 @@ package com.migros.couriertracking.service;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.migros.couriertracking.dto.CourierLocationRequest;
@@ -21,29 +25,36 @@ import com.migros.couriertracking.dto.TotalTravelDistanceResponse;
 import com.migros.couriertracking.entity.CourierTravelSummary;
 import com.migros.couriertracking.entity.Store;
 import com.migros.couriertracking.entity.StoreEntrance;
-import com.migros.couriertracking.observer.StoreEntranceObserver;
-import com.migros.couriertracking.repository.CourierTravelSummaryRepository;
-import com.migros.couriertracking.repository.StoreEntranceRepository;
-import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.filter.LocationFilter;
+import com.migros.couriertracking.history.LocationHistoryStore;
+import com.migros.couriertracking.rollup.DistanceRollupStore;
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
 import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.wal.LoggedFix;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
-@Transactional
 public class InMemoryCourierTrackingService {
 
     private static final Logger logger = LoggerFactory.getLogger(InMemoryCourierTrackingService.class);
 
-    private final CourierTravelSummaryRepository travelSummaryRepository;
-    private final StoreRepository storeRepository;
-    private final StoreEntranceRepository storeEntranceRepository;
+    private final StoreSpatialIndex storeSpatialIndex;
     private final DistanceCalculator distanceCalculator;
-    private final List<StoreEntranceObserver> storeEntranceObservers;
-
-    @Value("${courier.tracking.store.radius:100}")
-    private double storeRadius;
+    private final LocationFilter locationFilter;
+    private final StoreEntrancePipeline storeEntrancePipeline;
+    private final TravelSummaryFlusher travelSummaryFlusher;
+    private final LocationHistoryStore locationHistoryStore;
+    private final DistanceRollupStore distanceRollupStore;
+    private final MeterRegistry meterRegistry;
 
-    @Value("${courier.tracking.entrance.cooldown:60000}")
-    private long entranceCooldownMs;
+    @Value("${courier.tracking.entrance.exit-delay:60000}")
+    private long exitDelayMs;
 
     @Value("${courier.tracking.sync.frequency:10}")
     private int syncFrequency;
@@ -51,186 +62,457 @@ public class InMemoryCourierTrackingService {
     @Value("${courier.tracking.sync.timeout:300000}")
     private long syncTimeoutMs;
 
-    private final Map<String, CourierLocationData> lastLocations = new ConcurrentHashMap<>();
-    private final Map<String, DoubleAdder> tempDistances = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> locationCounts = new ConcurrentHashMap<>();
-    private final Map<String, Long> storeEntranceCooldowns = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastSyncTimes = new ConcurrentHashMap<>();
+    @Value("${courier.tracking.eviction.idle-timeout:3600000}")
+    private long idleTimeoutMs;
+
+    @Value("${courier.tracking.eviction.interval:1000}")
+    private long evictionIntervalMs;
+
+    @Value("${courier.tracking.eviction.batch-size:500}")
+    private int evictionBatchSize;
+
+    @Value("${courier.tracking.location.reorder-window:4}")
+    private int reorderWindow;
 
-    public InMemoryCourierTrackingService(CourierTravelSummaryRepository travelSummaryRepository,
-            StoreRepository storeRepository,
-            StoreEntranceRepository storeEntranceRepository,
+    private final Map<String, CourierState> courierStates = new ConcurrentHashMap<>();
+
+    private ExpiryWheel<CourierState> expiryWheel;
+
+    private final Timer locationTimer;
+    private final Timer proximityTimer;
+    private final Counter entrancesRecorded;
+    private final Counter entrancesSuppressed;
+    private final Counter exitsRecorded;
+    private final Counter reorderedFixes;
+    private final Counter duplicateFixes;
+    private final Counter tooLateFixes;
+    private final Counter filteredFixes;
+
+    public InMemoryCourierTrackingService(StoreSpatialIndex storeSpatialIndex,
             DistanceCalculator distanceCalculator,
-            List<StoreEntranceObserver> storeEntranceObservers) {
-        this.travelSummaryRepository = travelSummaryRepository;
-        this.storeRepository = storeRepository;
-        this.storeEntranceRepository = storeEntranceRepository;
+            LocationFilter locationFilter,
+            StoreEntrancePipeline storeEntrancePipeline,
+            TravelSummaryFlusher travelSummaryFlusher,
+            LocationHistoryStore locationHistoryStore,
+            DistanceRollupStore distanceRollupStore,
+            MeterRegistry meterRegistry) {
+        this.storeSpatialIndex = storeSpatialIndex;
         this.distanceCalculator = distanceCalculator;
-        this.storeEntranceObservers = storeEntranceObservers;
+        this.locationFilter = locationFilter;
+        this.storeEntrancePipeline = storeEntrancePipeline;
+        this.travelSummaryFlusher = travelSummaryFlusher;
+        this.locationHistoryStore = locationHistoryStore;
+        this.distanceRollupStore = distanceRollupStore;
+        this.meterRegistry = meterRegistry;
+
+        this.locationTimer = Timer.builder("courier.location.processing")
+                .description("Time to apply a single location fix")
+                .register(meterRegistry);
+        this.proximityTimer = Timer.builder("courier.store.proximity")
+                .description("Time to find and handle the stores in range of a fix")
+                .register(meterRegistry);
+        this.entrancesRecorded = Counter.builder("courier.store.entrances")
+                .description("Store entrances detected")
+                .tag("result", "recorded")
+                .register(meterRegistry);
+        this.entrancesSuppressed = Counter.builder("courier.store.entrances")
+                .description("Store entrances detected")
+                .tag("result", "suppressed")
+                .register(meterRegistry);
+        this.exitsRecorded = Counter.builder("courier.store.exits")
+                .description("Store visits ended by the courier leaving or being evicted")
+                .register(meterRegistry);
+
+        this.reorderedFixes = outOfOrderCounter(meterRegistry, "reordered");
+        this.duplicateFixes = outOfOrderCounter(meterRegistry, "duplicate");
+        this.tooLateFixes = outOfOrderCounter(meterRegistry, "too-late");
+        this.filteredFixes = Counter.builder("courier.location.filtered")
+                .description("Fixes rejected by the location filter as jitter or implausible jumps")
+                .register(meterRegistry);
+    }
+
+    private static Counter outOfOrderCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("courier.location.out-of-order")
+                .description("Fixes that arrived after a newer fix of the same courier")
+                .tag("result", result)
+                .register(meterRegistry);
     }
 
+    /**
+     * Sets up the expiry wheel with ticks of the eviction interval, coarsened so the
+     * wheel never needs more than a few hundred buckets to cover the idle timeout,
+     * and registers the gauges that read the tracked couriers.
+     */
+    @PostConstruct
+    public void start() {
+        long tickMs = Math.max(evictionIntervalMs, idleTimeoutMs / 256);
+        expiryWheel = new ExpiryWheel<>(tickMs, idleTimeoutMs, System.currentTimeMillis());
+
+        Gauge.builder("courier.tracked", courierStates, Map::size)
+                .description("Couriers currently held in memory")
+                .register(meterRegistry);
+        Gauge.builder("courier.distance.pending", this, InMemoryCourierTrackingService::getPendingDistance)
+                .description("Travelled distance not yet written to the database")
+                .baseUnit("meters")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Applies a fix in memory. Runs without a transaction: store visits and travel
+     * summaries are written by their own pipelines, so no connection is held per fix.
+     */
     public void logCourierLocation(CourierLocationRequest request) {
+        logCourierLocation(request, 0);
+    }
+
+    /**
+     * Applies a fix from the given write-ahead log record, so that the persisted total
+     * records which logged fixes it includes.
+     */
+    public void logCourierLocation(CourierLocationRequest request, long recordId) {
+        long start = System.nanoTime();
+        try {
+            applyLocation(request, recordId);
+        } finally {
+            locationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void applyLocation(CourierLocationRequest request, long recordId) {
         logger.debug("Processing location for courier: {} at lat: {}, lng: {} at time: {}",
                 request.getCourierId(), request.getLatitude(), request.getLongitude(), request.getTime());
 
         String courierId = request.getCourierId();
+        double latitude = request.getLatitude();
+        double longitude = request.getLongitude();
+        long time = request.getTime();
+        long currentTime = System.currentTimeMillis();
 
-        CourierLocationData lastLocation = lastLocations.get(courierId);
-
-        if (lastLocation != null) {
-            double distance = distanceCalculator.calculateDistance(
-                    lastLocation.latitude, lastLocation.longitude,
-                    request.getLatitude(), request.getLongitude());
+        CourierState state = stateFor(courierId, currentTime);
+        CourierState.FixOutcome outcome = state.record(latitude, longitude, time, recordId, currentTime,
+                distanceCalculator, locationFilter);
+        if (outcome == CourierState.FixOutcome.EVICTED) {
+            // Evicted between lookup and record; start over like any returning courier.
+            courierStates.remove(courierId, state);
+            state = stateFor(courierId, currentTime);
+            outcome = state.record(latitude, longitude, time, recordId, currentTime, distanceCalculator,
+                    locationFilter);
+        }
 
-            tempDistances.computeIfAbsent(courierId, k -> new DoubleAdder()).add(distance);
+        if (outcome == CourierState.FixOutcome.FILTERED) {
+            filteredFixes.increment();
+            logger.debug("Filtered fix for courier {} at time {}", courierId, time);
+            // Still a sign of life at the last accepted position, which can end a visit
+            checkStoreExits(state, time);
+            return;
+        }
+        if (outcome == CourierState.FixOutcome.DUPLICATE) {
+            duplicateFixes.increment();
+            logger.debug("Ignoring duplicate fix for courier {} at time {}", courierId, time);
+            return;
+        }
+        if (outcome == CourierState.FixOutcome.TOO_LATE) {
+            tooLateFixes.increment();
+            logger.debug("Ignoring fix for courier {} at time {}, older than the reorder window", courierId, time);
+            return;
+        }
+        if (outcome == CourierState.FixOutcome.REORDERED) {
+            reorderedFixes.increment();
         }
 
-        lastLocations.put(courierId, new CourierLocationData(
-                request.getLatitude(),
-                request.getLongitude(),
-                request.getTime()));
+        locationHistoryStore.append(courierId, latitude, longitude, time);
+        distanceRollupStore.add(courierId, time, state.getLastDistance());
 
-        checkStoreProximity(courierId, request.getLatitude(), request.getLongitude(), request.getTime());
+        checkStoreProximity(state, latitude, longitude, time);
 
-        AtomicLong count = locationCounts.computeIfAbsent(courierId, k -> new AtomicLong(0));
-        long currentTime = System.currentTimeMillis();
-        Long lastSyncTime = lastSyncTimes.get(courierId);
+        long count = state.incrementLocationCount();
+        long lastSyncTime = state.getLastSyncTime();
 
-        boolean shouldSyncByCount = count.incrementAndGet() % syncFrequency == 0;
-        boolean shouldSyncByTime = lastSyncTime == null || (currentTime - lastSyncTime) > syncTimeoutMs;
+        boolean shouldSyncByCount = count % syncFrequency == 0;
+        boolean shouldSyncByTime = lastSyncTime == 0 || (currentTime - lastSyncTime) > syncTimeoutMs;
 
         if (shouldSyncByCount || shouldSyncByTime) {
-            syncDistanceToDatabase(courierId);
-            lastSyncTimes.put(courierId, currentTime);
+            travelSummaryFlusher.markDirty(state);
+            state.setLastSyncTime(currentTime);
 
             if (shouldSyncByTime && !shouldSyncByCount) {
                 logger.debug("Time-based sync triggered for courier {} after {} ms",
-                        courierId, lastSyncTime == null ? "never" : (currentTime - lastSyncTime));
+                        courierId, lastSyncTime == 0 ? "never" : (currentTime - lastSyncTime));
             }
         }
+    }
 
-        if (count.get() % 100 == 0) {
-            cleanupOldData();
+    private CourierState stateFor(String courierId, long currentTime) {
+        CourierState state = courierStates.get(courierId);
+        if (state == null) {
+            state = courierStates.computeIfAbsent(courierId, id -> {
+                CourierState created = new CourierState(id, reorderWindow);
+                expiryWheel.schedule(created, currentTime + idleTimeoutMs);
+                return created;
+            });
         }
+        return state;
     }
 
-    private void syncDistanceToDatabase(String courierId) {
-        try {
-            DoubleAdder tempDistance = tempDistances.get(courierId);
-            if (tempDistance != null && tempDistance.sum() > 0) {
-                double distanceToAdd = tempDistance.sumThenReset();
+    private void checkStoreProximity(CourierState state, double latitude, double longitude, long time) {
+        long start = System.nanoTime();
+        List<Store> inRange = storeSpatialIndex.findStoresInRange(latitude, longitude);
+        for (Store store : inRange) {
+            handleStoreEntrance(state, store, time);
+        }
+        leaveStores(state, inRange, time);
+        proximityTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
 
-                CourierTravelSummary summary = travelSummaryRepository.findByCourierId(courierId)
-                        .orElseGet(() -> new CourierTravelSummary(courierId));
+    private void checkStoreExits(CourierState state, long time) {
+        if (state.getOpenVisitCount() > 0) {
+            leaveStores(state, storeSpatialIndex.findStoresInRange(state.getLastLatitude(), state.getLastLongitude()),
+                    time);
+        }
+    }
 
-                summary.addDistance(distanceToAdd);
+    /**
+     * Closes the open visits whose store is not among the given ones by store id, so
+     * a courier leaving one store and entering another with the same fix is caught.
+     */
+    private void leaveStores(CourierState state, List<Store> inRange, long time) {
+        for (CourierState.ClosedVisit visit : state.leaveStores(inRange, time, exitDelayMs)) {
+            publishExit(state.getCourierId(), visit);
+        }
+    }
 
-                CourierLocationData lastLocation = lastLocations.get(courierId);
-                if (lastLocation != null) {
-                    summary.setLastLatitude(lastLocation.latitude);
-                    summary.setLastLongitude(lastLocation.longitude);
-                }
+    private void handleStoreEntrance(CourierState state, Store store, long time) {
+        String courierId = state.getCourierId();
 
-                travelSummaryRepository.save(summary);
+        if (state.enterStore(store, time)) {
+            StoreEntrance entrance = new StoreEntrance(courierId, store);
+            entrance.setEntranceTime(toDateTime(time));
+            storeEntrancePipeline.publish(entrance);
+            entrancesRecorded.increment();
 
-                logger.debug("Synced {} meters to database for courier {}", distanceToAdd, courierId);
-            }
-        } catch (Exception e) {
-            logger.error("Error syncing distance to database for courier: " + courierId, e);
+            logger.info("New store entrance recorded for courier '{}' at store '{}' at time {}",
+                    courierId, store.getName(), entrance.getEntranceTime());
+        } else {
+            entrancesSuppressed.increment();
+            logger.debug("Store entrance ignored, courier '{}' is still visiting store '{}'",
+                    courierId, store.getName());
         }
     }
 
-    private void checkStoreProximity(String courierId, Double latitude, Double longitude, Long time) {
-        List<Store> allStores = storeRepository.findAll();
+    private void publishExit(String courierId, CourierState.ClosedVisit visit) {
+        StoreEntrance exit = new StoreEntrance(courierId, visit.store());
+        exit.setEntranceTime(toDateTime(visit.enteredAt()));
+        exit.setExitTime(toDateTime(visit.exitedAt()));
+        storeEntrancePipeline.publish(exit);
+        exitsRecorded.increment();
 
-        for (Store store : allStores) {
-            double distance = distanceCalculator.calculateDistance(
-                    latitude, longitude,
-                    store.getLatitude(), store.getLongitude());
+        logger.info("Store exit recorded for courier '{}' at store '{}' after {} ms",
+                courierId, visit.store().getName(), visit.exitedAt() - visit.enteredAt());
+    }
 
-            if (distance <= storeRadius) {
-                handleStoreEntrance(courierId, store, time);
-            }
-        }
+    private static LocalDateTime toDateTime(long time) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
     }
 
-    private void handleStoreEntrance(String courierId, Store store, Long time) {
-        String cooldownKey = courierId + ":" + store.getId();
-        Long lastEntrance = storeEntranceCooldowns.get(cooldownKey);
+    /**
+     * Expires couriers that have been idle for {@code courier.tracking.eviction.idle-timeout}.
+     *
+     * Only couriers whose expiry tick has passed are looked at. A courier that moved
+     * in the meantime is scheduled again for its new deadline; idle ones are removed,
+     * their open store visits are closed, and their pending distance is flushed in
+     * batches of {@code courier.tracking.eviction.batch-size}. Each batch commits on
+     * its own, so a failed batch does not roll back the others.
+     */
+    @Scheduled(fixedDelayString = "${courier.tracking.eviction.interval:1000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void evictIdleCouriers() {
+        evictIdleCouriers(System.currentTimeMillis());
+    }
 
-        if (lastEntrance == null || (time - lastEntrance) > entranceCooldownMs) {
-            LocalDateTime entranceTime = LocalDateTime.ofInstant(
-                    Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    void evictIdleCouriers(long currentTime) {
+        long idleBefore = currentTime - idleTimeoutMs;
 
-            StoreEntrance entrance = new StoreEntrance(courierId, store);
-            entrance.setEntranceTime(entranceTime);
-            storeEntranceRepository.save(entrance);
+        List<CourierState> evicted = new ArrayList<>();
+        expiryWheel.advance(currentTime, state -> {
+            if (state.evictIfIdle(idleBefore)) {
+                courierStates.remove(state.getCourierId(), state);
+                evicted.add(state);
 
-            storeEntranceCooldowns.put(cooldownKey, time);
+                logger.debug("Evicted inactive courier: {}", state.getCourierId());
+            } else {
+                expiryWheel.schedule(state, state.getLastSeenAt() + idleTimeoutMs);
+            }
+        });
 
-            notifyStoreEntranceObservers(entrance);
+        for (CourierState state : evicted) {
+            for (CourierState.ClosedVisit visit : state.closeVisits()) {
+                publishExit(state.getCourierId(), visit);
+            }
+        }
 
-            logger.info("New store entrance recorded for courier '{}' at store '{}' at time {}",
-                    courierId, store.getName(), entranceTime);
-        } else {
-            logger.debug("Store entrance ignored due to cooldown period for courier '{}' at store '{}'",
-                    courierId, store.getName());
+        for (int from = 0; from < evicted.size(); from += evictionBatchSize) {
+            travelSummaryFlusher.flushStates(evicted.subList(from, Math.min(from + evictionBatchSize, evicted.size())));
+        }
+
+        if (!evicted.isEmpty()) {
+            logger.info("Evicted {} inactive couriers", evicted.size());
         }
     }
 
-    private void cleanupOldData() {
-        long currentTime = System.currentTimeMillis();
+    /**
+     * Rebuilds the pending distance of fixes read back from the write-ahead log after
+     * a restart.
+     *
+     * Each courier's fixes are applied in log order, like the shard worker applied
+     * them. The persisted total records the newest log record it includes, so fixes
+     * up to that record are not counted twice, while a late fix logged after it is
+     * still counted even if it is older than the persisted last fix. The already
+     * counted fixes are applied first with their distance discarded, to rebuild the
+     * reorder window the late fixes are sorted into. The persisted last position
+     * seeds the route unless the courier had been idle long enough to be evicted.
+     * Only distance is rebuilt: store visits, history and rollups are not replayed.
+     *
+     * @return the number of fixes added to a route
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public int replayLocations(List<LoggedFix> loggedFixes) {
+        Map<String, List<LoggedFix>> byCourier = new LinkedHashMap<>();
+        for (LoggedFix loggedFix : loggedFixes) {
+            byCourier.computeIfAbsent(loggedFix.request().getCourierId(), id -> new ArrayList<>()).add(loggedFix);
+        }
+        Map<String, CourierTravelSummary> summaries = travelSummaryFlusher.getPersistedSummaries(byCourier.keySet());
 
-        storeEntranceCooldowns.entrySet()
-                .removeIf(entry -> (currentTime - entry.getValue()) > (entranceCooldownMs * 2));
+        long currentTime = System.currentTimeMillis();
+        int replayed = 0;
+        for (Map.Entry<String, List<LoggedFix>> entry : byCourier.entrySet()) {
+            List<LoggedFix> fixes = entry.getValue();
+
+            CourierTravelSummary summary = summaries.get(entry.getKey());
+            long persistedRecordId = summary != null && summary.getLastRecordId() != null
+                    ? summary.getLastRecordId() : -1;
+            int first = 0;
+            while (first < fixes.size() && fixes.get(first).recordId() <= persistedRecordId) {
+                first++;
+            }
+            if (first == fixes.size()) {
+                continue;
+            }
 
-        long inactiveThreshold = 60 * 60 * 1000;
+            CourierState state = stateFor(entry.getKey(), currentTime);
+            Long persistedTime = summary != null ? summary.getLastFixTime() : null;
+            if (persistedTime != null && summary.getLastLatitude() != null
+                    && fixes.get(first).request().getTime() - persistedTime <= idleTimeoutMs) {
+                state.record(summary.getLastLatitude(), summary.getLastLongitude(), persistedTime, currentTime,
+                        distanceCalculator, locationFilter);
+                for (LoggedFix fix : fixes.subList(0, first)) {
+                    recordReplayed(state, fix, currentTime);
+                }
+                state.drainPendingDistance();
+            }
+            for (LoggedFix fix : fixes.subList(first, fixes.size())) {
+                CourierState.FixOutcome outcome = recordReplayed(state, fix, currentTime);
+                if (outcome == CourierState.FixOutcome.APPLIED || outcome == CourierState.FixOutcome.REORDERED) {
+                    replayed++;
+                }
+            }
+            if (state.getPendingDistance() > 0) {
+                travelSummaryFlusher.markDirty(state);
+            }
+        }
+        return replayed;
+    }
 
-        lastLocations.entrySet().removeIf(entry -> {
-            boolean isInactive = (currentTime - entry.getValue().time) > inactiveThreshold;
-            if (isInactive) {
-                String courierId = entry.getKey();
-                syncDistanceToDatabase(courierId);
+    private CourierState.FixOutcome recordReplayed(CourierState state, LoggedFix fix, long currentTime) {
+        CourierLocationRequest request = fix.request();
+        return state.record(request.getLatitude(), request.getLongitude(), request.getTime(), fix.recordId(),
+                currentTime, distanceCalculator, locationFilter);
+    }
 
-                tempDistances.remove(courierId);
-                locationCounts.remove(courierId);
-                lastSyncTimes.remove(courierId);
+    /**
+     * Writes the pending distance of every courier, including couriers whose earlier
+     * flush failed. Used to checkpoint the write-ahead log. Each batch commits on its
+     * own, like the scheduled flush.
+     *
+     * @return {@code false} if any of it could not be written
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean flushAll() {
+        for (CourierState state : courierStates.values()) {
+            travelSummaryFlusher.markDirty(state);
+        }
+        return travelSummaryFlusher.flushQueued();
+    }
 
-                logger.debug("Cleaned up inactive courier: {}", courierId);
-            }
-            return isInactive;
-        });
+    /**
+     * Writes the pending distance of every courier before shutdown, including
+     * couriers that never reached a sync threshold.
+     */
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Flushing travel distance of {} couriers before shutdown", courierStates.size());
+        if (!flushAll()) {
+            logger.warn("Some travel distance could not be written before shutdown");
+        }
     }
 
-    private void notifyStoreEntranceObservers(StoreEntrance storeEntrance) {
-        for (StoreEntranceObserver observer : storeEntranceObservers) {
-            try {
-                observer.onStoreEntrance(storeEntrance);
-            } catch (Exception e) {
-                logger.error("Error notifying store entrance observer", e);
-            }
+    /**
+     * Sums the pending distance of all tracked couriers. Walks every courier, so it
+     * is meant for metric scrapes rather than the ingestion path.
+     */
+    double getPendingDistance() {
+        double pending = 0;
+        for (CourierState state : courierStates.values()) {
+            pending += state.getPendingDistance();
         }
+        return pending;
     }
 
+    /**
+     * Returns the persisted total plus the pending in-memory distance of the courier.
+     * Nothing is flushed: the persisted total usually comes from the flusher's cache,
+     * and since it is read before the pending distance, a flush committing in between
+     * can make the total briefly lag but never counts a distance twice.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public TotalTravelDistanceResponse getTotalTravelDistance(String courierId) {
-        syncDistanceToDatabase(courierId);
-
-        Optional<CourierTravelSummary> summaryOpt = travelSummaryRepository.findByCourierId(courierId);
+        if (courierId == null) {
+            return new TotalTravelDistanceResponse(null, 0.0);
+        }
 
-        double totalDistance = summaryOpt.map(CourierTravelSummary::getTotalDistance).orElse(0.0);
+        double totalDistance = travelSummaryFlusher.getPersistedTotal(courierId);
+        CourierState state = courierStates.get(courierId);
+        if (state != null) {
+            totalDistance += state.getPendingDistance();
+        }
 
         return new TotalTravelDistanceResponse(courierId, totalDistance);
     }
 
-    private static class CourierLocationData {
-        final double latitude;
-        final double longitude;
-        final long time;
-
-        CourierLocationData(double latitude, double longitude, long time) {
-            this.latitude = latitude;
-            this.longitude = longitude;
-            this.time = time;
+    /**
+     * Returns the total distance of each given courier the same way as
+     * {@link #getTotalTravelDistance}, loading uncached totals with batched IN
+     * queries.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<TotalTravelDistanceResponse> getTotalTravelDistances(Collection<String> courierIds) {
+        List<String> ids = courierIds.stream().filter(Objects::nonNull).distinct().toList();
+
+        Map<String, Double> persisted = travelSummaryFlusher.getPersistedTotals(ids);
+
+        List<TotalTravelDistanceResponse> totals = new ArrayList<>(ids.size());
+        for (String courierId : ids) {
+            CourierState state = courierStates.get(courierId);
+            double pending = state != null ? state.getPendingDistance() : 0.0;
+            totals.add(new TotalTravelDistanceResponse(courierId, persisted.getOrDefault(courierId, 0.0) + pending));
         }
+        return totals;
+    }
+
+    /**
+     * Returns the total distance of every courier currently held in memory.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<TotalTravelDistanceResponse> getActiveTotalTravelDistances() {
+        return getTotalTravelDistances(new ArrayList<>(courierStates.keySet()));
     }
 }
@@ -0,0 +1,316 @@
+package com.migros.couriertracking.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
+
+/**
+ * Owns every change to the store catalog.
+ *
+ * Stores are written to the database first and the {@link StoreSpatialIndex}
+ * snapshot is rebuilt and swapped once the transaction has committed, so the
+ * ingestion path keeps reading the previous snapshot without locking and never
+ * sees a store that was rolled back. Changes are serialized by a lock rather than
+ * {@code synchronized}, so a virtual thread waiting on the database inside a change
+ * does not pin its carrier.
+ *
+ * When {@code courier.tracking.store.file} points to a stores JSON file, that file
+ * is the source of truth: it is applied on reload and whenever its modification
+ * time changes.
+ */
+@Service
+public class StoreCatalogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreCatalogService.class);
+
+    private final StoreRepository storeRepository;
+    private final StoreEntranceRepository storeEntranceRepository;
+    private final StoreSpatialIndex storeSpatialIndex;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantLock catalogLock = new ReentrantLock();
+
+    @Value("${courier.tracking.store.file:}")
+    private String storeFile;
+
+    private long storeFileLastModified;
+    private boolean loaded;
+
+    public StoreCatalogService(StoreRepository storeRepository,
+            StoreEntranceRepository storeEntranceRepository,
+            StoreSpatialIndex storeSpatialIndex,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.storeRepository = storeRepository;
+        this.storeEntranceRepository = storeEntranceRepository;
+        this.storeSpatialIndex = storeSpatialIndex;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public List<Store> getStores() {
+        return storeSpatialIndex.getStores();
+    }
+
+    /**
+     * Saves the stores in the given JSON resource without rebuilding the index.
+     */
+    public void importStores(Resource resource) throws IOException {
+        catalogLock.lock();
+        try {
+            try (InputStream inputStream = resource.getInputStream()) {
+                List<Store> stores = readStores(inputStream);
+                transactionTemplate.executeWithoutResult(status -> storeRepository.saveAll(stores));
+
+                logger.info("Imported {} stores from {}", stores.size(), resource.getDescription());
+            }
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a store whose geofence is the given polygon, or a circle of the given
+     * radius when there is none. A null radius uses {@code courier.tracking.store.radius}.
+     */
+    public Store addStore(String name, double latitude, double longitude, Double radius, double[][] polygon) {
+        validatePolygon(polygon);
+        catalogLock.lock();
+        try {
+            Store saved = transactionTemplate.execute(status -> {
+                if (storeRepository.findByName(name).isPresent()) {
+                    throw new IllegalStateException("Store already exists: " + name);
+                }
+                Store store = new Store(name, latitude, longitude);
+                store.setRadius(radius);
+                store.setPolygon(polygon);
+                return storeRepository.save(store);
+            });
+            storeSpatialIndex.rebuild();
+
+            logger.info("Added store: {} at coordinates ({}, {})", name, latitude, longitude);
+            return saved;
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    public Optional<Store> updateStore(Long id, String name, double latitude, double longitude,
+            Double radius, double[][] polygon) {
+        validatePolygon(polygon);
+        catalogLock.lock();
+        try {
+            Optional<Store> updated = transactionTemplate.execute(status -> storeRepository.findById(id)
+                    .map(store -> {
+                        Optional<Store> sameName = storeRepository.findByName(name);
+                        if (sameName.isPresent() && !sameName.get().getId().equals(id)) {
+                            throw new IllegalStateException("Store already exists: " + name);
+                        }
+                        store.setName(name);
+                        store.setLatitude(latitude);
+                        store.setLongitude(longitude);
+                        store.setRadius(radius);
+                        store.setPolygon(polygon);
+                        return storeRepository.save(store);
+                    }));
+
+            if (updated.isPresent()) {
+                storeSpatialIndex.rebuild();
+                logger.info("Updated store {}: {} at coordinates ({}, {})", id, name, latitude, longitude);
+            }
+            return updated;
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the store, returning false if it does not exist. Stores that already
+     * have entrances recorded cannot be deleted.
+     */
+    public boolean deleteStore(Long id) {
+        catalogLock.lock();
+        try {
+            Boolean deleted = transactionTemplate.execute(status -> {
+                if (!storeRepository.existsById(id)) {
+                    return false;
+                }
+                if (storeEntranceRepository.existsByStoreId(id)) {
+                    throw new IllegalStateException("Store " + id + " has recorded entrances");
+                }
+                storeRepository.deleteById(id);
+                return true;
+            });
+
+            if (Boolean.TRUE.equals(deleted)) {
+                storeSpatialIndex.rebuild();
+                logger.info("Deleted store {}", id);
+                return true;
+            }
+            return false;
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the configured store file, if any, and rebuilds the index.
+     *
+     * @return the number of stores in the new snapshot
+     */
+    public int reload() throws IOException {
+        catalogLock.lock();
+        try {
+            Path path = storeFilePath();
+            if (path != null && Files.exists(path)) {
+                applyStoreFile(path);
+            }
+            storeSpatialIndex.rebuild();
+            loaded = true;
+            return storeSpatialIndex.size();
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the catalog when the store file changed. Does nothing until the
+     * startup load has run, so it never races the initial import.
+     */
+    @Scheduled(fixedDelayString = "${courier.tracking.store.file-check-interval:5000}")
+    public void checkStoreFile() {
+        catalogLock.lock();
+        try {
+            Path path = storeFilePath();
+            if (!loaded || path == null || !Files.exists(path)) {
+                return;
+            }
+
+            try {
+                if (Files.getLastModifiedTime(path).toMillis() != storeFileLastModified) {
+                    logger.info("Store file {} changed, reloading store catalog", path);
+                    reload();
+                }
+            } catch (Exception e) {
+                logger.error("Error reloading store catalog from " + path, e);
+            }
+        } finally {
+            catalogLock.unlock();
+        }
+    }
+
+    private void applyStoreFile(Path path) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        List<Store> fileStores;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            fileStores = readStores(inputStream);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Store> existing = storeRepository.findAll().stream()
+                    .collect(Collectors.toMap(Store::getName, Function.identity()));
+
+            List<Store> changed = new ArrayList<>();
+            for (Store fileStore : fileStores) {
+                Store store = existing.remove(fileStore.getName());
+                if (store == null) {
+                    changed.add(fileStore);
+                } else if (!Objects.equals(store.getLatitude(), fileStore.getLatitude())
+                        || !Objects.equals(store.getLongitude(), fileStore.getLongitude())
+                        || !Objects.equals(store.getRadius(), fileStore.getRadius())
+                        || !Objects.deepEquals(store.getPolygon(), fileStore.getPolygon())) {
+                    store.setLatitude(fileStore.getLatitude());
+                    store.setLongitude(fileStore.getLongitude());
+                    store.setRadius(fileStore.getRadius());
+                    store.setPolygon(fileStore.getPolygon());
+                    changed.add(store);
+                }
+            }
+            storeRepository.saveAll(changed);
+
+            List<Store> removed = new ArrayList<>();
+            for (Store store : existing.values()) {
+                if (storeEntranceRepository.existsByStoreId(store.getId())) {
+                    logger.warn("Keeping store '{}' missing from {} because it has recorded entrances",
+                            store.getName(), path);
+                } else {
+                    removed.add(store);
+                }
+            }
+            storeRepository.deleteAll(removed);
+
+            logger.info("Applied store file {}: {} added or changed, {} removed", path, changed.size(), removed.size());
+        });
+
+        storeFileLastModified = lastModified;
+    }
+
+    private List<Store> readStores(InputStream inputStream) throws IOException {
+        List<Map<String, Object>> storeData = objectMapper.readValue(
+                inputStream, new TypeReference<List<Map<String, Object>>>() {
+                });
+
+        Map<String, Store> stores = new LinkedHashMap<>();
+        for (Map<String, Object> storeMap : storeData) {
+            String name = (String) storeMap.get("name");
+            Double lat = ((Number) storeMap.get("lat")).doubleValue();
+            Double lng = ((Number) storeMap.get("lng")).doubleValue();
+
+            Store store = new Store(name, lat, lng);
+            if (storeMap.get("radius") != null) {
+                store.setRadius(((Number) storeMap.get("radius")).doubleValue());
+            }
+            if (storeMap.get("polygon") != null) {
+                store.setPolygon(objectMapper.convertValue(storeMap.get("polygon"), double[][].class));
+                validatePolygon(store.getPolygon());
+            }
+            stores.put(name, store);
+        }
+        return new ArrayList<>(stores.values());
+    }
+
+    private static void validatePolygon(double[][] polygon) {
+        if (polygon == null) {
+            return;
+        }
+        if (polygon.length < 3) {
+            throw new IllegalArgumentException("Polygon needs at least 3 vertices");
+        }
+        for (double[] vertex : polygon) {
+            if (vertex == null || vertex.length != 2 || Math.abs(vertex[0]) > 90 || Math.abs(vertex[1]) > 180) {
+                throw new IllegalArgumentException("Polygon vertices must be [latitude, longitude] pairs");
+            }
+        }
+    }
+
+    private Path storeFilePath() {
+        return storeFile == null || storeFile.isBlank() ? null : Paths.get(storeFile);
+    }
+}
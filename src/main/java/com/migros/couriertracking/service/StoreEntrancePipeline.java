@@ -0,0 +1,260 @@
+package com.migros.couriertracking.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.migros.couriertracking.entity.StoreEntrance;
+import com.migros.couriertracking.observer.StoreEntranceObserver;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Moves store entrance persistence and observer notification off the ingestion path.
+ *
+ * Both ends of a store visit go through the pipeline: an entrance without an exit
+ * time is inserted as a new row, and one with an exit time sets the exit time of
+ * the row of the same visit. Since a single writer takes events in order, the exit
+ * of a visit is never written before its entrance.
+ *
+ * Entrances are queued, written by a single writer thread in batches of up to
+ * {@code courier.tracking.entrance.batch-size}, and then handed to every observer.
+ * Each observer has its own single-threaded executor, so a failing observer never
+ * affects the others. The observer queues are bounded too: once an observer falls
+ * that far behind, its further events are dropped and counted in
+ * {@code courier.entrance.observer.dropped}, so neither the writer nor the other
+ * observers ever wait for it. When the entrance queue fills up the producer
+ * blocks, which pushes back through the ingestion shards to the clients.
+ *
+ * The writer and observer workers run on virtual threads when
+ * {@code spring.threads.virtual.enabled} is set, so a worker blocked on the
+ * database or a slow observer does not hold a platform thread.
+ */
+@Component
+public class StoreEntrancePipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreEntrancePipeline.class);
+
+    private static final StoreEntrance POISON_PILL = new StoreEntrance();
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final StoreEntranceRepository storeEntranceRepository;
+    private final List<StoreEntranceObserver> storeEntranceObservers;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Counter droppedEntrances;
+
+    @Value("${courier.tracking.entrance.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${courier.tracking.entrance.batch-size:100}")
+    private int batchSize;
+
+    @Value("${courier.tracking.entrance.observer-queue-capacity:1000}")
+    private int observerQueueCapacity;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private BlockingQueue<StoreEntrance> queue;
+    private Thread writerThread;
+    private List<ObserverDispatcher> dispatchers;
+
+    public StoreEntrancePipeline(StoreEntranceRepository storeEntranceRepository,
+            List<StoreEntranceObserver> storeEntranceObservers,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.storeEntranceRepository = storeEntranceRepository;
+        this.storeEntranceObservers = storeEntranceObservers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.droppedEntrances = Counter.builder("courier.entrance.dropped")
+                .description("Store entrances dropped after repeated persistence failures")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        dispatchers = new ArrayList<>(storeEntranceObservers.size());
+        for (StoreEntranceObserver observer : storeEntranceObservers) {
+            ThreadFactory threadFactory = threadBuilder(
+                    "store-entrance-observer-" + observer.getClass().getSimpleName()).factory();
+            Counter droppedEvents = Counter.builder("courier.entrance.observer.dropped")
+                    .description("Store entrance events not handed to an observer because its queue was full")
+                    .tag("observer", observer.getClass().getSimpleName())
+                    .register(meterRegistry);
+            dispatchers.add(new ObserverDispatcher(observer, observerQueueCapacity, threadFactory, droppedEvents));
+        }
+
+        Gauge.builder("courier.entrance.queued", this, StoreEntrancePipeline::getQueuedCount)
+                .description("Store entrances waiting to be persisted")
+                .register(meterRegistry);
+
+        writerThread = threadBuilder("store-entrance-writer").start(this::writeLoop);
+    }
+
+    /**
+     * Writes and dispatches everything still queued, then stops the worker threads.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        queue.put(POISON_PILL);
+        writerThread.join();
+
+        for (ObserverDispatcher dispatcher : dispatchers) {
+            dispatcher.shutdown();
+        }
+
+        logger.info("Stopped store entrance pipeline");
+    }
+
+    /**
+     * Queues an entrance, or the exit of a visit if its exit time is set, for
+     * persistence and observer notification, blocking while the queue is full.
+     */
+    public void publish(StoreEntrance storeEntrance) {
+        try {
+            queue.put(storeEntrance);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while queueing store entrance for courier: {}", storeEntrance.getCourierId());
+        }
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    private Thread.Builder threadBuilder(String name) {
+        return virtualThreads ? Thread.ofVirtual().name(name) : Thread.ofPlatform().name(name).daemon(true);
+    }
+
+    private void writeLoop() {
+        boolean running = true;
+
+        while (running) {
+            List<StoreEntrance> batch = new ArrayList<>(batchSize);
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+
+            if (batch.remove(POISON_PILL)) {
+                running = false;
+                queue.drainTo(batch);
+            }
+
+            if (!batch.isEmpty() && writeBatch(batch)) {
+                for (StoreEntrance storeEntrance : batch) {
+                    for (ObserverDispatcher dispatcher : dispatchers) {
+                        dispatcher.dispatch(storeEntrance);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean writeBatch(List<StoreEntrance> batch) {
+        for (int attempt = 1; attempt <= MAX_WRITE_ATTEMPTS; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<StoreEntrance> entrances = new ArrayList<>(batch.size());
+                    List<StoreEntrance> exits = new ArrayList<>();
+                    for (StoreEntrance storeEntrance : batch) {
+                        if (storeEntrance.getExitTime() == null) {
+                            entrances.add(storeEntrance);
+                        } else {
+                            exits.add(storeEntrance);
+                        }
+                    }
+                    if (!entrances.isEmpty()) {
+                        storeEntranceRepository.saveAll(entrances);
+                    }
+
+                    if (!exits.isEmpty()) {
+                        // The exits are native updates, so the inserts of their entrances must be sent first
+                        storeEntranceRepository.flush();
+                        storeEntranceRepository.recordExits(exits);
+                    }
+                });
+
+                logger.debug("Persisted {} store entrance events", batch.size());
+                return true;
+            } catch (Exception e) {
+                logger.error("Error persisting " + batch.size() + " store entrances (attempt " + attempt + ")", e);
+                // Ids taken from the sequence by the rolled back attempt would turn the retry into merges
+                for (StoreEntrance storeEntrance : batch) {
+                    if (storeEntrance.getExitTime() == null) {
+                        storeEntrance.setId(null);
+                    }
+                }
+            }
+        }
+
+        droppedEntrances.increment(batch.size());
+        logger.error("Dropping {} store entrances after {} failed attempts", batch.size(), MAX_WRITE_ATTEMPTS);
+        return false;
+    }
+
+    private static class ObserverDispatcher {
+        final StoreEntranceObserver observer;
+        final ExecutorService executor;
+
+        ObserverDispatcher(StoreEntranceObserver observer, int queueCapacity, ThreadFactory threadFactory,
+                Counter droppedEvents) {
+            this.observer = observer;
+            // Running a rejected event on the caller would stall the writer behind a slow observer
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                    (task, executor) -> {
+                        droppedEvents.increment();
+                        logger.debug("Dropping store entrance event for full observer {}",
+                                observer.getClass().getSimpleName());
+                    });
+        }
+
+        void dispatch(StoreEntrance storeEntrance) {
+            executor.execute(() -> {
+                try {
+                    if (storeEntrance.getExitTime() == null) {
+                        observer.onStoreEntrance(storeEntrance);
+                    } else {
+                        observer.onStoreExit(storeEntrance);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error notifying store entrance observer " + observer.getClass().getSimpleName(), e);
+                }
+            });
+        }
+
+        void shutdown() throws InterruptedException {
+            executor.shutdown();
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("Store entrance observer {} did not finish in time", observer.getClass().getSimpleName());
+                executor.shutdownNow();
+            }
+        }
+    }
+}
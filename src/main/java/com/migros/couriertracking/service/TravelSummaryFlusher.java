@@ -0,0 +1,343 @@
+package com.migros.couriertracking.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.migros.couriertracking.entity.CourierTravelSummary;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepository;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepositoryCustom.DistanceIncrement;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind persistence of courier travel summaries.
+ *
+ * The ingestion path only marks a courier as dirty; pending distances are drained
+ * and written here every {@code courier.tracking.sync.flush-interval} ms, in
+ * batches of {@code courier.tracking.sync.batch-size} couriers per transaction.
+ * A courier is marked dirty every {@code courier.tracking.sync.frequency} fixes or
+ * on its first fix after {@code courier.tracking.sync.timeout} ms, so one that
+ * stops sending fixes keeps its pending distance until the next write-ahead log
+ * checkpoint, its eviction or shutdown, which flush every tracked courier.
+ *
+ * Since every total is written here, the flusher also caches the persisted total
+ * of each courier it was asked for, so reads add the in-memory pending distance to
+ * a cached total instead of querying or flushing. A committed flush adds its
+ * increments to the cached totals, and a total loaded while a flush was running
+ * is not cached, since it may or may not include that flush. Entries not written
+ * or loaded for {@code courier.tracking.sync.total-cache-ttl} ms are dropped.
+ */
+@Component
+public class TravelSummaryFlusher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TravelSummaryFlusher.class);
+
+    // Keeps IN lists well below the bind parameter limits of common databases
+    private static final int TOTALS_QUERY_BATCH_SIZE = 1000;
+
+    private final CourierTravelSummaryRepository travelSummaryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Queue<CourierState> dirtyStates = new ConcurrentLinkedQueue<>();
+    private final Map<String, PersistedTotal> persistedTotals = new ConcurrentHashMap<>();
+
+    // Loads are only cached if no flush started or was running while they read
+    private final AtomicLong flushesStarted = new AtomicLong();
+    private final AtomicLong flushesFinished = new AtomicLong();
+
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+    private final Counter totalCacheHits;
+    private final Counter totalCacheMisses;
+
+    @Value("${courier.tracking.sync.batch-size:500}")
+    private int batchSize;
+
+    @Value("${courier.tracking.sync.total-cache-ttl:300000}")
+    private long totalCacheTtlMs;
+
+    public TravelSummaryFlusher(CourierTravelSummaryRepository travelSummaryRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.travelSummaryRepository = travelSummaryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        this.flushTimer = Timer.builder("courier.sync.flush")
+                .description("Time to write one batch of travel summaries")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("courier.sync.failures")
+                .description("Travel summary batches that failed to write and were requeued")
+                .register(meterRegistry);
+        Gauge.builder("courier.sync.dirty", dirtyStates, Queue::size)
+                .description("Couriers waiting for their travel summary to be written")
+                .register(meterRegistry);
+        this.totalCacheHits = totalCacheCounter(meterRegistry, "hit");
+        this.totalCacheMisses = totalCacheCounter(meterRegistry, "miss");
+    }
+
+    private static Counter totalCacheCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("courier.sync.total-cache")
+                .description("Persisted total lookups answered from the cache or the database")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    void markDirty(CourierState state) {
+        if (state.markDirty()) {
+            dirtyStates.add(state);
+        }
+    }
+
+    int getDirtyCount() {
+        return dirtyStates.size();
+    }
+
+    /**
+     * Flushes the couriers that were dirty when the flush started. Couriers marked
+     * dirty while flushing are left for the next run.
+     */
+    @Scheduled(fixedDelayString = "${courier.tracking.sync.flush-interval:1000}")
+    public void flush() {
+        flushQueued();
+    }
+
+    /**
+     * Same as {@link #flush()}.
+     *
+     * @return {@code false} if any batch failed and was requeued
+     */
+    boolean flushQueued() {
+        boolean flushed = true;
+        int remaining = dirtyStates.size();
+        List<CourierState> batch = new ArrayList<>(Math.min(remaining, batchSize));
+
+        while (remaining-- > 0) {
+            CourierState state = dirtyStates.poll();
+            if (state == null) {
+                break;
+            }
+            state.clearDirty();
+            batch.add(state);
+
+            if (batch.size() == batchSize) {
+                flushed &= flushStates(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            flushed &= flushStates(batch);
+        }
+        return flushed;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.info("Flushing {} dirty courier travel summaries before shutdown", dirtyStates.size());
+        flush();
+    }
+
+    /**
+     * Drains the pending distance of the given couriers and writes it in a single
+     * transaction. On failure the distance is put back and the couriers are queued
+     * for the next flush.
+     *
+     * @return {@code false} if the write failed
+     */
+    boolean flushStates(List<CourierState> states) {
+        Map<String, PendingSync> pendingSyncs = new LinkedHashMap<>();
+        for (CourierState state : states) {
+            CourierState.DrainedDistance drained = state.drainPendingDistance();
+            if (drained.distance() > 0) {
+                pendingSyncs.put(state.getCourierId(), new PendingSync(state, drained));
+            }
+        }
+
+        if (pendingSyncs.isEmpty()) {
+            return true;
+        }
+
+        long start = System.nanoTime();
+        flushesStarted.incrementAndGet();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeSummaries(pendingSyncs));
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            // Only committed increments go into the cache
+            long now = System.currentTimeMillis();
+            pendingSyncs.forEach((courierId, pendingSync) -> persistedTotals.computeIfPresent(courierId,
+                    (id, cached) -> new PersistedTotal(cached.total + pendingSync.drained.distance(), now)));
+
+            logger.debug("Flushed travel distance of {} couriers to database", pendingSyncs.size());
+            return true;
+        } catch (Exception e) {
+            flushFailures.increment();
+            for (PendingSync pendingSync : pendingSyncs.values()) {
+                pendingSync.state.restorePendingDistance(pendingSync.drained.distance());
+                markDirty(pendingSync.state);
+            }
+            logger.error("Error flushing travel distance of " + pendingSyncs.size() + " couriers to database", e);
+            return false;
+        } finally {
+            flushesFinished.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds the pending distances to the totals with one batched increment.
+     */
+    private void writeSummaries(Map<String, PendingSync> pendingSyncs) {
+        List<DistanceIncrement> increments = new ArrayList<>(pendingSyncs.size());
+        for (PendingSync pendingSync : pendingSyncs.values()) {
+            CourierState.DrainedDistance drained = pendingSync.drained;
+            increments.add(new DistanceIncrement(pendingSync.state.getCourierId(), drained.distance(),
+                    drained.lastTime(), drained.lastLatitude(), drained.lastLongitude(), drained.lastRecordId()));
+        }
+        travelSummaryRepository.addDistances(increments);
+    }
+
+    /**
+     * @return the persisted total distance of the courier, loaded into the cache on a miss
+     */
+    double getPersistedTotal(String courierId) {
+        PersistedTotal cached = persistedTotals.get(courierId);
+        if (cached != null) {
+            totalCacheHits.increment();
+            return cached.total;
+        }
+
+        totalCacheMisses.increment();
+        long loadStarted = startLoad();
+        double total = travelSummaryRepository.findByCourierId(courierId)
+                .map(CourierTravelSummary::getTotalDistance)
+                .orElse(0.0);
+        cacheLoadedTotal(courierId, total, loadStarted, System.currentTimeMillis());
+        return total;
+    }
+
+    /**
+     * Returns the persisted total distance of each courier. Cache misses are loaded
+     * with one IN query per {@value #TOTALS_QUERY_BATCH_SIZE} couriers.
+     */
+    Map<String, Double> getPersistedTotals(Collection<String> courierIds) {
+        Map<String, Double> totals = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String courierId : courierIds) {
+            PersistedTotal cached = persistedTotals.get(courierId);
+            if (cached != null) {
+                totals.put(courierId, cached.total);
+            } else {
+                misses.add(courierId);
+            }
+        }
+        totalCacheHits.increment(totals.size());
+        totalCacheMisses.increment(misses.size());
+
+        long now = System.currentTimeMillis();
+        for (int from = 0; from < misses.size(); from += TOTALS_QUERY_BATCH_SIZE) {
+            List<String> batch = misses.subList(from, Math.min(from + TOTALS_QUERY_BATCH_SIZE, misses.size()));
+            long loadStarted = startLoad();
+            Map<String, Double> loaded = new HashMap<>();
+            for (CourierTravelSummary summary : travelSummaryRepository.findByCourierIdIn(batch)) {
+                loaded.put(summary.getCourierId(), summary.getTotalDistance());
+            }
+            for (String courierId : batch) {
+                double total = loaded.getOrDefault(courierId, 0.0);
+                cacheLoadedTotal(courierId, total, loadStarted, now);
+                totals.put(courierId, total);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Loads the persisted summaries of the given couriers with one IN query per
+     * {@value #TOTALS_QUERY_BATCH_SIZE} couriers, bypassing the total cache.
+     */
+    Map<String, CourierTravelSummary> getPersistedSummaries(Collection<String> courierIds) {
+        List<String> ids = new ArrayList<>(courierIds);
+        Map<String, CourierTravelSummary> summaries = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += TOTALS_QUERY_BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + TOTALS_QUERY_BATCH_SIZE, ids.size()));
+            for (CourierTravelSummary summary : travelSummaryRepository.findByCourierIdIn(batch)) {
+                summaries.put(summary.getCourierId(), summary);
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the number of flushes started before the load, or {@code -1} if a flush
+     *         is running and the load must not be cached
+     */
+    private long startLoad() {
+        long finished = flushesFinished.get();
+        long started = flushesStarted.get();
+        return started == finished ? started : -1;
+    }
+
+    /**
+     * Caches a loaded total unless a flush started since the load began. The check
+     * runs inside the map update, so it is ordered against a flush adding to the
+     * same entry.
+     */
+    private void cacheLoadedTotal(String courierId, double total, long loadStarted, long now) {
+        if (loadStarted < 0) {
+            return;
+        }
+        persistedTotals.compute(courierId, (id, cached) -> cached != null || flushesStarted.get() != loadStarted
+                ? cached
+                : new PersistedTotal(total, now));
+    }
+
+    @Scheduled(fixedDelayString = "${courier.tracking.sync.total-cache-ttl:300000}")
+    public void expireCachedTotals() {
+        expireCachedTotals(System.currentTimeMillis());
+    }
+
+    void expireCachedTotals(long currentTime) {
+        long cachedBefore = currentTime - totalCacheTtlMs;
+        persistedTotals.values().removeIf(cached -> cached.cachedAt < cachedBefore);
+    }
+
+    private static class PersistedTotal {
+        final double total;
+        final long cachedAt;
+
+        PersistedTotal(double total, long cachedAt) {
+            this.total = total;
+            this.cachedAt = cachedAt;
+        }
+    }
+
+    private static class PendingSync {
+        final CourierState state;
+        final CourierState.DrainedDistance drained;
+
+        PendingSync(CourierState state, CourierState.DrainedDistance drained) {
+            this.state = state;
+            this.drained = drained;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.migros.couriertracking.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.migros.couriertracking.dto.StoreVisit;
+import com.migros.couriertracking.dto.TripSummaryResponse;
+import com.migros.couriertracking.entity.StoreEntrance;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+import com.migros.couriertracking.rollup.DistanceRollupStore;
+
+/**
+ * Answers what a courier did in a time range: the distance comes from the
+ * {@link DistanceRollupStore} buckets and the store visits from the persisted
+ * entrances, with exit and dwell time once the visit has ended. Entrances are
+ * written in batches off the ingestion path, so the latest ones can show up a
+ * moment after their distance.
+ */
+@Service
+@Transactional(readOnly = true)
+public class TripQueryService {
+
+    // 9999-12-31T23:59:59.999Z, the latest time a SQL timestamp portably holds
+    private static final long MAX_TIME = 253402300799999L;
+
+    private final DistanceRollupStore distanceRollupStore;
+    private final StoreEntranceRepository storeEntranceRepository;
+
+    public TripQueryService(DistanceRollupStore distanceRollupStore,
+            StoreEntranceRepository storeEntranceRepository) {
+        this.distanceRollupStore = distanceRollupStore;
+        this.storeEntranceRepository = storeEntranceRepository;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code from} or {@code to} is before the
+     *         epoch or after the year 9999
+     */
+    public TripSummaryResponse getTrip(String courierId, long from, long to) {
+        if (from < 0 || to > MAX_TIME) {
+            throw new IllegalArgumentException("Trip range must lie between 0 and " + MAX_TIME);
+        }
+
+        double distance = distanceRollupStore.getDistance(courierId, from, to);
+
+        List<StoreVisit> storeVisits = new ArrayList<>();
+        for (StoreEntrance entrance : storeEntranceRepository.findByCourierIdInPeriod(courierId,
+                toDateTime(from), toDateTime(to))) {
+            Long exitTime = entrance.getExitTime() != null ? toEpochMilli(entrance.getExitTime()) : null;
+            storeVisits.add(new StoreVisit(entrance.getStore().getId(), entrance.getStore().getName(),
+                    toEpochMilli(entrance.getEntranceTime()), exitTime));
+        }
+
+        return new TripSummaryResponse(courierId, from, to, distance, storeVisits);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long time) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    }
+}
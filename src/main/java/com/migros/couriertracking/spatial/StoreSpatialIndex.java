@@ -0,0 +1,363 @@
+package com.migros.couriertracking.spatial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.util.DistanceCalculator;
+
+/**
+ * Grid based spatial index over all stores.
+ *
+ * A store's geofence is either a circle of its own radius, falling back to
+ * {@code courier.tracking.store.radius}, or a polygon, which takes precedence.
+ * Each store is registered in every grid cell touched by its geofence envelope, so
+ * a location lookup is a single cell read that yields only the stores that can
+ * possibly contain the point. Cells are sized from the default radius, so a
+ * geofence that would cover more than {@value #MAX_STORE_CELLS} cells is kept in a
+ * separate list that every lookup scans instead; there are few of them, and they
+ * would otherwise fill the grid. Those candidates are then rejected against a
+ * precomputed lat/lng bounding box with four comparisons, and only the survivors
+ * pay for an exact distance calculation or point-in-polygon test. Store
+ * coordinates, boxes and polygon edges are kept in primitive arrays, so a lookup
+ * never unboxes the {@link Store} entity fields.
+ *
+ * Polygon edges are precomputed as their latitude span, a base vertex and the
+ * longitude change per degree of latitude, with horizontal edges left out. The
+ * ray casting test is then one multiply-add per edge whose span contains the
+ * point's latitude, without divisions.
+ *
+ * The index is built from {@link StoreRepository} at startup and whenever the store
+ * catalog changes. Every rebuild publishes a new immutable snapshot with a single
+ * volatile write, so lookups never touch the database, never lock, and always see
+ * one consistent catalog.
+ */
+@Component
+public class StoreSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoreSpatialIndex.class);
+
+    private static final double EARTH_RADIUS_METERS = 6371000;
+    private static final double METERS_PER_DEGREE_LATITUDE = EARTH_RADIUS_METERS * Math.PI / 180;
+    private static final double ENVELOPE_MARGIN = 1.01;
+    private static final double MIN_COS_LATITUDE = 0.01;
+    private static final long MAX_STORE_CELLS = 16;
+
+    private final StoreRepository storeRepository;
+    private final DistanceCalculator distanceCalculator;
+
+    @Value("${courier.tracking.store.radius:100}")
+    private double storeRadius;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public StoreSpatialIndex(StoreRepository storeRepository, DistanceCalculator distanceCalculator) {
+        this.storeRepository = storeRepository;
+        this.distanceCalculator = distanceCalculator;
+    }
+
+    public void rebuild() {
+        List<Store> stores = storeRepository.findAll();
+        Snapshot rebuilt = Snapshot.build(stores, storeRadius);
+        snapshot = rebuilt;
+
+        logger.info("Store spatial index built with {} stores in {} cells and {} large geofences",
+                stores.size(), rebuilt.cells.size, rebuilt.largeStores.length);
+    }
+
+    /**
+     * Returns the stores whose geofence contains the given point. Allocates only
+     * when at least one store is in range.
+     */
+    public List<Store> findStoresInRange(double latitude, double longitude) {
+        Snapshot current = snapshot;
+        List<Store> inRange = null;
+        int[] candidates = current.cells.get(current.cellKey(latitude, longitude));
+        if (candidates != null) {
+            inRange = addStoresInRange(current, candidates, latitude, longitude, inRange);
+        }
+        inRange = addStoresInRange(current, current.largeStores, latitude, longitude, inRange);
+
+        return inRange != null ? inRange : Collections.emptyList();
+    }
+
+    private List<Store> addStoresInRange(Snapshot current, int[] candidates, double latitude, double longitude,
+            List<Store> inRange) {
+        for (int i : candidates) {
+            if (latitude < current.minLatitudes[i] || latitude > current.maxLatitudes[i]
+                    || longitude < current.minLongitudes[i] || longitude > current.maxLongitudes[i]) {
+                continue;
+            }
+
+            boolean contained;
+            if (current.edgeCounts[i] > 0) {
+                contained = current.polygonContains(i, latitude, longitude);
+            } else {
+                contained = distanceCalculator.calculateDistance(
+                        latitude, longitude, current.latitudes[i], current.longitudes[i]) <= current.radii[i];
+            }
+            if (contained) {
+                if (inRange == null) {
+                    inRange = new ArrayList<>(2);
+                }
+                inRange.add(current.stores[i]);
+            }
+        }
+        return inRange;
+    }
+
+    public int size() {
+        return snapshot.stores.length;
+    }
+
+    int getCellCount() {
+        return snapshot.cells.size;
+    }
+
+    /**
+     * Returns the stores of the current snapshot.
+     */
+    public List<Store> getStores() {
+        return List.of(snapshot.stores);
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = build(Collections.emptyList(), 0);
+
+        final Store[] stores;
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] minLatitudes;
+        final double[] maxLatitudes;
+        final double[] minLongitudes;
+        final double[] maxLongitudes;
+        final double[] radii;
+        // Polygon edges of store i are [edgeOffsets[i], edgeOffsets[i] + edgeCounts[i])
+        final int[] edgeOffsets;
+        final int[] edgeCounts;
+        final double[] edgeMinLatitudes;
+        final double[] edgeMaxLatitudes;
+        final double[] edgeBaseLatitudes;
+        final double[] edgeBaseLongitudes;
+        final double[] edgeSlopes;
+        final double cellSizeDegrees;
+        final CellTable cells;
+        // Stores whose geofence covers too many cells to register in each of them
+        final int[] largeStores;
+
+        private Snapshot(int storeCount, int edgeCount, double cellSizeDegrees, CellTable cells, int[] largeStores) {
+            this.stores = new Store[storeCount];
+            this.latitudes = new double[storeCount];
+            this.longitudes = new double[storeCount];
+            this.minLatitudes = new double[storeCount];
+            this.maxLatitudes = new double[storeCount];
+            this.minLongitudes = new double[storeCount];
+            this.maxLongitudes = new double[storeCount];
+            this.radii = new double[storeCount];
+            this.edgeOffsets = new int[storeCount];
+            this.edgeCounts = new int[storeCount];
+            this.edgeMinLatitudes = new double[edgeCount];
+            this.edgeMaxLatitudes = new double[edgeCount];
+            this.edgeBaseLatitudes = new double[edgeCount];
+            this.edgeBaseLongitudes = new double[edgeCount];
+            this.edgeSlopes = new double[edgeCount];
+            this.cellSizeDegrees = cellSizeDegrees;
+            this.cells = cells;
+            this.largeStores = largeStores;
+        }
+
+        static Snapshot build(List<Store> stores, double radiusMeters) {
+            // Cells twice the radius tall keep the per-store fan-out to a handful of cells.
+            double cellSizeDegrees = Math.max(radiusMeters, 1.0) * 2 / METERS_PER_DEGREE_LATITUDE;
+            Map<Long, List<Integer>> cellStores = new HashMap<>();
+            List<Integer> largeStores = new ArrayList<>();
+
+            int storeCount = stores.size();
+            int edgeCount = 0;
+            double[] latitudes = new double[storeCount];
+            double[] longitudes = new double[storeCount];
+            double[] radii = new double[storeCount];
+            for (int i = 0; i < storeCount; i++) {
+                Store store = stores.get(i);
+                latitudes[i] = store.getLatitude();
+                longitudes[i] = store.getLongitude();
+                radii[i] = store.getRadius() != null ? store.getRadius() : radiusMeters;
+                if (store.getPolygon() != null) {
+                    edgeCount += store.getPolygon().length;
+                }
+            }
+
+            double[][] boxes = new double[storeCount][];
+            for (int i = 0; i < storeCount; i++) {
+                double[][] polygon = stores.get(i).getPolygon();
+                if (polygon != null) {
+                    boxes[i] = polygonBox(polygon);
+                } else {
+                    double latDelta = radii[i] * ENVELOPE_MARGIN / METERS_PER_DEGREE_LATITUDE;
+                    double lngDelta = latDelta / Math.max(Math.cos(Math.toRadians(latitudes[i])), MIN_COS_LATITUDE);
+                    boxes[i] = new double[] {
+                            latitudes[i] - latDelta, latitudes[i] + latDelta,
+                            longitudes[i] - lngDelta, longitudes[i] + lngDelta };
+                }
+
+                long minRow = cellIndex(boxes[i][0], cellSizeDegrees);
+                long maxRow = cellIndex(boxes[i][1], cellSizeDegrees);
+                long minColumn = cellIndex(boxes[i][2], cellSizeDegrees);
+                long maxColumn = cellIndex(boxes[i][3], cellSizeDegrees);
+                if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > MAX_STORE_CELLS) {
+                    largeStores.add(i);
+                    continue;
+                }
+
+                for (long row = minRow; row <= maxRow; row++) {
+                    for (long column = minColumn; column <= maxColumn; column++) {
+                        cellStores.computeIfAbsent(cellKey(row, column), k -> new ArrayList<>(1)).add(i);
+                    }
+                }
+            }
+
+            CellTable cells = new CellTable(cellStores.size());
+            cellStores.forEach((key, indexes) -> cells.put(key,
+                    indexes.stream().mapToInt(Integer::intValue).toArray()));
+
+            Snapshot snapshot = new Snapshot(storeCount, edgeCount, cellSizeDegrees, cells,
+                    largeStores.stream().mapToInt(Integer::intValue).toArray());
+            int edge = 0;
+            for (int i = 0; i < storeCount; i++) {
+                snapshot.stores[i] = stores.get(i);
+                snapshot.latitudes[i] = latitudes[i];
+                snapshot.longitudes[i] = longitudes[i];
+                snapshot.minLatitudes[i] = boxes[i][0];
+                snapshot.maxLatitudes[i] = boxes[i][1];
+                snapshot.minLongitudes[i] = boxes[i][2];
+                snapshot.maxLongitudes[i] = boxes[i][3];
+                snapshot.radii[i] = radii[i];
+                snapshot.edgeOffsets[i] = edge;
+                double[][] polygon = stores.get(i).getPolygon();
+                if (polygon != null) {
+                    edge = snapshot.addEdges(polygon, edge);
+                }
+                snapshot.edgeCounts[i] = edge - snapshot.edgeOffsets[i];
+            }
+            return snapshot;
+        }
+
+        private static double[] polygonBox(double[][] polygon) {
+            double[] box = {
+                    Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                    Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+            for (double[] vertex : polygon) {
+                box[0] = Math.min(box[0], vertex[0]);
+                box[1] = Math.max(box[1], vertex[0]);
+                box[2] = Math.min(box[2], vertex[1]);
+                box[3] = Math.max(box[3], vertex[1]);
+            }
+            return box;
+        }
+
+        /**
+         * Appends the non-horizontal edges of the polygon, closing it back to the
+         * first vertex, and returns the next free edge slot.
+         */
+        private int addEdges(double[][] polygon, int edge) {
+            for (int v = 0; v < polygon.length; v++) {
+                double[] from = polygon[v];
+                double[] to = polygon[(v + 1) % polygon.length];
+                if (from[0] == to[0]) {
+                    continue;
+                }
+                edgeMinLatitudes[edge] = Math.min(from[0], to[0]);
+                edgeMaxLatitudes[edge] = Math.max(from[0], to[0]);
+                edgeBaseLatitudes[edge] = from[0];
+                edgeBaseLongitudes[edge] = from[1];
+                edgeSlopes[edge] = (to[1] - from[1]) / (to[0] - from[0]);
+                edge++;
+            }
+            return edge;
+        }
+
+        /**
+         * Even-odd ray casting towards increasing longitude. Edge latitude spans are
+         * half-open, so a ray through a vertex is counted once.
+         */
+        boolean polygonContains(int store, double latitude, double longitude) {
+            boolean inside = false;
+            int end = edgeOffsets[store] + edgeCounts[store];
+            for (int e = edgeOffsets[store]; e < end; e++) {
+                if (latitude >= edgeMinLatitudes[e] && latitude < edgeMaxLatitudes[e]
+                        && longitude < edgeBaseLongitudes[e] + (latitude - edgeBaseLatitudes[e]) * edgeSlopes[e]) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        long cellKey(double latitude, double longitude) {
+            return cellKey(cellIndex(latitude, cellSizeDegrees), cellIndex(longitude, cellSizeDegrees));
+        }
+
+        private static long cellIndex(double degrees, double cellSizeDegrees) {
+            return (long) Math.floor(degrees / cellSizeDegrees);
+        }
+
+        private static long cellKey(long row, long column) {
+            return (row << 32) ^ (column & 0xFFFFFFFFL);
+        }
+    }
+
+    /**
+     * Open addressing map from cell key to store indexes, so lookups neither box the
+     * key nor chase hash map nodes.
+     */
+    private static final class CellTable {
+
+        final long[] keys;
+        final int[][] values;
+        final int mask;
+        int size;
+
+        CellTable(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+            this.keys = new long[capacity];
+            this.values = new int[capacity][];
+            this.mask = capacity - 1;
+        }
+
+        void put(long key, int[] value) {
+            int slot = slot(key);
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        int[] get(long key) {
+            int slot = slot(key);
+            int[] value;
+            while ((value = values[slot]) != null) {
+                if (keys[slot] == key) {
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.migros.couriertracking.util;
+
+/**
+ * Strategy Pattern Implementation: equirectangular (flat-earth) approximation.
+ *
+ * Projects both points onto a plane scaled by the cosine of their mean latitude and
+ * takes the Euclidean distance, so a call costs one table lookup and one square root
+ * instead of the trigonometry of {@link HaversineDistanceCalculator}.
+ *
+ * Compared to Haversine the relative error stays below 0.001% for points up to
+ * 10 km apart and below 0.02% up to 200 km apart at latitudes under 60 degrees,
+ * far below GPS accuracy for consecutive fixes and store radius checks. It grows
+ * with distance and latitude and near the poles; {@link HybridDistanceCalculator}
+ * bounds it by falling back to Haversine for long legs.
+ */
+public class EquirectangularDistanceCalculator implements DistanceCalculator {
+
+    private static final double EARTH_RADIUS_METERS = 6371000; // Earth radius in meters
+
+    private static final double COS_TABLE_STEP_DEGREES = 0.1;
+    private static final double[] COS_TABLE = new double[(int) (90 / COS_TABLE_STEP_DEGREES) + 2];
+
+    static {
+        for (int i = 0; i < COS_TABLE.length; i++) {
+            COS_TABLE[i] = Math.cos(Math.toRadians(Math.min(i * COS_TABLE_STEP_DEGREES, 90)));
+        }
+    }
+
+    @Override
+    public double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
+        double deltaLngDegrees = lng2 - lng1;
+        if (deltaLngDegrees > 180) {
+            deltaLngDegrees -= 360;
+        } else if (deltaLngDegrees < -180) {
+            deltaLngDegrees += 360;
+        }
+
+        double x = Math.toRadians(deltaLngDegrees) * cosLatitude((lat1 + lat2) / 2);
+        double y = Math.toRadians(lat2 - lat1);
+
+        return EARTH_RADIUS_METERS * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Cosine of a latitude from a 0.1 degree table with linear interpolation; the
+     * interpolation error is below 4e-7.
+     */
+    static double cosLatitude(double latitudeDegrees) {
+        double position = Math.min(Math.abs(latitudeDegrees), 90) / COS_TABLE_STEP_DEGREES;
+        int index = (int) position;
+        double fraction = position - index;
+        return COS_TABLE[index] + (COS_TABLE[index + 1] - COS_TABLE[index]) * fraction;
+    }
+}
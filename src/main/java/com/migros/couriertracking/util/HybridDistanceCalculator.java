@@ -0,0 +1,32 @@
+package com.migros.couriertracking.util;
+
+/**
+ * Strategy Pattern Implementation: fast approximation for short distances with an
+ * exact fallback.
+ *
+ * Uses the approximate calculator first and only recomputes with the exact one when
+ * the approximate distance exceeds the threshold, so the common case of nearby
+ * points pays for the cheap calculation only.
+ */
+public class HybridDistanceCalculator implements DistanceCalculator {
+
+    private final DistanceCalculator approximateCalculator;
+    private final DistanceCalculator exactCalculator;
+    private final double thresholdMeters;
+
+    public HybridDistanceCalculator(DistanceCalculator approximateCalculator, DistanceCalculator exactCalculator,
+            double thresholdMeters) {
+        this.approximateCalculator = approximateCalculator;
+        this.exactCalculator = exactCalculator;
+        this.thresholdMeters = thresholdMeters;
+    }
+
+    @Override
+    public double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
+        double distance = approximateCalculator.calculateDistance(lat1, lng1, lat2, lng2);
+        if (distance <= thresholdMeters) {
+            return distance;
+        }
+        return exactCalculator.calculateDistance(lat1, lng1, lat2, lng2);
+    }
+}
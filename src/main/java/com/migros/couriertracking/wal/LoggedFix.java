@@ -0,0 +1,12 @@
+package com.migros.couriertracking.wal;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+
+/**
+ * A fix read back from the write-ahead log.
+ *
+ * @param recordId where the fix is in the log; ids grow in log order, also across
+ *        restarts, so they tell which fixes a persisted total already includes
+ */
+public record LoggedFix(long recordId, CourierLocationRequest request) {
+}
@@ -0,0 +1,182 @@
+package com.migros.couriertracking.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+
+/**
+ * One memory-mapped, append-only file of the write-ahead log.
+ *
+ * Layout: an 8 byte header (magic, version) followed by records of a payload
+ * length, a CRC32 of the payload and the payload itself: fix time, latitude,
+ * longitude and the UTF-8 courier id. The length is written last, and the unwritten
+ * tail of the file is zero, which reads as the end marker. A record torn by a crash
+ * fails its checksum, and reading stops there. A record is identified by the
+ * segment sequence in the high and its offset in the low 32 bits.
+ *
+ * Appends come from one thread at a time; forcing may run on another thread and
+ * only covers the range up to the end it is given.
+ */
+final class WalSegment {
+
+    static final int HEADER_SIZE = 8;
+
+    private static final int MAGIC = 0x43545731;
+    private static final int VERSION = 1;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int FIX_SIZE = 3 * 8;
+
+    private final Path path;
+    private final long sequence;
+    private final MappedByteBuffer buffer;
+    private final boolean writable;
+
+    private volatile int end;
+    private int forcedEnd;
+
+    private WalSegment(Path path, long sequence, MappedByteBuffer buffer, boolean writable, int end) {
+        this.path = path;
+        this.sequence = sequence;
+        this.buffer = buffer;
+        this.writable = writable;
+        this.end = end;
+        this.forcedEnd = end;
+    }
+
+    /**
+     * Creates a new segment file of the given size for appending.
+     */
+    static WalSegment create(Path path, long sequence, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.force(0, HEADER_SIZE);
+            return new WalSegment(path, sequence, buffer, true, HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Opens an existing segment read-only.
+     */
+    static WalSegment open(Path path, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a write-ahead log segment: " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported write-ahead log segment version " + buffer.getInt(4) + ": " + path);
+            }
+            return new WalSegment(path, sequence, buffer, false, HEADER_SIZE);
+        }
+    }
+
+    static long recordId(long sequence, int offset) {
+        return (sequence << 32) | offset;
+    }
+
+    static int recordSize(byte[] courierId) {
+        return RECORD_HEADER_SIZE + FIX_SIZE + courierId.length;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    /**
+     * Appends a fix.
+     *
+     * @return the id of its record, or {@code -1} if the segment has no room left for it
+     */
+    long append(byte[] courierId, double latitude, double longitude, long time) {
+        int position = end;
+        int size = recordSize(courierId);
+        if (buffer.capacity() - position < size) {
+            return -1;
+        }
+
+        int payload = position + RECORD_HEADER_SIZE;
+        buffer.putLong(payload, time);
+        buffer.putDouble(payload + 8, latitude);
+        buffer.putDouble(payload + 16, longitude);
+        buffer.put(payload + FIX_SIZE, courierId);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(payload, size - RECORD_HEADER_SIZE));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, size - RECORD_HEADER_SIZE);
+
+        end = position + size;
+        return recordId(sequence, position);
+    }
+
+    /**
+     * Flushes the data written before {@code upTo} to the file.
+     */
+    synchronized void force(int upTo) {
+        if (writable && upTo > forcedEnd) {
+            buffer.force(forcedEnd, upTo - forcedEnd);
+            forcedEnd = upTo;
+        }
+    }
+
+    /**
+     * Forces everything written so far; nothing is appended afterwards.
+     */
+    void seal() {
+        force(end);
+    }
+
+    /**
+     * Decodes the fixes in log order, up to the end marker or the first torn record.
+     *
+     * @return {@code true} if the records ended cleanly
+     */
+    boolean read(Consumer<LoggedFix> consumer) {
+        ByteBuffer view = buffer.duplicate();
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= view.capacity()) {
+            int length = view.getInt(position);
+            if (length == 0) {
+                return true;
+            }
+            int payload = position + RECORD_HEADER_SIZE;
+            if (length < FIX_SIZE || length > view.capacity() - payload) {
+                return false;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(view.slice(payload, length));
+            if ((int) crc.getValue() != view.getInt(position + 4)) {
+                return false;
+            }
+
+            byte[] id = new byte[length - FIX_SIZE];
+            view.get(payload + FIX_SIZE, id);
+            consumer.accept(new LoggedFix(recordId(sequence, position), new CourierLocationRequest(
+                    new String(id, StandardCharsets.UTF_8), view.getDouble(payload + 8), view.getDouble(payload + 16),
+                    view.getLong(payload))));
+            position = payload + length;
+        }
+        return true;
+    }
+}
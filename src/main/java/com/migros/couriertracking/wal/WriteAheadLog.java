@@ -0,0 +1,416 @@
+package com.migros.couriertracking.wal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-ahead log of accepted fixes, so travel distance that is still only in
+ * memory can be rebuilt after a crash.
+ *
+ * Fixes are appended to memory-mapped {@link WalSegment} files in
+ * {@code courier.tracking.wal.dir}. Appending only copies the record into the
+ * mapped buffer and returns its log position; callers then wait in
+ * {@link #awaitCommit} until a single committer thread has forced that position to
+ * disk. The committer forces everything appended up to the moment it starts, so
+ * concurrent callers share one force (group commit) and a batch needs only one
+ * wait. A caller that is not committed within {@code courier.tracking.wal.commit-timeout}
+ * ms gives up.
+ *
+ * Segments are never appended to again once sealed. After a checkpoint has written
+ * every fix of the sealed segments to the database, they are deleted with
+ * {@link #truncate}, except the newest one, whose sequence keeps the record ids
+ * growing after a restart.
+ */
+@Component
+public class WriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final long ERROR_BACKOFF_MS = 100;
+
+    private final List<WalSegment> segments = new CopyOnWriteArrayList<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition commitRequested = commitLock.newCondition();
+    private final Condition committed = commitLock.newCondition();
+
+    private final MeterRegistry meterRegistry;
+    private final Counter appendedFixes;
+    private final Counter commitTimeouts;
+    private final Timer commitTimer;
+
+    @Value("${courier.tracking.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${courier.tracking.wal.dir:data/wal}")
+    private String directory;
+
+    @Value("${courier.tracking.wal.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${courier.tracking.wal.commit-timeout:1000}")
+    private long commitTimeoutMs;
+
+    private Path path;
+    private WalSegment current;
+    private long nextSequence;
+
+    // Bytes appended and forced to disk so far, counted across all segments
+    private volatile long appendedPosition;
+    private long committedPosition;
+
+    private Thread committer;
+    private volatile boolean running;
+
+    public WriteAheadLog(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.appendedFixes = Counter.builder("courier.wal.appended")
+                .description("Fixes appended to the write-ahead log")
+                .register(meterRegistry);
+        this.commitTimeouts = Counter.builder("courier.wal.commit-timeouts")
+                .description("Waits for a write-ahead log commit that timed out")
+                .register(meterRegistry);
+        this.commitTimer = Timer.builder("courier.wal.commit")
+                .description("Time to force one group of appended fixes to disk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens the segments left by the previous run read-only, for {@link #replay};
+     * appending always starts a new segment.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            logger.info("Write-ahead log is disabled");
+            return;
+        }
+
+        path = Paths.get(directory);
+        Files.createDirectories(path);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::getFileName));
+        for (Path file : files) {
+            try {
+                long sequence = sequenceOf(file);
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                segments.add(WalSegment.open(file, sequence));
+            } catch (IOException | RuntimeException e) {
+                logger.error("Skipping unreadable write-ahead log segment " + file, e);
+            }
+        }
+
+        Gauge.builder("courier.wal.segments", segments, List::size)
+                .description("Write-ahead log segment files")
+                .register(meterRegistry);
+
+        running = true;
+        committer = new Thread(this::runCommitter, "courier-wal-committer");
+        committer.setDaemon(true);
+        committer.start();
+
+        logger.info("Opened write-ahead log in {} with {} segments", path.toAbsolutePath(), segments.size());
+    }
+
+    /**
+     * Stops the committer after a last commit and seals the current segment.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        commitLock.lock();
+        try {
+            running = false;
+            commitRequested.signal();
+        } finally {
+            commitLock.unlock();
+        }
+        committer.join();
+
+        appendLock.lock();
+        try {
+            if (current != null) {
+                current.seal();
+                current = null;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a fix without waiting for it to reach the disk.
+     *
+     * @return the log position to pass to {@link #awaitCommit}
+     */
+    public long append(CourierLocationRequest request) {
+        return append(request, recordId -> { });
+    }
+
+    /**
+     * Appends a fix and hands its {@link LoggedFix#recordId() record id} to
+     * {@code onAppended} only once it is in the log, before anything else can be
+     * appended or the segment can be sealed. If the append fails, {@code onAppended}
+     * does not run. When the log is disabled the record id is 0.
+     *
+     * @return the log position to pass to {@link #awaitCommit}
+     */
+    public long append(CourierLocationRequest request, LongConsumer onAppended) {
+        if (!enabled) {
+            onAppended.accept(0);
+            return 0;
+        }
+
+        byte[] courierId = request.getCourierId().getBytes(StandardCharsets.UTF_8);
+        long position;
+        appendLock.lock();
+        try {
+            long recordId = current != null ? append(courierId, request) : -1;
+            if (recordId < 0) {
+                roll();
+                recordId = append(courierId, request);
+                if (recordId < 0) {
+                    throw new IllegalStateException("Fix does not fit into an empty write-ahead log segment");
+                }
+            }
+            position = appendedPosition + WalSegment.recordSize(courierId);
+            appendedPosition = position;
+            onAppended.accept(recordId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error appending to write-ahead log", e);
+        } finally {
+            appendLock.unlock();
+        }
+        appendedFixes.increment();
+        return position;
+    }
+
+    private long append(byte[] courierId, CourierLocationRequest request) {
+        return current.append(courierId, request.getLatitude(), request.getLongitude(), request.getTime());
+    }
+
+    /**
+     * Waits until everything appended up to the given position is on disk.
+     *
+     * @return {@code false} if that did not happen within the commit timeout
+     */
+    public boolean awaitCommit(long position) {
+        if (!enabled) {
+            return true;
+        }
+
+        commitLock.lock();
+        try {
+            if (committedPosition >= position) {
+                return true;
+            }
+            commitRequested.signal();
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(commitTimeoutMs);
+            while (committedPosition < position) {
+                if (remaining <= 0 || !running) {
+                    commitTimeouts.increment();
+                    return false;
+                }
+                remaining = committed.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private void runCommitter() {
+        while (true) {
+            commitLock.lock();
+            try {
+                while (running && committedPosition >= appendedPosition) {
+                    commitRequested.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                commitLock.unlock();
+            }
+
+            try {
+                commit();
+            } catch (RuntimeException e) {
+                logger.error("Error forcing write-ahead log to disk", e);
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            if (!running) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forces everything appended so far. Sealed segments were forced when they were
+     * sealed, so only the current one has to be.
+     */
+    private void commit() {
+        WalSegment segment;
+        int end;
+        long position;
+        appendLock.lock();
+        try {
+            segment = current;
+            end = segment != null ? segment.getEnd() : 0;
+            position = appendedPosition;
+        } finally {
+            appendLock.unlock();
+        }
+
+        long start = System.nanoTime();
+        if (segment != null) {
+            segment.force(end);
+        }
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        commitLock.lock();
+        try {
+            committedPosition = position;
+            committed.signalAll();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Seals the current segment, so fixes appended from now on go to a new one.
+     *
+     * @return the sequence of the newest sealed segment, or {@code -1} if there are no segments
+     */
+    public long seal() {
+        if (!enabled) {
+            return -1;
+        }
+
+        appendLock.lock();
+        try {
+            if (current != null) {
+                current.seal();
+                current = null;
+            }
+            return segments.isEmpty() ? -1 : segments.get(segments.size() - 1).getSequence();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the sealed segments up to and including the given sequence, keeping
+     * the newest segment.
+     */
+    public void truncate(long throughSequence) {
+        List<WalSegment> deleted = new ArrayList<>();
+        appendLock.lock();
+        try {
+            WalSegment newest = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            for (WalSegment segment : segments) {
+                if (segment.getSequence() <= throughSequence && segment != current && segment != newest) {
+                    deleted.add(segment);
+                }
+            }
+            segments.removeAll(deleted);
+        } finally {
+            appendLock.unlock();
+        }
+
+        for (WalSegment segment : deleted) {
+            try {
+                Files.deleteIfExists(segment.getPath());
+            } catch (IOException e) {
+                logger.warn("Could not delete write-ahead log segment {}: {}", segment.getPath(), e.getMessage());
+            }
+        }
+        if (!deleted.isEmpty()) {
+            logger.debug("Truncated {} write-ahead log segments", deleted.size());
+        }
+    }
+
+    /**
+     * Hands every logged fix to the consumer, segment by segment in the order they
+     * were written. A segment ends at its first torn record.
+     */
+    public void replay(Consumer<LoggedFix> consumer) {
+        for (WalSegment segment : segments) {
+            if (!segment.read(consumer)) {
+                logger.warn("Write-ahead log segment {} ends with a torn record", segment.getPath());
+            }
+        }
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void roll() throws IOException {
+        if (current != null) {
+            current.seal();
+        }
+
+        Path file = path.resolve(String.format("%012d%s", nextSequence, SEGMENT_SUFFIX));
+        current = WalSegment.create(file, nextSequence++, segmentSize);
+        segments.add(current);
+
+        logger.debug("Started write-ahead log segment {}", file);
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -1,23 +1,56 @@
 package com.migros.couriertracking;
 
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
 import org.springframework.test.context.TestPropertySource;
 
-@SpringBootTest
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @TestPropertySource(properties = {
         "spring.datasource.url=jdbc:h2:mem:testdb",
         "courier.tracking.store.radius=100",
         "courier.tracking.entrance.cooldown=60000",
         "courier.tracking.sync.frequency=10",
-        "courier.tracking.sync.timeout=300000"
+        "courier.tracking.sync.timeout=300000",
+        "courier.tracking.history.dir=target/test-history/${random.uuid}",
+        "courier.tracking.wal.dir=target/test-wal/${random.uuid}"
 })
 @DisplayName("Courier Tracking Application Integration Tests")
 class CourierTrackingApplicationTest {
 
+    private static final AtomicInteger storesAtServerStart = new AtomicInteger(-1);
+
+    @TestConfiguration
+    static class ServerStartConfig {
+
+        @Bean
+        ApplicationListener<WebServerInitializedEvent> storeCountAtServerStart(StoreSpatialIndex storeSpatialIndex) {
+            return event -> storesAtServerStart.set(storeSpatialIndex.size());
+        }
+    }
+
+    @Autowired
+    private StoreSpatialIndex storeSpatialIndex;
+
     @Test
     @DisplayName("Should load Spring context successfully")
     void contextLoads() {
     }
+
+    @Test
+    @DisplayName("Should build the store index before the web server accepts requests")
+    void testStoresIndexedBeforeServerStart() {
+        assertEquals(5, storesAtServerStart.get());
+        assertEquals(5, storeSpatialIndex.size());
+    }
 }
@@ -2,8 +2,15 @@ package com.migros.couriertracking.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationHistoryEntry;
+import com.migros.couriertracking.dto.LocationResult;
+import com.migros.couriertracking.dto.StoreVisit;
 import com.migros.couriertracking.dto.TotalTravelDistanceResponse;
+import com.migros.couriertracking.dto.TripSummaryResponse;
+import com.migros.couriertracking.history.LocationHistoryStore;
+import com.migros.couriertracking.ingestion.ShardedIngestionEngine;
 import com.migros.couriertracking.service.InMemoryCourierTrackingService;
+import com.migros.couriertracking.service.TripQueryService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,6 +19,9 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.Arrays;
+import java.util.List;
+
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -30,13 +40,23 @@ class CourierTrackingControllerTest {
     @MockBean
     private InMemoryCourierTrackingService courierTrackingService;
 
+    @MockBean
+    private ShardedIngestionEngine ingestionEngine;
+
+    @MockBean
+    private LocationHistoryStore locationHistoryStore;
+
+    @MockBean
+    private TripQueryService tripQueryService;
+
     @Test
     @DisplayName("Should log courier location successfully")
     void testLogCourierLocationSuccess() throws Exception {
         // Given
         CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
                 System.currentTimeMillis());
-        doNothing().when(courierTrackingService).logCourierLocation(any(CourierLocationRequest.class));
+        when(ingestionEngine.submit(any(CourierLocationRequest.class)))
+                .thenReturn(ShardedIngestionEngine.SubmitOutcome.ACCEPTED);
 
         // When & Then
         mockMvc.perform(post("/api/couriers/location")
@@ -45,7 +65,42 @@ class CourierTrackingControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("Location logged successfully"));
 
-        verify(courierTrackingService).logCourierLocation(any(CourierLocationRequest.class));
+        verify(ingestionEngine).submit(any(CourierLocationRequest.class));
+    }
+
+    @Test
+    @DisplayName("Should return service unavailable when the ingestion queue is full")
+    void testLogCourierLocationQueueFull() throws Exception {
+        // Given
+        CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
+                System.currentTimeMillis());
+        when(ingestionEngine.submit(any(CourierLocationRequest.class)))
+                .thenReturn(ShardedIngestionEngine.SubmitOutcome.QUEUE_FULL);
+
+        // When & Then
+        mockMvc.perform(post("/api/couriers/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string("Ingestion queue is full, retry later"));
+    }
+
+    @Test
+    @DisplayName("Should tell the client a fix that was not committed in time may already be applied")
+    void testLogCourierLocationCommitTimedOut() throws Exception {
+        // Given
+        CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
+                System.currentTimeMillis());
+        when(ingestionEngine.submit(any(CourierLocationRequest.class)))
+                .thenReturn(ShardedIngestionEngine.SubmitOutcome.COMMIT_TIMED_OUT);
+
+        // When & Then
+        mockMvc.perform(post("/api/couriers/location")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string(
+                        "Location was not confirmed in time and may already be applied, retry with the same time"));
     }
 
     @Test
@@ -60,7 +115,7 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verify(courierTrackingService, never()).logCourierLocation(any());
+        verify(ingestionEngine, never()).submit(any());
     }
 
     @Test
@@ -75,7 +130,7 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verify(courierTrackingService, never()).logCourierLocation(any());
+        verify(ingestionEngine, never()).submit(any());
     }
 
     @Test
@@ -91,7 +146,7 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verify(courierTrackingService, never()).logCourierLocation(any());
+        verify(ingestionEngine, never()).submit(any());
     }
 
     @Test
@@ -107,7 +162,7 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verify(courierTrackingService, never()).logCourierLocation(any());
+        verify(ingestionEngine, never()).submit(any());
     }
 
     @Test
@@ -122,7 +177,7 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
 
-        verify(courierTrackingService, never()).logCourierLocation(any());
+        verify(ingestionEngine, never()).submit(any());
     }
 
     @Test
@@ -134,7 +189,7 @@ class CourierTrackingControllerTest {
                 .content("{ invalid json }"))
                 .andExpect(status().isBadRequest());
 
-        verify(courierTrackingService, never()).logCourierLocation(any());
+        verify(ingestionEngine, never()).submit(any());
     }
 
     @Test
@@ -173,6 +228,55 @@ class CourierTrackingControllerTest {
         verify(courierTrackingService).getTotalTravelDistance(courierId);
     }
 
+    @Test
+    @DisplayName("Should get total travel distances of several couriers in one call")
+    void testGetTotalTravelDistances() throws Exception {
+        // Given
+        when(courierTrackingService.getTotalTravelDistances(List.of("COURIER001", "COURIER002"))).thenReturn(
+                Arrays.asList(new TotalTravelDistanceResponse("COURIER001", 1500.75),
+                        new TotalTravelDistanceResponse("COURIER002", 0.0)));
+
+        // When & Then
+        mockMvc.perform(get("/api/couriers/total-travel-distances")
+                .param("courierId", "COURIER001", "COURIER002"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].totalDistance").value(1500.75))
+                .andExpect(jsonPath("$[1].courierId").value("COURIER002"));
+
+        verify(courierTrackingService, never()).getTotalTravelDistance(any());
+    }
+
+    @Test
+    @DisplayName("Should get total travel distances of all active couriers")
+    void testGetActiveTotalTravelDistances() throws Exception {
+        // Given
+        when(courierTrackingService.getActiveTotalTravelDistances()).thenReturn(
+                List.of(new TotalTravelDistanceResponse("COURIER001", 42.0)));
+
+        // When & Then
+        mockMvc.perform(get("/api/couriers/total-travel-distances"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].courierId").value("COURIER001"));
+
+        verify(courierTrackingService).getActiveTotalTravelDistances();
+    }
+
+    @Test
+    @DisplayName("Should reject total distance requests for more couriers than the batch maximum")
+    void testGetTotalTravelDistancesTooMany() throws Exception {
+        // Given
+        String[] courierIds = new String[1001];
+        Arrays.fill(courierIds, "COURIER001");
+
+        // When & Then
+        mockMvc.perform(get("/api/couriers/total-travel-distances")
+                .param("courierId", courierIds))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(courierTrackingService, never()).getTotalTravelDistances(any());
+    }
+
     @Test
     @DisplayName("Should handle special characters in courier ID")
     void testGetTotalTravelDistanceSpecialCharacters() throws Exception {
@@ -196,7 +300,8 @@ class CourierTrackingControllerTest {
         // Given - Maximum valid coordinates
         CourierLocationRequest request = new CourierLocationRequest("COURIER001", 90.0, 180.0,
                 System.currentTimeMillis());
-        doNothing().when(courierTrackingService).logCourierLocation(any(CourierLocationRequest.class));
+        when(ingestionEngine.submit(any(CourierLocationRequest.class)))
+                .thenReturn(ShardedIngestionEngine.SubmitOutcome.ACCEPTED);
 
         // When & Then
         mockMvc.perform(post("/api/couriers/location")
@@ -204,7 +309,7 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk());
 
-        verify(courierTrackingService).logCourierLocation(any(CourierLocationRequest.class));
+        verify(ingestionEngine).submit(any(CourierLocationRequest.class));
     }
 
     @Test
@@ -213,7 +318,8 @@ class CourierTrackingControllerTest {
         // Given - Minimum valid coordinates
         CourierLocationRequest request = new CourierLocationRequest("COURIER001", -90.0, -180.0,
                 System.currentTimeMillis());
-        doNothing().when(courierTrackingService).logCourierLocation(any(CourierLocationRequest.class));
+        when(ingestionEngine.submit(any(CourierLocationRequest.class)))
+                .thenReturn(ShardedIngestionEngine.SubmitOutcome.ACCEPTED);
 
         // When & Then
         mockMvc.perform(post("/api/couriers/location")
@@ -221,6 +327,161 @@ class CourierTrackingControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk());
 
-        verify(courierTrackingService).logCourierLocation(any(CourierLocationRequest.class));
+        verify(ingestionEngine).submit(any(CourierLocationRequest.class));
+    }
+
+    @Test
+    @DisplayName("Should log a batch of courier locations")
+    void testLogCourierLocationsBatchSuccess() throws Exception {
+        // Given
+        long now = System.currentTimeMillis();
+        List<CourierLocationRequest> requests = Arrays.asList(
+                new CourierLocationRequest("COURIER001", 41.0840, 29.0093, now),
+                new CourierLocationRequest("COURIER002", 41.0766, 29.0278, now));
+        when(ingestionEngine.submitAll(anyList())).thenReturn(Arrays.asList(
+                new LocationResult(0, "COURIER001", LocationResult.Status.ACCEPTED, null),
+                new LocationResult(1, "COURIER002", LocationResult.Status.ACCEPTED, null)));
+
+        // When & Then
+        mockMvc.perform(post("/api/couriers/locations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(0))
+                .andExpect(jsonPath("$.results[1].courierId").value("COURIER002"))
+                .andExpect(jsonPath("$.results[1].status").value("ACCEPTED"));
+
+        verify(ingestionEngine).submitAll(argThat(list -> list.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid items in a batch without failing the others")
+    void testLogCourierLocationsBatchPartialRejection() throws Exception {
+        // Given
+        long now = System.currentTimeMillis();
+        List<CourierLocationRequest> requests = Arrays.asList(
+                new CourierLocationRequest("", 41.0840, 29.0093, now),
+                new CourierLocationRequest("COURIER002", 41.0766, 29.0278, now));
+        when(ingestionEngine.submitAll(anyList())).thenReturn(Arrays.asList(
+                new LocationResult(0, "COURIER002", LocationResult.Status.ACCEPTED, null)));
+
+        // When & Then
+        mockMvc.perform(post("/api/couriers/locations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].index").value(0))
+                .andExpect(jsonPath("$.results[0].status").value("REJECTED"))
+                .andExpect(jsonPath("$.results[0].message").value("Courier ID is required"))
+                .andExpect(jsonPath("$.results[1].index").value(1))
+                .andExpect(jsonPath("$.results[1].status").value("ACCEPTED"));
+
+        verify(ingestionEngine).submitAll(argThat(list -> list.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should reject batches larger than the configured maximum")
+    void testLogCourierLocationsBatchTooLarge() throws Exception {
+        // Given
+        CourierLocationRequest[] requests = new CourierLocationRequest[1001];
+        Arrays.fill(requests, new CourierLocationRequest("COURIER001", 41.0840, 29.0093, 1L));
+
+        // When & Then
+        mockMvc.perform(post("/api/couriers/locations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(ingestionEngine, never()).submitAll(any());
+    }
+
+    @Test
+    @DisplayName("Should return the location history of a courier in a time range")
+    void testGetLocationHistory() throws Exception {
+        // Given
+        String courierId = "COURIER001";
+        when(locationHistoryStore.scan(courierId, 1000L, 5000L)).thenReturn(Arrays.asList(
+                new LocationHistoryEntry(courierId, 41.0840, 29.0093, 1000L),
+                new LocationHistoryEntry(courierId, 41.0850, 29.0100, 2000L)));
+
+        // When & Then
+        mockMvc.perform(get("/api/couriers/{courierId}/history", courierId)
+                .param("from", "1000")
+                .param("to", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].latitude").value(41.0850))
+                .andExpect(jsonPath("$[1].time").value(2000));
+
+        verify(locationHistoryStore).scan(courierId, 1000L, 5000L);
+    }
+
+    @Test
+    @DisplayName("Should reject a history request without a range")
+    void testGetLocationHistoryRequiresRange() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/couriers/{courierId}/history", "COURIER001"))
+                .andExpect(status().isBadRequest());
+
+        verify(locationHistoryStore, never()).scan(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should reject a history range longer than the maximum span")
+    void testGetLocationHistoryRejectsLongRange() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/couriers/{courierId}/history", "COURIER001")
+                .param("from", "0")
+                .param("to", String.valueOf(Long.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+
+        verify(locationHistoryStore, never()).scan(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should return the distance and store visits of a courier in a time range")
+    void testGetTrip() throws Exception {
+        // Given
+        String courierId = "COURIER001";
+        when(tripQueryService.getTrip(courierId, 1000L, 7200000L)).thenReturn(new TripSummaryResponse(
+                courierId, 1000L, 7200000L, 2500.5, List.of(new StoreVisit(1L, "Ataşehir MMM Migros", 60000L, null))));
+
+        // When & Then
+        mockMvc.perform(get("/api/couriers/{courierId}/trip", courierId)
+                .param("from", "1000")
+                .param("to", "7200000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.distance").value(2500.5))
+                .andExpect(jsonPath("$.storeVisits[0].storeId").value(1))
+                .andExpect(jsonPath("$.storeVisits[0].time").value(60000));
+    }
+
+    @Test
+    @DisplayName("Should reject a trip range that ends before it starts")
+    void testGetTripInvalidRange() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/couriers/{courierId}/trip", "COURIER001")
+                .param("from", "5000")
+                .param("to", "1000"))
+                .andExpect(status().isBadRequest());
+
+        verify(tripQueryService, never()).getTrip(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should reject a trip range outside the supported times")
+    void testGetTripOutOfRange() throws Exception {
+        // Given
+        when(tripQueryService.getTrip("COURIER001", 0L, Long.MAX_VALUE))
+                .thenThrow(new IllegalArgumentException("Trip range must lie between 0 and 253402300799999"));
+
+        // When & Then
+        mockMvc.perform(get("/api/couriers/{courierId}/trip", "COURIER001")
+                .param("from", "0")
+                .param("to", String.valueOf(Long.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
     }
 }
@@ -0,0 +1,119 @@
+package com.migros.couriertracking.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationResult;
+import com.migros.couriertracking.ingestion.ShardedIngestionEngine;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LocationStreamHandler Tests")
+class LocationStreamHandlerTest {
+
+    @Mock
+    private ShardedIngestionEngine ingestionEngine;
+
+    @Mock
+    private WebSocketSession session;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LocationStreamHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new LocationStreamHandler(objectMapper, ingestionEngine,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(handler, "maxBatchSize", 2);
+    }
+
+    private List<LocationResult> accepted(List<CourierLocationRequest> requests) {
+        List<LocationResult> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(new LocationResult(i, requests.get(i).getCourierId(), LocationResult.Status.ACCEPTED, null));
+        }
+        return results;
+    }
+
+    private JsonNode captureReply() throws Exception {
+        ArgumentCaptor<TextMessage> captor = ArgumentCaptor.forClass(TextMessage.class);
+        verify(session).sendMessage(captor.capture());
+        return objectMapper.readTree(captor.getValue().getPayload());
+    }
+
+    @Test
+    @DisplayName("Should queue a single fix frame without replying")
+    void testSingleFixFrame() throws Exception {
+        // Given
+        when(ingestionEngine.submitAll(anyList())).thenAnswer(invocation -> accepted(invocation.getArgument(0)));
+        CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093, 1000L);
+
+        // When
+        handler.handleMessage(session, new TextMessage(objectMapper.writeValueAsString(request)));
+
+        // Then
+        verify(ingestionEngine).submitAll(argThat(requests -> requests.size() == 1
+                && requests.get(0).getCourierId().equals("COURIER001")));
+        verify(session, never()).sendMessage(any());
+    }
+
+    @Test
+    @DisplayName("Should reply with the rejected fixes of an array frame")
+    void testArrayFrameWithInvalidFix() throws Exception {
+        // Given
+        when(ingestionEngine.submitAll(anyList())).thenAnswer(invocation -> accepted(invocation.getArgument(0)));
+        String frame = "[{\"courierId\":\"COURIER001\",\"latitude\":41.0,\"longitude\":29.0,\"time\":1000},"
+                + "{\"courierId\":\"COURIER002\",\"latitude\":41.0,\"time\":1000}]";
+
+        // When
+        handler.handleMessage(session, new TextMessage(frame));
+
+        // Then
+        JsonNode reply = captureReply();
+        assertEquals(1, reply.get("accepted").asInt());
+        assertEquals(1, reply.get("rejected").asInt());
+        assertEquals(1, reply.get("results").get(1).get("index").asInt());
+        assertEquals("Longitude is required", reply.get("results").get(1).get("message").asText());
+    }
+
+    @Test
+    @DisplayName("Should reject malformed frames and keep the connection")
+    void testMalformedFrame() throws Exception {
+        handler.handleMessage(session, new TextMessage("{not json"));
+
+        JsonNode reply = captureReply();
+        assertEquals("Malformed location frame", reply.get("results").get(0).get("message").asText());
+        verifyNoInteractions(ingestionEngine);
+        verify(session, never()).close(any());
+    }
+
+    @Test
+    @DisplayName("Should reject frames with too many fixes")
+    void testOversizedFrame() throws Exception {
+        String frame = "[{\"courierId\":\"C1\"},{\"courierId\":\"C2\"},{\"courierId\":\"C3\"}]";
+
+        handler.handleMessage(session, new TextMessage(frame));
+
+        JsonNode reply = captureReply();
+        assertEquals("Frame exceeds 2 locations", reply.get("results").get(0).get("message").asText());
+        verifyNoInteractions(ingestionEngine);
+    }
+}
@@ -0,0 +1,89 @@
+package com.migros.couriertracking.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationHistoryEntry;
+import com.migros.couriertracking.dto.TotalTravelDistanceResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:streamdb",
+        "courier.tracking.sync.flush-interval=100",
+        "courier.tracking.history.dir=target/test-history/${random.uuid}",
+        "courier.tracking.wal.dir=target/test-wal/${random.uuid}"
+})
+@DisplayName("Location Stream Integration Tests")
+class LocationStreamIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    @DisplayName("Should feed streamed fixes into the tracking service")
+    void testStreamedFixesAreTracked() throws Exception {
+        // Given
+        BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+        WebSocketSession session = new StandardWebSocketClient().execute(new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+                replies.add(message.getPayload());
+            }
+        }, "ws://localhost:" + port + "/ws/couriers/locations").get(5, TimeUnit.SECONDS);
+
+        List<CourierLocationRequest> track = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            track.add(new CourierLocationRequest("STREAM001", 41.0 + i * 0.001, 29.0, 1000L + i * 10000));
+        }
+
+        // When
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(track.get(0))));
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(track.subList(1, track.size()))));
+        session.sendMessage(new TextMessage("{not json"));
+
+        // Then
+        String reply = replies.poll(5, TimeUnit.SECONDS);
+        assertNotNull(reply);
+        assertTrue(reply.contains("Malformed location frame"));
+
+        double totalDistance = 0;
+        for (int attempt = 0; attempt < 50 && totalDistance < 400; attempt++) {
+            Thread.sleep(100);
+            totalDistance = restTemplate.getForObject("/api/couriers/STREAM001/total-travel-distance",
+                    TotalTravelDistanceResponse.class).getTotalDistance();
+        }
+        assertEquals(444.8, totalDistance, 1.0);
+        assertTrue(replies.isEmpty());
+
+        LocationHistoryEntry[] history = restTemplate.getForObject("/api/couriers/STREAM001/history?from=0&to=60000",
+                LocationHistoryEntry[].class);
+        assertEquals(5, history.length);
+        assertEquals(41.004, history[4].getLatitude(), 1e-7);
+
+        session.close();
+    }
+}
@@ -0,0 +1,177 @@
+package com.migros.couriertracking.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.migros.couriertracking.dto.StoreRequest;
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.service.StoreCatalogService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(StoreAdminController.class)
+@DisplayName("StoreAdminController Integration Tests")
+class StoreAdminControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private StoreCatalogService storeCatalogService;
+
+    private Store store(Long id, String name, double latitude, double longitude) {
+        Store store = new Store(name, latitude, longitude);
+        store.setId(id);
+        return store;
+    }
+
+    @Test
+    @DisplayName("Should list the stores of the current catalog snapshot")
+    void testGetStores() throws Exception {
+        when(storeCatalogService.getStores()).thenReturn(List.of(store(1L, "Test Migros", 41.0, 29.0)));
+
+        mockMvc.perform(get("/api/admin/stores"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].name").value("Test Migros"));
+    }
+
+    @Test
+    @DisplayName("Should add a store")
+    void testAddStore() throws Exception {
+        // Given
+        when(storeCatalogService.addStore("New Migros", 41.0, 29.0, null, null))
+                .thenReturn(store(2L, "New Migros", 41.0, 29.0));
+
+        // When & Then
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new StoreRequest("New Migros", 41.0, 29.0))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(2));
+    }
+
+    @Test
+    @DisplayName("Should return conflict for a duplicate store name")
+    void testAddDuplicateStore() throws Exception {
+        when(storeCatalogService.addStore(anyString(), anyDouble(), anyDouble(), any(), any()))
+                .thenThrow(new IllegalStateException("Store already exists: Test Migros"));
+
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new StoreRequest("Test Migros", 41.0, 29.0))))
+                .andExpect(status().isConflict())
+                .andExpect(content().string("Store already exists: Test Migros"));
+    }
+
+    @Test
+    @DisplayName("Should return bad request for invalid store data")
+    void testAddInvalidStore() throws Exception {
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new StoreRequest("", null, 29.0))))
+                .andExpect(status().isBadRequest());
+
+        verify(storeCatalogService, never()).addStore(anyString(), anyDouble(), anyDouble(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should return bad request for coordinates out of range")
+    void testAddStoreOutOfRange() throws Exception {
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new StoreRequest("New Migros", 91.0, 29.0))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new StoreRequest("New Migros", 41.0, -180.5))))
+                .andExpect(status().isBadRequest());
+
+        verify(storeCatalogService, never()).addStore(anyString(), anyDouble(), anyDouble(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should return bad request for an invalid polygon")
+    void testAddStoreWithInvalidPolygon() throws Exception {
+        // Given
+        StoreRequest request = new StoreRequest("New Migros", 41.0, 29.0);
+        request.setPolygon(new double[][] { { 41.0, 29.0 }, { 41.001, 29.0 } });
+        when(storeCatalogService.addStore(eq("New Migros"), eq(41.0), eq(29.0), isNull(), any()))
+                .thenThrow(new IllegalArgumentException("Polygon needs at least 3 vertices"));
+
+        // When & Then
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Polygon needs at least 3 vertices"));
+    }
+
+    @Test
+    @DisplayName("Should return bad request for a non-positive radius")
+    void testAddStoreWithInvalidRadius() throws Exception {
+        StoreRequest request = new StoreRequest("New Migros", 41.0, 29.0);
+        request.setRadius(-5.0);
+
+        mockMvc.perform(post("/api/admin/stores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verify(storeCatalogService, never()).addStore(anyString(), anyDouble(), anyDouble(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should return not found when updating a missing store")
+    void testUpdateMissingStore() throws Exception {
+        when(storeCatalogService.updateStore(eq(9L), anyString(), anyDouble(), anyDouble(), any(), any()))
+                .thenReturn(Optional.empty());
+
+        mockMvc.perform(put("/api/admin/stores/9")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new StoreRequest("Test Migros", 41.0, 29.0))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should delete a store")
+    void testDeleteStore() throws Exception {
+        when(storeCatalogService.deleteStore(1L)).thenReturn(true);
+
+        mockMvc.perform(delete("/api/admin/stores/1"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    @DisplayName("Should return conflict when deleting a store with entrances")
+    void testDeleteStoreWithEntrances() throws Exception {
+        when(storeCatalogService.deleteStore(1L)).thenThrow(new IllegalStateException("Store 1 has recorded entrances"));
+
+        mockMvc.perform(delete("/api/admin/stores/1"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("Should reload the store catalog")
+    void testReload() throws Exception {
+        when(storeCatalogService.reload()).thenReturn(5);
+
+        mockMvc.perform(post("/api/admin/stores/reload"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Store catalog reloaded with 5 stores"));
+    }
+}
@@ -0,0 +1,26 @@
+package com.migros.couriertracking.filter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Minimum Displacement Filter Tests")
+class MinimumDisplacementFilterTest {
+
+    private final MinimumDisplacementFilter filter = new MinimumDisplacementFilter(5.0);
+
+    @Test
+    @DisplayName("Should reject jitter below the minimum displacement")
+    void testRejectsJitter() {
+        assertFalse(filter.accept(0.0, 1000L));
+        assertFalse(filter.accept(4.9, 1000L));
+    }
+
+    @Test
+    @DisplayName("Should accept movement from the minimum displacement on")
+    void testAcceptsMovement() {
+        assertTrue(filter.accept(5.0, 1000L));
+        assertTrue(filter.accept(250.0, 60000L));
+    }
+}
@@ -0,0 +1,44 @@
+package com.migros.couriertracking.filter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Speed Gate Filter Tests")
+class SpeedGateFilterTest {
+
+    private final SpeedGateFilter filter = new SpeedGateFilter(50.0);
+
+    @Test
+    @DisplayName("Should accept fixes up to the maximum speed")
+    void testAcceptsPlausibleSpeed() {
+        assertTrue(filter.accept(10.0, 1000L));
+        assertTrue(filter.accept(50.0, 1000L));
+    }
+
+    @Test
+    @DisplayName("Should reject jumps faster than the maximum speed")
+    void testRejectsJumps() {
+        assertFalse(filter.accept(500.0, 1000L));
+        assertFalse(filter.accept(50.1, 1000L));
+    }
+
+    @Test
+    @DisplayName("Should let a real move through once enough time has passed")
+    void testAcceptsAfterGap() {
+        assertTrue(filter.accept(500.0, 10000L));
+    }
+
+    @Test
+    @DisplayName("Should require every filter of a composite to accept")
+    void testComposite() {
+        LocationFilter composite = new CompositeLocationFilter(List.of(new MinimumDisplacementFilter(5.0), filter));
+
+        assertFalse(composite.accept(2.0, 1000L));
+        assertFalse(composite.accept(500.0, 1000L));
+        assertTrue(composite.accept(20.0, 1000L));
+    }
+}
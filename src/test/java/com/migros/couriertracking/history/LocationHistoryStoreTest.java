@@ -0,0 +1,253 @@
+package com.migros.couriertracking.history;
+
+import com.migros.couriertracking.dto.LocationHistoryEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LocationHistoryStore Tests")
+class LocationHistoryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private LocationHistoryStore store;
+
+    private LocationHistoryStore openStore(int segmentSize) throws IOException {
+        return openStore(segmentSize, 1);
+    }
+
+    private LocationHistoryStore openStore(int segmentSize, int stripeCount) throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        LocationHistoryStore historyStore = new LocationHistoryStore(meterRegistry);
+        ReflectionTestUtils.setField(historyStore, "stripeCount", stripeCount);
+        ReflectionTestUtils.setField(historyStore, "enabled", true);
+        ReflectionTestUtils.setField(historyStore, "directory", directory.toString());
+        ReflectionTestUtils.setField(historyStore, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(historyStore, "windowMs", 3600000L);
+        historyStore.open();
+        return historyStore;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should return the fixes of one courier in a time range")
+    void testScanByCourierAndRange() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            store.append("COURIER001", 41.0 + i * 0.0001, 29.0, 1000L + i * 1000);
+            store.append("COURIER002", 40.0, 28.0 - i * 0.0001, 1000L + i * 1000);
+        }
+
+        // When
+        List<LocationHistoryEntry> entries = store.scan("COURIER001", 3000L, 5000L);
+
+        // Then
+        assertEquals(3, entries.size());
+        assertEquals("COURIER001", entries.get(0).getCourierId());
+        assertEquals(3000L, entries.get(0).getTime());
+        assertEquals(41.0002, entries.get(0).getLatitude(), 1e-7);
+        assertEquals(29.0, entries.get(0).getLongitude(), 1e-7);
+        assertEquals(5000L, entries.get(2).getTime());
+        assertEquals(20.0, meterRegistry.get("courier.history.appended").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should return late fixes in time order")
+    void testScanSortsLateFixes() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        store.append("COURIER001", 41.0, 29.0, 1000L);
+        store.append("COURIER001", 41.002, 29.0, 3000L);
+        store.append("COURIER001", 41.001, 29.0, 2000L);
+
+        // When
+        List<LocationHistoryEntry> entries = store.scan("COURIER001", 0L, Long.MAX_VALUE);
+
+        // Then
+        assertEquals(List.of(1000L, 2000L, 3000L), entries.stream().map(LocationHistoryEntry::getTime).toList());
+        assertEquals(41.001, entries.get(1).getLatitude(), 1e-7);
+    }
+
+    @Test
+    @DisplayName("Should start a new segment per time window and replay across them")
+    void testReplayAcrossWindows() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        for (int hour = 0; hour < 3; hour++) {
+            store.append("COURIER001", 41.0 + hour * 0.01, 29.0, hour * 3600000L + 60000);
+        }
+
+        // When
+        List<LocationHistoryEntry> replayed = new ArrayList<>();
+        store.replay(3600000L, Long.MAX_VALUE, replayed::add);
+
+        // Then
+        assertEquals(3.0, meterRegistry.get("courier.history.segments").gauge().value());
+        assertEquals(2, replayed.size());
+        assertEquals(3660000L, replayed.get(0).getTime());
+        assertEquals(41.02, replayed.get(1).getLatitude(), 1e-7);
+    }
+
+    @Test
+    @DisplayName("Should roll over to a new segment when the current one is full")
+    void testRollsWhenSegmentIsFull() throws IOException {
+        // Given
+        store = openStore(HistorySegment.HEADER_SIZE + 256);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            store.append("COURIER001", 41.0 + i * 0.0001, 29.0 + i * 0.0001, 1000L + i * 1000);
+        }
+
+        // Then
+        assertTrue(meterRegistry.get("courier.history.segments").gauge().value() > 1.0);
+        List<LocationHistoryEntry> entries = store.scan("COURIER001", 0L, Long.MAX_VALUE);
+        assertEquals(100, entries.size());
+        assertEquals(41.0099, entries.get(99).getLatitude(), 1e-7);
+        assertEquals(29.0099, entries.get(99).getLongitude(), 1e-7);
+    }
+
+    @Test
+    @DisplayName("Should read the history written before a restart")
+    void testReopenKeepsHistory() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        store.append("COURIER001", 41.0, 29.0, 1000L);
+        store.append("COURIER001", 41.001, 29.001, 2000L);
+        store.close();
+
+        // When
+        store = openStore(1024 * 1024);
+        store.append("COURIER001", 41.002, 29.002, 3000L);
+
+        // Then
+        List<LocationHistoryEntry> entries = store.scan("COURIER001", 0L, Long.MAX_VALUE);
+        assertEquals(3, entries.size());
+        assertEquals(41.001, entries.get(1).getLatitude(), 1e-7);
+        assertEquals(2.0, meterRegistry.get("courier.history.segments").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should write each stripe of couriers to its own segment")
+    void testStripesWriteOwnSegments() throws IOException {
+        // Given
+        store = openStore(1024 * 1024, 2);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            for (int courier = 0; courier < 10; courier++) {
+                store.append("COURIER00" + courier, 41.0 + i * 0.0001, 29.0 + courier * 0.01, 1000L + i * 1000);
+            }
+        }
+
+        // Then
+        assertEquals(2.0, meterRegistry.get("courier.history.segments").gauge().value());
+        for (int courier = 0; courier < 10; courier++) {
+            List<LocationHistoryEntry> entries = store.scan("COURIER00" + courier, 0L, Long.MAX_VALUE);
+            assertEquals(10, entries.size());
+            assertEquals(29.0 + courier * 0.01, entries.get(9).getLongitude(), 1e-7);
+        }
+    }
+
+    @Test
+    @DisplayName("Should only decode the segments that hold the courier")
+    void testScanSkipsSegmentsWithoutCourier() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        store.append("COURIER001", 41.0, 29.0, 60000L);
+        store.append("COURIER002", 40.0, 28.0, 3660000L);
+        store.close();
+        store = openStore(1024 * 1024);
+        HistorySegment first = segments().get(0);
+        HistorySegment second = segments().get(1);
+
+        // When
+        List<LocationHistoryEntry> entries = store.scan("COURIER001", 0L, 7200000L);
+
+        // Then
+        assertEquals(1, entries.size());
+        assertTrue(first.mayContain("COURIER001"));
+        assertFalse(first.mayContain("COURIER002"));
+        assertFalse(second.mayContain("COURIER001"));
+        assertTrue(store.scan("COURIER002", 0L, 3600000L).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should delete the segments older than the retention")
+    void testRetireDeletesOldSegments() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        for (int hour = 0; hour < 3; hour++) {
+            store.append("COURIER001", 41.0 + hour * 0.01, 29.0, hour * 3600000L + 60000);
+        }
+        Path oldest = segments().get(0).getPath();
+
+        // When
+        store.retire(3600000L);
+
+        // Then
+        assertEquals(2.0, meterRegistry.get("courier.history.segments").gauge().value());
+        assertFalse(Files.exists(oldest));
+        List<LocationHistoryEntry> entries = store.scan("COURIER001", 0L, Long.MAX_VALUE);
+        assertEquals(List.of(3660000L, 7260000L), entries.stream().map(LocationHistoryEntry::getTime).toList());
+    }
+
+    @Test
+    @DisplayName("Should keep the segment being written even when it is old")
+    void testRetireKeepsCurrentSegment() throws IOException {
+        // Given
+        store = openStore(1024 * 1024);
+        store.append("COURIER001", 41.0, 29.0, 60000L);
+
+        // When
+        store.retire(Long.MAX_VALUE);
+        store.append("COURIER001", 41.001, 29.0, 120000L);
+
+        // Then
+        assertEquals(2, store.scan("COURIER001", 0L, Long.MAX_VALUE).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<HistorySegment> segments() {
+        return (List<HistorySegment>) ReflectionTestUtils.getField(store, "segments");
+    }
+
+    @Test
+    @DisplayName("Should store a regular fix in a few bytes")
+    void testCompactEncoding() throws IOException {
+        // Given
+        Path file = directory.resolve("segment.seg");
+        HistorySegment segment = HistorySegment.create(file, 0L, 1024 * 1024);
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(segment.append("COURIER" + (i % 10), 41.0 + i * 0.00003, 29.0 - i * 0.00002,
+                    1640995200000L + i * 1000));
+        }
+
+        // Then
+        int bytesPerFix = (segment.getSize() - HistorySegment.HEADER_SIZE) / 1000;
+        assertTrue(bytesPerFix <= 12, "Expected at most 12 bytes per fix, was " + bytesPerFix);
+        segment.seal();
+    }
+}
@@ -0,0 +1,343 @@
+package com.migros.couriertracking.ingestion;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.dto.LocationResult;
+import com.migros.couriertracking.ingestion.ShardedIngestionEngine.SubmitOutcome;
+import com.migros.couriertracking.service.InMemoryCourierTrackingService;
+import com.migros.couriertracking.wal.LoggedFix;
+import com.migros.couriertracking.wal.WriteAheadLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ShardedIngestionEngine Tests")
+class ShardedIngestionEngineTest {
+
+    @Mock
+    private InMemoryCourierTrackingService courierTrackingService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ShardedIngestionEngine engine;
+    private WriteAheadLog writeAheadLog;
+
+    @TempDir
+    Path walDirectory;
+
+    @BeforeEach
+    void setUp() {
+        engine = new ShardedIngestionEngine(courierTrackingService, new WriteAheadLog(meterRegistry), meterRegistry);
+
+        ReflectionTestUtils.setField(engine, "shardCount", 4);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(engine, "offerTimeoutMs", 10L);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        engine.stop();
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    private ShardedIngestionEngine loggingEngine() throws IOException {
+        writeAheadLog = new WriteAheadLog(meterRegistry);
+        ReflectionTestUtils.setField(writeAheadLog, "enabled", true);
+        ReflectionTestUtils.setField(writeAheadLog, "directory", walDirectory.toString());
+        ReflectionTestUtils.setField(writeAheadLog, "segmentSize", 1024 * 1024);
+        ReflectionTestUtils.setField(writeAheadLog, "commitTimeoutMs", 5000L);
+        writeAheadLog.open();
+
+        ShardedIngestionEngine loggingEngine = new ShardedIngestionEngine(courierTrackingService, writeAheadLog,
+                meterRegistry);
+        ReflectionTestUtils.setField(loggingEngine, "shardCount", 2);
+        ReflectionTestUtils.setField(loggingEngine, "queueCapacity", 1000);
+        ReflectionTestUtils.setField(loggingEngine, "offerTimeoutMs", 10L);
+        ReflectionTestUtils.setField(loggingEngine, "checkpointTimeoutMs", 5000L);
+        return loggingEngine;
+    }
+
+    private long walFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    @DisplayName("Should process all fixes of a courier in submission order")
+    void testPerCourierOrdering() throws InterruptedException {
+        // Given
+        engine.start();
+        List<CourierLocationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            requests.add(new CourierLocationRequest("COURIER00" + (i % 3), 41.0 + i * 0.001, 29.0, 1000L + i));
+        }
+
+        // When
+        requests.forEach(request -> assertEquals(SubmitOutcome.ACCEPTED, engine.submit(request)));
+        engine.stop();
+
+        // Then
+        InOrder inOrder = inOrder(courierTrackingService);
+        for (CourierLocationRequest request : requests) {
+            if (request.getCourierId().equals("COURIER001")) {
+                inOrder.verify(courierTrackingService).logCourierLocation(eq(request), anyLong());
+            }
+        }
+        verify(courierTrackingService, times(100)).logCourierLocation(any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should submit a batch in time order per courier and keep results in request order")
+    void testSubmitAllOrdering() throws InterruptedException {
+        // Given
+        engine.start();
+        List<CourierLocationRequest> requests = Arrays.asList(
+                new CourierLocationRequest("COURIER001", 41.0200, 29.0200, 3000L),
+                new CourierLocationRequest("COURIER002", 41.5000, 29.5000, 1000L),
+                new CourierLocationRequest("COURIER001", 41.0000, 29.0000, 1000L),
+                new CourierLocationRequest("COURIER001", 41.0100, 29.0100, 2000L));
+
+        // When
+        List<LocationResult> results = engine.submitAll(requests);
+        engine.stop();
+
+        // Then
+        assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).getIndex());
+            assertEquals(requests.get(i).getCourierId(), results.get(i).getCourierId());
+            assertEquals(LocationResult.Status.ACCEPTED, results.get(i).getStatus());
+        }
+
+        InOrder inOrder = inOrder(courierTrackingService);
+        inOrder.verify(courierTrackingService).logCourierLocation(eq(requests.get(2)), anyLong());
+        inOrder.verify(courierTrackingService).logCourierLocation(eq(requests.get(3)), anyLong());
+        inOrder.verify(courierTrackingService).logCourierLocation(eq(requests.get(0)), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should keep processing after a fix fails")
+    void testFailureIsolation() throws InterruptedException {
+        // Given
+        engine.start();
+        CourierLocationRequest failing = new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L);
+        CourierLocationRequest next = new CourierLocationRequest("COURIER001", 41.1, 29.1, 2000L);
+        doThrow(new RuntimeException("Processing error")).when(courierTrackingService).logCourierLocation(eq(failing), anyLong());
+
+        // When
+        engine.submit(failing);
+        engine.submit(next);
+        engine.stop();
+
+        // Then
+        verify(courierTrackingService).logCourierLocation(eq(next), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should reject fixes when the shard queue is full")
+    void testRejectWhenQueueFull() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(engine, "shardCount", 1);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 1);
+        engine.start();
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return null;
+        }).when(courierTrackingService).logCourierLocation(any(), anyLong());
+
+        // When
+        assertEquals(SubmitOutcome.ACCEPTED,
+                engine.submit(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L)));
+        blocked.await();
+        assertEquals(SubmitOutcome.ACCEPTED,
+                engine.submit(new CourierLocationRequest("COURIER001", 41.0, 29.0, 2000L)));
+        List<LocationResult> results = engine.submitAll(
+                Collections.singletonList(new CourierLocationRequest("COURIER001", 41.0, 29.0, 3000L)));
+        release.countDown();
+
+        // Then
+        assertEquals(LocationResult.Status.REJECTED, results.get(0).getStatus());
+        assertEquals("Ingestion queue is full", results.get(0).getMessage());
+        assertEquals(1, engine.getShardCount());
+        assertEquals(1.0, meterRegistry.get("courier.ingestion.rejected").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should wait at most one offer timeout for a batch on a full shard")
+    void testSubmitAllFailsFastOnFullShard() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(engine, "shardCount", 1);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 1);
+        ReflectionTestUtils.setField(engine, "offerTimeoutMs", 200L);
+        engine.start();
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            blocked.countDown();
+            release.await();
+            return null;
+        }).when(courierTrackingService).logCourierLocation(any(), anyLong());
+
+        engine.submit(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+        blocked.await();
+        engine.submit(new CourierLocationRequest("COURIER001", 41.0, 29.0, 2000L));
+
+        List<CourierLocationRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            batch.add(new CourierLocationRequest("COURIER00" + (i % 5), 41.0, 29.0, 3000L + i));
+        }
+
+        // When
+        long started = System.nanoTime();
+        List<LocationResult> results = engine.submitAll(batch);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        release.countDown();
+
+        // Then
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == LocationResult.Status.REJECTED));
+        assertTrue(elapsedMs < 1000, "Batch waited " + elapsedMs + " ms");
+        assertEquals(20.0, meterRegistry.get("courier.ingestion.rejected").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should not apply a fix that could not be appended to the write-ahead log")
+    void testLogFailureDoesNotApplyFix() throws InterruptedException {
+        // Given
+        WriteAheadLog failingLog = mock(WriteAheadLog.class);
+        when(failingLog.append(any(), any())).thenThrow(new UncheckedIOException(new IOException("Disk full")));
+        engine = new ShardedIngestionEngine(courierTrackingService, failingLog, meterRegistry);
+        ReflectionTestUtils.setField(engine, "shardCount", 1);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 1);
+        ReflectionTestUtils.setField(engine, "offerTimeoutMs", 10L);
+        engine.start();
+
+        // When
+        SubmitOutcome outcome = engine.submit(
+                new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+        List<LocationResult> results = engine.submitAll(
+                List.of(new CourierLocationRequest("COURIER001", 41.0, 29.0, 2000L)));
+        engine.stop();
+
+        // Then
+        assertEquals(SubmitOutcome.LOG_FAILED, outcome);
+        assertEquals(LocationResult.Status.REJECTED, results.get(0).getStatus());
+        assertEquals("Write-ahead log append failed", results.get(0).getMessage());
+        verify(courierTrackingService, never()).logCourierLocation(any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should replay the fixes acknowledged before a restart ahead of new fixes")
+    void testReplayOnStart() throws Exception {
+        // Given
+        engine = loggingEngine();
+        engine.start();
+        assertEquals(SubmitOutcome.ACCEPTED,
+                engine.submit(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L)));
+        List<LocationResult> results = engine.submitAll(List.of(
+                new CourierLocationRequest("COURIER002", 41.5, 29.5, 1000L),
+                new CourierLocationRequest("COURIER001", 41.1, 29.0, 2000L)));
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == LocationResult.Status.ACCEPTED));
+        engine.stop();
+        writeAheadLog.close();
+
+        // When
+        engine = loggingEngine();
+        engine.start();
+
+        // Then
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LoggedFix>> replayed = ArgumentCaptor.forClass(List.class);
+        verify(courierTrackingService).replayLocations(replayed.capture());
+        assertEquals(3, replayed.getValue().size());
+        assertTrue(replayed.getValue().stream().anyMatch(fix ->
+                fix.request().getCourierId().equals("COURIER001") && fix.request().getTime() == 2000L));
+    }
+
+    @Test
+    @DisplayName("Should delete the logged fixes at a checkpoint once they are applied and written")
+    void testCheckpointTruncatesLog() throws Exception {
+        // Given
+        engine = loggingEngine();
+        engine.start();
+        CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L);
+        assertEquals(SubmitOutcome.ACCEPTED, engine.submit(request));
+        when(courierTrackingService.flushAll()).thenReturn(true);
+
+        // When
+        engine.checkpoint();
+
+        // Then
+        InOrder inOrder = inOrder(courierTrackingService);
+        inOrder.verify(courierTrackingService).logCourierLocation(eq(request), anyLong());
+        inOrder.verify(courierTrackingService).flushAll();
+        // Only the newest segment is left, to carry its sequence over a restart
+        assertEquals(1, walFileCount());
+    }
+
+    @Test
+    @DisplayName("Should keep the logged fixes when the checkpoint cannot write them")
+    void testCheckpointKeepsLogOnFlushFailure() throws Exception {
+        // Given
+        engine = loggingEngine();
+        engine.start();
+        assertEquals(SubmitOutcome.ACCEPTED,
+                engine.submit(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L)));
+        when(courierTrackingService.flushAll()).thenReturn(false);
+
+        // When
+        engine.checkpoint();
+
+        // Then
+        assertEquals(1, walFileCount());
+        List<LoggedFix> logged = new ArrayList<>();
+        writeAheadLog.replay(logged::add);
+        assertEquals(1, logged.size());
+    }
+
+    @Test
+    @DisplayName("Should skip the checkpoint when nothing was logged")
+    void testCheckpointWithoutFixes() throws Exception {
+        // Given
+        engine = loggingEngine();
+        engine.start();
+
+        // When
+        engine.checkpoint();
+
+        // Then
+        verify(courierTrackingService, never()).flushAll();
+    }
+}
@@ -36,6 +36,19 @@ class LoggingStoreEntranceObserverTest {
         assertDoesNotThrow(() -> observer.onStoreEntrance(entrance));
     }
 
+    @Test
+    @DisplayName("Should handle store exit notification successfully")
+    void testOnStoreExitSuccess() {
+        // Given
+        Store store = new Store("Test Migros", 41.0840, 29.0093);
+        StoreEntrance exit = new StoreEntrance("COURIER001", store);
+        exit.setExitTime(exit.getEntranceTime().plusMinutes(7));
+
+        // When & Then
+        assertDoesNotThrow(() -> observer.onStoreExit(exit));
+        assertDoesNotThrow(() -> observer.onStoreExit(null));
+    }
+
     @Test
     @DisplayName("Should handle null store entrance gracefully")
     void testOnStoreEntranceWithNull() {
@@ -0,0 +1,92 @@
+package com.migros.couriertracking.repository;
+
+import com.migros.couriertracking.entity.CourierTravelSummary;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepositoryCustom.DistanceIncrement;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@DisplayName("CourierTravelSummaryRepository Tests")
+class CourierTravelSummaryRepositoryTest {
+
+    @Autowired
+    private CourierTravelSummaryRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    @DisplayName("Should add distances to existing totals and create missing summaries in one batch")
+    void testAddDistances() {
+        // Given
+        CourierTravelSummary existing = new CourierTravelSummary("COURIER001");
+        existing.setTotalDistance(100.0);
+        existing.setLastLatitude(41.0);
+        existing.setLastLongitude(29.0);
+        repository.saveAndFlush(existing);
+        entityManager.clear();
+
+        // When
+        repository.addDistances(List.of(
+                new DistanceIncrement("COURIER001", 150.0, null, null, null, 0),
+                new DistanceIncrement("COURIER002", 75.0, 1000L, 41.5, 29.5, 3)));
+        repository.addDistance(new DistanceIncrement("COURIER002", 25.0, 2000L, 41.6, 29.6, 5));
+        entityManager.clear();
+
+        // Then
+        CourierTravelSummary updated = repository.findByCourierId("COURIER001").orElseThrow();
+        assertEquals(250.0, updated.getTotalDistance(), 0.001);
+        assertEquals(41.0, updated.getLastLatitude());
+
+        CourierTravelSummary inserted = repository.findByCourierId("COURIER002").orElseThrow();
+        assertEquals(100.0, inserted.getTotalDistance(), 0.001);
+        assertEquals(41.6, inserted.getLastLatitude());
+        assertEquals(2000L, inserted.getLastFixTime());
+        assertEquals(5L, inserted.getLastRecordId());
+        assertNotNull(inserted.getCreatedAt());
+        assertNotEquals(updated.getId(), inserted.getId());
+        assertEquals(2, repository.count());
+    }
+
+    @Test
+    @DisplayName("Should keep the newer last fix but the later log record when an older fix is written later")
+    void testLastFixNeverMovesBack() {
+        // Given
+        repository.addDistance(new DistanceIncrement("COURIER001", 10.0, 5000L, 41.5, 29.5, 7));
+
+        // When
+        repository.addDistance(new DistanceIncrement("COURIER001", 20.0, 4000L, 41.4, 29.4, 9));
+        entityManager.clear();
+
+        // Then
+        CourierTravelSummary summary = repository.findByCourierId("COURIER001").orElseThrow();
+        assertEquals(30.0, summary.getTotalDistance(), 0.001);
+        assertEquals(5000L, summary.getLastFixTime());
+        assertEquals(41.5, summary.getLastLatitude());
+        assertEquals(29.5, summary.getLastLongitude());
+        assertEquals(9L, summary.getLastRecordId());
+    }
+
+    @Test
+    @DisplayName("Should not collide with ids handed out by the pooled sequence")
+    void testAddDistancesAlongsideEntityInserts() {
+        // Given
+        repository.addDistance(new DistanceIncrement("COURIER001", 10.0, null, null, null, 0));
+
+        // When
+        repository.saveAndFlush(new CourierTravelSummary("COURIER002"));
+        repository.saveAndFlush(new CourierTravelSummary("COURIER003"));
+        repository.addDistance(new DistanceIncrement("COURIER004", 40.0, null, null, null, 0));
+        entityManager.clear();
+
+        // Then
+        assertEquals(4, repository.findAll().stream().map(CourierTravelSummary::getId).distinct().count());
+    }
+}
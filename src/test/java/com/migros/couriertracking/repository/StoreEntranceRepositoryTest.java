@@ -0,0 +1,60 @@
+package com.migros.couriertracking.repository;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.entity.StoreEntrance;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@DisplayName("StoreEntranceRepository Tests")
+class StoreEntranceRepositoryTest {
+
+    @Autowired
+    private StoreEntranceRepository repository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private StoreEntrance visit(String courierId, Store store, LocalDateTime entranceTime, LocalDateTime exitTime) {
+        StoreEntrance storeEntrance = new StoreEntrance(courierId, store);
+        storeEntrance.setEntranceTime(entranceTime);
+        storeEntrance.setExitTime(exitTime);
+        return storeEntrance;
+    }
+
+    @Test
+    @DisplayName("Should set the exit times of several visits in one batch")
+    void testRecordExits() {
+        // Given
+        Store store = entityManager.persist(new Store("Test Migros", 41.0840, 29.0093));
+        LocalDateTime entered = LocalDateTime.of(2024, 1, 1, 12, 0);
+        repository.saveAll(List.of(
+                visit("COURIER001", store, entered, null),
+                visit("COURIER002", store, entered, null),
+                visit("COURIER001", store, entered.plusHours(1), null)));
+        repository.flush();
+
+        // When
+        int[] updated = repository.recordExits(List.of(
+                visit("COURIER001", store, entered, entered.plusMinutes(5)),
+                visit("COURIER002", store, entered, entered.plusMinutes(7)),
+                visit("COURIER003", store, entered, entered.plusMinutes(9))));
+        entityManager.clear();
+
+        // Then
+        assertArrayEquals(new int[] {1, 1, 0}, updated);
+        List<StoreEntrance> first = repository.findByCourierIdOrderByEntranceTimeDesc("COURIER001");
+        assertNull(first.get(0).getExitTime());
+        assertEquals(entered.plusMinutes(5), first.get(1).getExitTime());
+        assertEquals(entered.plusMinutes(7),
+                repository.findByCourierIdOrderByEntranceTimeDesc("COURIER002").get(0).getExitTime());
+    }
+}
@@ -0,0 +1,105 @@
+package com.migros.couriertracking.rollup;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DistanceRollupStore Tests")
+class DistanceRollupStoreTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 3_600_000L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private DistanceRollupStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new DistanceRollupStore(meterRegistry);
+        ReflectionTestUtils.setField(store, "minuteRetentionMs", 2 * HOUR);
+        ReflectionTestUtils.setField(store, "hourRetentionMs", 24 * HOUR);
+    }
+
+    @Test
+    @DisplayName("Should sum the minute buckets of a range")
+    void testMinuteRange() {
+        // Given - 10 meters every 10 seconds for 10 minutes
+        for (long time = 0; time < 10 * MINUTE; time += 10_000) {
+            store.add("COURIER001", time, 10.0, 0L);
+        }
+        store.add("COURIER002", MINUTE, 500.0, 0L);
+
+        // When & Then
+        assertEquals(600.0, store.getDistance("COURIER001", 0, 10 * MINUTE), 0.001);
+        assertEquals(120.0, store.getDistance("COURIER001", 2 * MINUTE, 4 * MINUTE - 1), 0.001);
+        assertEquals(60.0, store.getDistance("COURIER001", 2 * MINUTE + 30_000, 2 * MINUTE + 40_000), 0.001);
+        assertEquals(0.0, store.getDistance("COURIER001", 20 * MINUTE, 30 * MINUTE), 0.001);
+        assertEquals(0.0, store.getDistance("UNKNOWN", 0, 10 * MINUTE), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should book late fixes into the bucket of their own time")
+    void testLateFixes() {
+        // Given
+        store.add("COURIER001", 5 * MINUTE, 50.0, 0L);
+        store.add("COURIER001", 1 * MINUTE, 10.0, 0L);
+        store.add("COURIER001", 3 * MINUTE, 30.0, 0L);
+        store.add("COURIER001", 3 * MINUTE + 1, -5.0, 0L);
+
+        // When & Then
+        assertEquals(10.0, store.getDistance("COURIER001", MINUTE, MINUTE), 0.001);
+        assertEquals(25.0, store.getDistance("COURIER001", 2 * MINUTE, 4 * MINUTE - 1), 0.001);
+        assertEquals(85.0, store.getDistance("COURIER001", 0, 6 * MINUTE), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should fall back to hour buckets beyond the minute retention")
+    void testHourBucketsBeyondMinuteRetention() {
+        // Given - one fix per minute for five hours
+        for (long time = 0; time < 5 * HOUR; time += MINUTE) {
+            store.add("COURIER001", time, 1.0, 0L);
+        }
+
+        // When & Then - minutes before hour 2 are gone, so older ranges widen to whole hours
+        assertEquals(300.0, store.getDistance("COURIER001", 0, 5 * HOUR), 0.001);
+        assertEquals(60.0, store.getDistance("COURIER001", HOUR + 30 * MINUTE, 2 * HOUR - 1), 0.001);
+        assertEquals(90.0, store.getDistance("COURIER001", HOUR + 30 * MINUTE, 2 * HOUR + 30 * MINUTE - 1), 0.001);
+        assertEquals(30.0, store.getDistance("COURIER001", 4 * HOUR + 30 * MINUTE, 5 * HOUR), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should drop hour buckets beyond the hour retention")
+    void testHourRetention() {
+        // Given
+        store.add("COURIER001", 0, 100.0, 0L);
+        store.add("COURIER001", 30 * HOUR, 10.0, 0L);
+
+        // When & Then
+        assertEquals(10.0, store.getDistance("COURIER001", 0, 31 * HOUR), 0.001);
+
+        // Fixes older than the retained range are ignored
+        store.add("COURIER001", HOUR, 100.0, 0L);
+        assertEquals(10.0, store.getDistance("COURIER001", 0, 31 * HOUR), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should remove couriers without fixes for the hour retention")
+    void testRemoveIdleCouriers() {
+        // Given
+        store.add("COURIER001", 0, 100.0, 0L);
+        store.add("COURIER002", 0, 100.0, 20 * HOUR);
+
+        // When
+        store.removeIdleCouriers(25 * HOUR);
+
+        // Then
+        assertEquals(0.0, store.getDistance("COURIER001", 0, HOUR), 0.001);
+        assertEquals(100.0, store.getDistance("COURIER002", 0, HOUR), 0.001);
+        assertEquals(1.0, meterRegistry.get("courier.rollup.couriers").gauge().value());
+    }
+}
@@ -0,0 +1,215 @@
+package com.migros.couriertracking.service;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.filter.LocationFilter;
+import com.migros.couriertracking.filter.MinimumDisplacementFilter;
+import com.migros.couriertracking.util.DistanceCalculator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CourierState Tests")
+class CourierStateTest {
+
+    // One meter per 0.001 degree of latitude, so distances are easy to follow
+    private final DistanceCalculator distanceCalculator =
+            (lat1, lng1, lat2, lng2) -> Math.abs(lat2 - lat1) * 1000;
+
+    private final CourierState state = new CourierState("COURIER001");
+
+    private Store store(long id) {
+        Store store = new Store("Store " + id, 41.0, 29.0);
+        store.setId(id);
+        return store;
+    }
+
+    private CourierState.FixOutcome record(double latitude, long time) {
+        return state.record(latitude, 29.0, time, time, distanceCalculator, LocationFilter.ACCEPT_ALL);
+    }
+
+    @Test
+    @DisplayName("Should accumulate and drain pending distance")
+    void testPendingDistance() {
+        assertEquals(CourierState.FixOutcome.APPLIED, record(41.0, 1000L));
+        assertEquals(CourierState.FixOutcome.APPLIED, record(41.15, 2000L));
+        assertEquals(CourierState.FixOutcome.APPLIED, record(41.2, 3000L));
+
+        assertTrue(state.hasLocation());
+        assertEquals(41.2, state.getLastLatitude());
+        assertEquals(29.0, state.getLastLongitude());
+        assertEquals(200.0, state.drainPendingDistance().distance(), 0.001);
+        assertEquals(0.0, state.getPendingDistance());
+
+        state.restorePendingDistance(200.0);
+        assertEquals(200.0, state.getPendingDistance(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should ignore fixes with the time of a buffered fix")
+    void testDuplicateFix() {
+        record(41.0, 1000L);
+        record(41.1, 2000L);
+
+        assertEquals(CourierState.FixOutcome.DUPLICATE, record(41.1, 2000L));
+        assertEquals(CourierState.FixOutcome.DUPLICATE, record(41.0, 1000L));
+        assertEquals(100.0, state.getPendingDistance(), 0.001);
+        assertEquals(2000L, state.getLastTime());
+    }
+
+    @Test
+    @DisplayName("Should splice a late fix in between its neighbours")
+    void testLateFix() {
+        record(41.0, 1000L);
+        record(41.1, 3000L);
+        record(41.1, 4000L);
+
+        // The courier went out to 41.3 and back in between
+        assertEquals(CourierState.FixOutcome.REORDERED, record(41.3, 2000L));
+
+        assertEquals(500.0, state.getPendingDistance(), 0.001);
+        assertEquals(4000L, state.getLastTime());
+        assertEquals(41.1, state.getLastLatitude());
+
+        // Later fixes continue from the newest one, not the late one
+        record(41.2, 5000L);
+        assertEquals(600.0, state.getPendingDistance(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should prepend a late fix until the buffer is full")
+    void testLateFirstFix() {
+        record(41.1, 2000L);
+
+        assertEquals(CourierState.FixOutcome.REORDERED, record(41.0, 1000L));
+        assertEquals(100.0, state.getPendingDistance(), 0.001);
+        assertEquals(41.1, state.getLastLatitude());
+    }
+
+    @Test
+    @DisplayName("Should ignore fixes older than the full reorder window")
+    void testTooLateFix() {
+        CourierState windowed = new CourierState("COURIER002", 2);
+        windowed.record(41.0, 29.0, 1000L, 1000L, distanceCalculator, LocationFilter.ACCEPT_ALL);
+        windowed.record(41.1, 29.0, 2000L, 2000L, distanceCalculator, LocationFilter.ACCEPT_ALL);
+        windowed.record(41.2, 29.0, 3000L, 3000L, distanceCalculator, LocationFilter.ACCEPT_ALL);
+
+        assertEquals(CourierState.FixOutcome.TOO_LATE,
+                windowed.record(41.5, 29.0, 1500L, 4000L, distanceCalculator, LocationFilter.ACCEPT_ALL));
+        assertEquals(CourierState.FixOutcome.REORDERED,
+                windowed.record(41.3, 29.0, 2500L, 4000L, distanceCalculator, LocationFilter.ACCEPT_ALL));
+        assertEquals(400.0, windowed.getPendingDistance(), 0.001);
+        assertEquals(3000L, windowed.getLastTime());
+    }
+
+    @Test
+    @DisplayName("Should measure filtered fixes against the last accepted one")
+    void testFilteredFix() {
+        LocationFilter filter = new MinimumDisplacementFilter(50.0);
+        state.record(41.0, 29.0, 1000L, 1000L, distanceCalculator, filter);
+
+        assertEquals(CourierState.FixOutcome.FILTERED,
+                state.record(41.03, 29.0, 2000L, 2000L, distanceCalculator, filter));
+        assertEquals(CourierState.FixOutcome.APPLIED,
+                state.record(41.06, 29.0, 3000L, 3000L, distanceCalculator, filter));
+
+        assertEquals(60.0, state.getPendingDistance(), 0.001);
+        assertEquals(3000L, state.getLastSeenAt());
+        assertFalse(state.evictIfIdle(2500L));
+    }
+
+    @Test
+    @DisplayName("Should open one visit per store and extend it while inside")
+    void testEnterStore() {
+        assertTrue(state.enterStore(store(1L), 0L));
+        assertFalse(state.enterStore(store(1L), 30000L));
+        assertTrue(state.enterStore(store(2L), 30000L));
+        assertFalse(state.enterStore(store(1L), 70000L));
+
+        assertEquals(2, state.getOpenVisitCount());
+    }
+
+    @Test
+    @DisplayName("Should close a visit only after staying outside for the exit delay")
+    void testLeaveStoreHysteresis() {
+        Store store = store(1L);
+        state.enterStore(store, 0L);
+
+        // Scatter outside the geofence and back does not end the visit
+        assertTrue(state.leaveStores(List.of(), 10000L, 60000L).isEmpty());
+        state.enterStore(store, 20000L);
+        assertTrue(state.leaveStores(List.of(), 30000L, 60000L).isEmpty());
+        assertTrue(state.leaveStores(List.of(), 80000L, 60000L).isEmpty());
+
+        List<CourierState.ClosedVisit> closed = state.leaveStores(List.of(), 90000L, 60000L);
+
+        assertEquals(List.of(new CourierState.ClosedVisit(store, 0L, 30000L)), closed);
+        assertEquals(0, state.getOpenVisitCount());
+        assertTrue(state.enterStore(store, 100000L));
+    }
+
+    @Test
+    @DisplayName("Should track visits for many stores")
+    void testManyStoreVisits() {
+        for (long storeId = 1; storeId <= 10; storeId++) {
+            assertTrue(state.enterStore(store(storeId), 1000L));
+        }
+        for (long storeId = 1; storeId <= 10; storeId++) {
+            assertFalse(state.enterStore(store(storeId), 2000L));
+        }
+
+        assertTrue(state.leaveStores(List.of(store(3L)), 10000L, 60000L).isEmpty());
+        List<CourierState.ClosedVisit> closed = state.leaveStores(List.of(store(3L)), 70000L, 60000L);
+
+        assertEquals(9, closed.size());
+        assertEquals(1, state.getOpenVisitCount());
+        assertFalse(state.enterStore(store(3L), 71000L));
+    }
+
+    @Test
+    @DisplayName("Should not reopen a closed visit for a late fix inside the store")
+    void testLateFixDoesNotReopenVisit() {
+        Store store = store(1L);
+        state.enterStore(store, 0L);
+        state.leaveStores(List.of(), 10000L, 60000L);
+        assertEquals(1, state.leaveStores(List.of(), 70000L, 60000L).size());
+
+        // Reordered fixes from before the closing one still belong to the closed visit
+        assertFalse(state.enterStore(store, 5000L));
+        assertFalse(state.enterStore(store, 65000L));
+        assertEquals(0, state.getOpenVisitCount());
+
+        assertTrue(state.enterStore(store, 75000L));
+    }
+
+    @Test
+    @DisplayName("Should close all open visits at their last fix inside")
+    void testCloseVisits() {
+        state.enterStore(store(1L), 1000L);
+        state.enterStore(store(1L), 5000L);
+        state.enterStore(store(2L), 2000L);
+        state.leaveStores(List.of(store(1L)), 8000L, 60000L);
+
+        List<CourierState.ClosedVisit> closed = state.closeVisits();
+
+        assertEquals(2, closed.size());
+        assertEquals(5000L, closed.get(0).exitedAt());
+        assertEquals(8000L, closed.get(1).exitedAt());
+        assertEquals(0, state.getOpenVisitCount());
+    }
+
+    @Test
+    @DisplayName("Should reject fixes once evicted")
+    void testEvictIfIdle() {
+        assertEquals(CourierState.FixOutcome.APPLIED, record(41.0, 1000L));
+
+        assertFalse(state.evictIfIdle(1000L));
+        assertTrue(state.evictIfIdle(1001L));
+        assertFalse(state.evictIfIdle(1001L));
+
+        assertEquals(CourierState.FixOutcome.EVICTED, record(41.1, 2000L));
+        assertEquals(0.0, state.getPendingDistance());
+    }
+}
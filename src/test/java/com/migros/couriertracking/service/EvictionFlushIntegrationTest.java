@@ -0,0 +1,56 @@
+package com.migros.couriertracking.service;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:evictiondb",
+        "courier.tracking.sync.flush-interval=3600000",
+        "courier.tracking.eviction.batch-size=1",
+        "courier.tracking.history.dir=target/test-history/${random.uuid}",
+        "courier.tracking.wal.dir=target/test-wal/${random.uuid}"
+})
+@DisplayName("Eviction Flush Integration Tests")
+class EvictionFlushIntegrationTest {
+
+    @Autowired
+    private InMemoryCourierTrackingService courierTrackingService;
+
+    @SpyBean
+    private CourierTravelSummaryRepository travelSummaryRepository;
+
+    private void logRoute(String courierId) {
+        courierTrackingService.logCourierLocation(new CourierLocationRequest(courierId, 41.00, 29.0, 1000L));
+        courierTrackingService.logCourierLocation(new CourierLocationRequest(courierId, 41.01, 29.0, 61000L));
+    }
+
+    @Test
+    @DisplayName("Should commit every eviction batch on its own when another batch fails")
+    void testFailedBatchDoesNotRollBackOthers() {
+        // Given
+        logRoute("EVICTED001");
+        logRoute("FAILING001");
+        logRoute("EVICTED002");
+        doThrow(new IllegalStateException("Database unavailable")).when(travelSummaryRepository).addDistances(
+                argThat(increments -> increments.stream().anyMatch(i -> i.courierId().equals("FAILING001"))));
+
+        // When
+        courierTrackingService.evictIdleCouriers(System.currentTimeMillis() + 7200000L);
+
+        // Then
+        assertTrue(travelSummaryRepository.findByCourierId("EVICTED001").orElseThrow().getTotalDistance() > 1000);
+        assertTrue(travelSummaryRepository.findByCourierId("EVICTED002").orElseThrow().getTotalDistance() > 1000);
+        assertTrue(travelSummaryRepository.findByCourierId("FAILING001").isEmpty());
+    }
+}
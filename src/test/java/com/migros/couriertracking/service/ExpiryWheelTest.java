@@ -0,0 +1,71 @@
+package com.migros.couriertracking.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ExpiryWheel Tests")
+class ExpiryWheelTest {
+
+    private final ExpiryWheel<String> wheel = new ExpiryWheel<>(1000L, 10000L, 0L);
+
+    private List<String> advance(long now) {
+        List<String> expired = new ArrayList<>();
+        wheel.advance(now, expired::add);
+        return expired;
+    }
+
+    @Test
+    @DisplayName("Should hand over items only once their tick has passed")
+    void testExpiresInDeadlineOrder() {
+        wheel.schedule("first", 1500L);
+        wheel.schedule("second", 4000L);
+
+        assertTrue(advance(1999L).isEmpty());
+        assertEquals(List.of("first"), advance(2000L));
+        assertTrue(advance(3999L).isEmpty());
+        assertEquals(List.of("second"), advance(4000L));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("Should accept items scheduled again while advancing")
+    void testRescheduleWhileAdvancing() {
+        wheel.schedule("courier", 1000L);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1000L, item -> {
+            expired.add(item);
+            wheel.schedule(item, 1000L);
+        });
+
+        assertEquals(List.of("courier"), expired);
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("courier"), advance(2000L));
+    }
+
+    @Test
+    @DisplayName("Should hand over deadlines beyond the horizon early")
+    void testClampsDeadlinesBeyondHorizon() {
+        wheel.schedule("far", 100000L);
+
+        List<String> expired = advance(20000L);
+
+        assertEquals(List.of("far"), expired);
+    }
+
+    @Test
+    @DisplayName("Should catch up on every bucket after a long pause")
+    void testCatchUpAfterPause() {
+        for (long deadline = 1000L; deadline <= 10000L; deadline += 1000L) {
+            wheel.schedule("item" + deadline, deadline);
+        }
+
+        assertEquals(10, advance(1000000L).size());
+        assertEquals(0, wheel.size());
+    }
+}
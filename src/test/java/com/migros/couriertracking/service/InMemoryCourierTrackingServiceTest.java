@@ -5,22 +5,27 @@ import com.migros.couriertracking.dto.TotalTravelDistanceResponse;
 import com.migros.couriertracking.entity.CourierTravelSummary;
 import com.migros.couriertracking.entity.Store;
 import com.migros.couriertracking.entity.StoreEntrance;
-import com.migros.couriertracking.observer.StoreEntranceObserver;
-import com.migros.couriertracking.repository.CourierTravelSummaryRepository;
-import com.migros.couriertracking.repository.StoreEntranceRepository;
-import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.filter.LocationFilter;
+import com.migros.couriertracking.filter.MinimumDisplacementFilter;
+import com.migros.couriertracking.history.LocationHistoryStore;
+import com.migros.couriertracking.rollup.DistanceRollupStore;
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
 import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.wal.LoggedFix;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,37 +36,48 @@ import static org.mockito.Mockito.*;
 class InMemoryCourierTrackingServiceTest {
 
     @Mock
-    private CourierTravelSummaryRepository travelSummaryRepository;
+    private StoreSpatialIndex storeSpatialIndex;
 
     @Mock
-    private StoreRepository storeRepository;
+    private DistanceCalculator distanceCalculator;
 
     @Mock
-    private StoreEntranceRepository storeEntranceRepository;
+    private StoreEntrancePipeline storeEntrancePipeline;
 
     @Mock
-    private DistanceCalculator distanceCalculator;
+    private TravelSummaryFlusher travelSummaryFlusher;
 
     @Mock
-    private StoreEntranceObserver storeEntranceObserver;
+    private LocationHistoryStore locationHistoryStore;
+
+    @Mock
+    private DistanceRollupStore distanceRollupStore;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     private InMemoryCourierTrackingService service;
 
     @BeforeEach
     void setUp() {
-        List<StoreEntranceObserver> observers = Arrays.asList(storeEntranceObserver);
         service = new InMemoryCourierTrackingService(
-                travelSummaryRepository,
-                storeRepository,
-                storeEntranceRepository,
+                storeSpatialIndex,
                 distanceCalculator,
-                observers);
+                LocationFilter.ACCEPT_ALL,
+                storeEntrancePipeline,
+                travelSummaryFlusher,
+                locationHistoryStore,
+                distanceRollupStore,
+                meterRegistry);
 
         // Set configuration values
-        ReflectionTestUtils.setField(service, "storeRadius", 100.0);
-        ReflectionTestUtils.setField(service, "entranceCooldownMs", 60000L);
+        ReflectionTestUtils.setField(service, "exitDelayMs", 60000L);
         ReflectionTestUtils.setField(service, "syncFrequency", 10);
         ReflectionTestUtils.setField(service, "syncTimeoutMs", 300000L);
+        ReflectionTestUtils.setField(service, "idleTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(service, "evictionIntervalMs", 1000L);
+        ReflectionTestUtils.setField(service, "reorderWindow", 4);
+        ReflectionTestUtils.setField(service, "evictionBatchSize", 2);
+        service.start();
     }
 
     @Test
@@ -70,13 +86,13 @@ class InMemoryCourierTrackingServiceTest {
         // Given
         CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
                 System.currentTimeMillis());
-        when(storeRepository.findAll()).thenReturn(Arrays.asList());
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
 
         // When
         assertDoesNotThrow(() -> service.logCourierLocation(request));
 
         // Then
-        verify(storeRepository).findAll();
+        verify(storeSpatialIndex).findStoresInRange(41.0840, 29.0093);
     }
 
     @Test
@@ -90,7 +106,7 @@ class InMemoryCourierTrackingServiceTest {
         CourierLocationRequest secondLocation = new CourierLocationRequest(courierId, 41.0100, 29.0100,
                 currentTime + 1000);
 
-        when(storeRepository.findAll()).thenReturn(Arrays.asList());
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
         when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
                 .thenReturn(1000.0); // 1km distance
 
@@ -100,6 +116,65 @@ class InMemoryCourierTrackingServiceTest {
 
         // Then
         verify(distanceCalculator).calculateDistance(41.0000, 29.0000, 41.0100, 29.0100);
+        verify(distanceRollupStore).add(courierId, currentTime, 0.0);
+        verify(distanceRollupStore).add(courierId, currentTime + 1000, 1000.0);
+    }
+
+    @Test
+    @DisplayName("Should drop duplicate fixes and splice late fixes in by time")
+    void testOutOfOrderFixes() {
+        // Given
+        String courierId = "COURIER001";
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
+        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(100.0);
+
+        // When
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.00, 29.0, currentTime));
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.02, 29.0, currentTime + 2000));
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.02, 29.0, currentTime + 2000));
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.01, 29.0, currentTime + 1000));
+
+        // Then - the late fix replaces one 100 m leg with two
+        assertEquals(200.0, meterRegistry.get("courier.distance.pending").gauge().value(), 0.001);
+        assertEquals(1.0, meterRegistry.get("courier.location.out-of-order").tag("result", "duplicate")
+                .counter().count());
+        assertEquals(1.0, meterRegistry.get("courier.location.out-of-order").tag("result", "reordered")
+                .counter().count());
+        verify(storeSpatialIndex, times(3)).findStoresInRange(anyDouble(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should skip store checks and sync work for filtered fixes")
+    void testFilteredFixes() {
+        // Given
+        SimpleMeterRegistry filteredRegistry = new SimpleMeterRegistry();
+        service = new InMemoryCourierTrackingService(storeSpatialIndex, distanceCalculator, new MinimumDisplacementFilter(5.0), storeEntrancePipeline,
+                travelSummaryFlusher, locationHistoryStore, distanceRollupStore, filteredRegistry);
+        ReflectionTestUtils.setField(service, "syncFrequency", 10);
+        ReflectionTestUtils.setField(service, "idleTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(service, "evictionIntervalMs", 1000L);
+        ReflectionTestUtils.setField(service, "reorderWindow", 4);
+        service.start();
+
+        String courierId = "COURIER001";
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
+        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(2.0, 2.0, 8.0);
+
+        // When - a standing courier jitters twice, then moves
+        for (int i = 0; i < 4; i++) {
+            service.logCourierLocation(new CourierLocationRequest(courierId, 41.0 + i * 0.00001, 29.0,
+                    currentTime + i * 1000));
+        }
+
+        // Then
+        assertEquals(8.0, filteredRegistry.get("courier.distance.pending").gauge().value(), 0.001);
+        assertEquals(2.0, filteredRegistry.get("courier.location.filtered").counter().count());
+        verify(storeSpatialIndex, times(2)).findStoresInRange(anyDouble(), anyDouble());
+        verify(locationHistoryStore, times(2)).append(eq(courierId), anyDouble(), anyDouble(), anyLong());
     }
 
     @Test
@@ -111,89 +186,163 @@ class InMemoryCourierTrackingServiceTest {
         CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
                 System.currentTimeMillis());
 
-        when(storeRepository.findAll()).thenReturn(Arrays.asList(store));
-        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                .thenReturn(50.0); // Within 100m radius
-        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenReturn(new StoreEntrance());
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList(store));
 
         // When
         service.logCourierLocation(request);
 
         // Then
-        verify(storeEntranceRepository).save(any(StoreEntrance.class));
-        verify(storeEntranceObserver).onStoreEntrance(any(StoreEntrance.class));
+        verify(storeEntrancePipeline).publish(any(StoreEntrance.class));
     }
 
     @Test
     @DisplayName("Should not create store entrance when outside radius")
     void testNoStoreEntranceWhenOutsideRadius() {
         // Given
-        Store store = new Store("Test Migros", 41.0840, 29.0093);
         CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.1000, 29.1000,
                 System.currentTimeMillis());
 
-        when(storeRepository.findAll()).thenReturn(Arrays.asList(store));
-        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                .thenReturn(500.0); // Outside 100m radius
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
 
         // When
         service.logCourierLocation(request);
 
         // Then
-        verify(storeEntranceRepository, never()).save(any(StoreEntrance.class));
-        verify(storeEntranceObserver, never()).onStoreEntrance(any(StoreEntrance.class));
+        verify(storeEntrancePipeline, never()).publish(any(StoreEntrance.class));
     }
 
     @Test
-    @DisplayName("Should respect entrance cooldown period")
-    void testEntranceCooldownPrevention() {
+    @DisplayName("Should record one entrance while the courier stays in the store")
+    void testOneEntrancePerVisit() {
         // Given
         Store store = new Store("Test Migros", 41.0840, 29.0093);
         store.setId(1L);
         long currentTime = System.currentTimeMillis();
 
-        CourierLocationRequest firstRequest = new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime);
-        CourierLocationRequest secondRequest = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
-                currentTime + 30000); // 30 seconds later
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList(store));
 
-        when(storeRepository.findAll()).thenReturn(Arrays.asList(store));
-        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                .thenReturn(50.0); // Within radius
-        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenReturn(new StoreEntrance());
-
-        // When
-        service.logCourierLocation(firstRequest);
-        service.logCourierLocation(secondRequest); // Should be blocked by cooldown
+        // When - pinging from inside the store for over two minutes
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime + 30000));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime + 130000));
 
         // Then
-        verify(storeEntranceRepository, times(1)).save(any(StoreEntrance.class)); // Only first entrance saved
-        verify(storeEntranceObserver, times(1)).onStoreEntrance(any(StoreEntrance.class));
+        verify(storeEntrancePipeline, times(1)).publish(any(StoreEntrance.class));
+        assertEquals(1.0, meterRegistry.get("courier.store.entrances").tag("result", "recorded").counter().count());
+        assertEquals(2.0, meterRegistry.get("courier.store.entrances").tag("result", "suppressed").counter().count());
     }
 
     @Test
-    @DisplayName("Should allow entrance after cooldown period expires")
-    void testEntranceAfterCooldownExpires() {
+    @DisplayName("Should record the exit with dwell time after the exit delay and allow a new visit")
+    void testExitAndReentry() {
         // Given
         Store store = new Store("Test Migros", 41.0840, 29.0093);
         store.setId(1L);
         long currentTime = System.currentTimeMillis();
 
-        CourierLocationRequest firstRequest = new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime);
-        CourierLocationRequest secondRequest = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
-                currentTime + 70000); // 70 seconds later
+        when(storeSpatialIndex.findStoresInRange(41.0840, 29.0093)).thenReturn(Arrays.asList(store));
+        when(storeSpatialIndex.findStoresInRange(41.0900, 29.0093)).thenReturn(Arrays.asList());
+
+        // When
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0900, 29.0093, currentTime + 120000));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0900, 29.0093, currentTime + 150000));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0900, 29.0093, currentTime + 180000));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime + 240000));
+
+        // Then - entrance, exit at the first fix outside, and a second entrance
+        ArgumentCaptor<StoreEntrance> captor = ArgumentCaptor.forClass(StoreEntrance.class);
+        verify(storeEntrancePipeline, times(3)).publish(captor.capture());
+        StoreEntrance exit = captor.getAllValues().get(1);
+        assertEquals(captor.getAllValues().get(0).getEntranceTime(), exit.getEntranceTime());
+        assertEquals(Duration.ofMinutes(2), Duration.between(exit.getEntranceTime(), exit.getExitTime()));
+        assertNull(captor.getAllValues().get(2).getExitTime());
+        assertEquals(1.0, meterRegistry.get("courier.store.exits").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should record the exit from one store and the entrance to another with the same fix")
+    void testLeaveAndEnterWithSameFix() {
+        // Given
+        ReflectionTestUtils.setField(service, "exitDelayMs", 0L);
+        Store first = new Store("First Migros", 41.0840, 29.0093);
+        first.setId(1L);
+        Store second = new Store("Second Migros", 41.0850, 29.0093);
+        second.setId(2L);
+        long currentTime = System.currentTimeMillis();
+
+        when(storeSpatialIndex.findStoresInRange(41.0840, 29.0093)).thenReturn(List.of(first));
+        when(storeSpatialIndex.findStoresInRange(41.0850, 29.0093)).thenReturn(List.of(second));
+
+        // When
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0850, 29.0093, currentTime + 30000));
+
+        // Then - entrance to the first store, then entrance to the second and exit from the first
+        ArgumentCaptor<StoreEntrance> captor = ArgumentCaptor.forClass(StoreEntrance.class);
+        verify(storeEntrancePipeline, times(3)).publish(captor.capture());
+        StoreEntrance exit = captor.getAllValues().stream().filter(entrance -> entrance.getExitTime() != null)
+                .findFirst().orElseThrow();
+        assertEquals(1L, exit.getStore().getId());
+        assertEquals(Duration.ofSeconds(30), Duration.between(exit.getEntranceTime(), exit.getExitTime()));
+        assertEquals(1.0, meterRegistry.get("courier.store.exits").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should close a store visit on filtered fixes of a courier standing outside")
+    void testFilteredFixesCloseVisit() {
+        // Given
+        SimpleMeterRegistry filteredRegistry = new SimpleMeterRegistry();
+        service = new InMemoryCourierTrackingService(storeSpatialIndex, distanceCalculator,
+                new MinimumDisplacementFilter(5.0), storeEntrancePipeline, travelSummaryFlusher, locationHistoryStore,
+                distanceRollupStore, filteredRegistry);
+        ReflectionTestUtils.setField(service, "exitDelayMs", 60000L);
+        ReflectionTestUtils.setField(service, "syncFrequency", 10);
+        ReflectionTestUtils.setField(service, "syncTimeoutMs", 300000L);
+        ReflectionTestUtils.setField(service, "idleTimeoutMs", 3600000L);
+        ReflectionTestUtils.setField(service, "evictionIntervalMs", 1000L);
+        ReflectionTestUtils.setField(service, "reorderWindow", 4);
+        service.start();
 
-        when(storeRepository.findAll()).thenReturn(Arrays.asList(store));
+        Store store = new Store("Test Migros", 41.0840, 29.0093);
+        store.setId(1L);
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(41.0840, 29.0093)).thenReturn(List.of(store));
+        when(storeSpatialIndex.findStoresInRange(41.0900, 29.0093)).thenReturn(List.of());
         when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                .thenReturn(50.0); // Within radius
-        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenReturn(new StoreEntrance());
+                .thenReturn(660.0, 2.0);
+
+        // When - the courier leaves the store, then stands still past the exit delay
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0900, 29.0093, currentTime + 10000));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.09001, 29.0093, currentTime + 80000));
+
+        // Then
+        ArgumentCaptor<StoreEntrance> captor = ArgumentCaptor.forClass(StoreEntrance.class);
+        verify(storeEntrancePipeline, times(2)).publish(captor.capture());
+        assertEquals(Duration.ofSeconds(10), Duration.between(captor.getAllValues().get(1).getEntranceTime(),
+                captor.getAllValues().get(1).getExitTime()));
+        assertEquals(1.0, filteredRegistry.get("courier.location.filtered").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should close open store visits when evicting a courier")
+    void testEvictionClosesVisits() {
+        // Given
+        Store store = new Store("Test Migros", 41.0840, 29.0093);
+        store.setId(1L);
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList(store));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0840, 29.0093, currentTime));
 
         // When
-        service.logCourierLocation(firstRequest);
-        service.logCourierLocation(secondRequest); // Should be allowed after cooldown
+        service.evictIdleCouriers(currentTime + 62000);
 
         // Then
-        verify(storeEntranceRepository, times(2)).save(any(StoreEntrance.class)); // Both entrances saved
-        verify(storeEntranceObserver, times(2)).onStoreEntrance(any(StoreEntrance.class));
+        ArgumentCaptor<StoreEntrance> captor = ArgumentCaptor.forClass(StoreEntrance.class);
+        verify(storeEntrancePipeline, times(2)).publish(captor.capture());
+        assertEquals(captor.getAllValues().get(1).getEntranceTime(), captor.getAllValues().get(1).getExitTime());
+        assertEquals(1.0, meterRegistry.get("courier.store.exits").counter().count());
     }
 
     @Test
@@ -201,10 +350,7 @@ class InMemoryCourierTrackingServiceTest {
     void testGetTotalTravelDistanceExistingCourier() {
         // Given
         String courierId = "COURIER001";
-        CourierTravelSummary summary = new CourierTravelSummary(courierId);
-        summary.setTotalDistance(1500.0);
-
-        when(travelSummaryRepository.findByCourierId(courierId)).thenReturn(Optional.of(summary));
+        when(travelSummaryFlusher.getPersistedTotal(courierId)).thenReturn(1500.0);
 
         // When
         TotalTravelDistanceResponse response = service.getTotalTravelDistance(courierId);
@@ -220,7 +366,7 @@ class InMemoryCourierTrackingServiceTest {
     void testGetTotalTravelDistanceNonExistingCourier() {
         // Given
         String courierId = "NONEXISTENT";
-        when(travelSummaryRepository.findByCourierId(courierId)).thenReturn(Optional.empty());
+        when(travelSummaryFlusher.getPersistedTotal(courierId)).thenReturn(0.0);
 
         // When
         TotalTravelDistanceResponse response = service.getTotalTravelDistance(courierId);
@@ -232,17 +378,61 @@ class InMemoryCourierTrackingServiceTest {
     }
 
     @Test
-    @DisplayName("Should sync distance to database after specified frequency")
+    @DisplayName("Should merge pending distance into persisted totals without flushing")
+    void testGetTotalTravelDistances() {
+        // Given
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
+        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(250.0);
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0, 29.0, currentTime));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.001, 29.0, currentTime + 1000));
+
+        when(travelSummaryFlusher.getPersistedTotals(anyCollection()))
+                .thenReturn(Map.of("COURIER001", 1000.0, "COURIER002", 500.0, "COURIER003", 0.0));
+
+        // When
+        List<TotalTravelDistanceResponse> totals = service.getTotalTravelDistances(
+                Arrays.asList("COURIER001", "COURIER002", "COURIER003", "COURIER001"));
+
+        // Then
+        assertEquals(3, totals.size());
+        assertEquals(1250.0, totals.get(0).getTotalDistance());
+        assertEquals(500.0, totals.get(1).getTotalDistance());
+        assertEquals("COURIER003", totals.get(2).getCourierId());
+        assertEquals(0.0, totals.get(2).getTotalDistance());
+        verify(travelSummaryFlusher).getPersistedTotals(List.of("COURIER001", "COURIER002", "COURIER003"));
+        verify(travelSummaryFlusher, never()).flushStates(anyList());
+    }
+
+    @Test
+    @DisplayName("Should return totals of all active couriers")
+    void testGetActiveTotalTravelDistances() {
+        // Given
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0, 29.0, currentTime));
+        service.logCourierLocation(new CourierLocationRequest("COURIER002", 41.1, 29.1, currentTime));
+        when(travelSummaryFlusher.getPersistedTotals(anyCollection())).thenReturn(Map.of());
+
+        // When
+        List<TotalTravelDistanceResponse> totals = service.getActiveTotalTravelDistances();
+
+        // Then
+        assertEquals(2, totals.size());
+        assertTrue(totals.stream().anyMatch(total -> total.getCourierId().equals("COURIER002")));
+        verify(travelSummaryFlusher).getPersistedTotals(argThat(ids -> ids.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Should hand courier over to write-behind flusher after specified frequency")
     void testDistanceSyncByFrequency() {
         // Given
         String courierId = "COURIER001";
-        CourierTravelSummary summary = new CourierTravelSummary(courierId);
 
-        when(storeRepository.findAll()).thenReturn(Arrays.asList());
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
         when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
                 .thenReturn(100.0);
-        when(travelSummaryRepository.findByCourierId(courierId)).thenReturn(Optional.of(summary));
-        when(travelSummaryRepository.save(any(CourierTravelSummary.class))).thenReturn(summary);
 
         // When - Send 10 location updates to trigger sync
         for (int i = 0; i < 10; i++) {
@@ -251,35 +441,38 @@ class InMemoryCourierTrackingServiceTest {
             service.logCourierLocation(request);
         }
 
-        // Then
-        verify(travelSummaryRepository, atLeastOnce()).save(any(CourierTravelSummary.class));
+        // Then - first ping (time-based, never synced) and tenth ping (count-based)
+        verify(travelSummaryFlusher, times(2)).markDirty(argThat(state -> state.getCourierId().equals(courierId)));
+        assertEquals(900.0, meterRegistry.get("courier.distance.pending").gauge().value(), 0.001);
+        assertEquals(10, meterRegistry.get("courier.location.processing").timer().count());
     }
 
     @Test
-    @DisplayName("Should handle observer exception gracefully")
-    void testObserverExceptionHandling() {
+    @DisplayName("Should add pending distance to the persisted total without flushing")
+    void testGetTotalTravelDistanceMergesPendingDistance() {
         // Given
-        Store store = new Store("Test Migros", 41.0840, 29.0093);
-        store.setId(1L);
-        CourierLocationRequest request = new CourierLocationRequest("COURIER001", 41.0840, 29.0093,
-                System.currentTimeMillis());
-
-        when(storeRepository.findAll()).thenReturn(Arrays.asList(store));
+        String courierId = "COURIER001";
+        long currentTime = System.currentTimeMillis();
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
         when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
-                .thenReturn(50.0);
-        when(storeEntranceRepository.save(any(StoreEntrance.class))).thenReturn(new StoreEntrance());
-        doThrow(new RuntimeException("Observer error")).when(storeEntranceObserver).onStoreEntrance(any());
+                .thenReturn(300.0);
+        when(travelSummaryFlusher.getPersistedTotal(courierId)).thenReturn(1000.0);
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.0, 29.0, currentTime));
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.001, 29.0, currentTime + 1000));
 
-        // When & Then
-        assertDoesNotThrow(() -> service.logCourierLocation(request));
-        verify(storeEntranceRepository).save(any(StoreEntrance.class)); // Should still save
+        // When
+        TotalTravelDistanceResponse response = service.getTotalTravelDistance(courierId);
+
+        // Then
+        assertEquals(1300.0, response.getTotalDistance());
+        verify(travelSummaryFlusher, never()).flushStates(anyList());
     }
 
     @Test
     @DisplayName("Should handle multiple couriers simultaneously")
     void testMultipleCouriersSimultaneously() {
         // Given
-        when(storeRepository.findAll()).thenReturn(Arrays.asList());
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
 
         String courier1 = "COURIER001";
         String courier2 = "COURIER002";
@@ -295,7 +488,8 @@ class InMemoryCourierTrackingServiceTest {
         });
 
         // Then
-        verify(storeRepository, times(2)).findAll();
+        verify(storeSpatialIndex, times(2)).findStoresInRange(anyDouble(), anyDouble());
+        assertEquals(2.0, meterRegistry.get("courier.tracked").gauge().value());
     }
 
     @Test
@@ -309,4 +503,163 @@ class InMemoryCourierTrackingServiceTest {
         assertNull(response.getCourierId());
         assertEquals(0.0, response.getTotalDistance());
     }
+
+    @Test
+    @DisplayName("Should evict idle couriers and flush them in batches")
+    void testEvictIdleCouriers() {
+        // Given
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
+        long currentTime = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            service.logCourierLocation(new CourierLocationRequest("COURIER00" + i, 41.0, 29.0, currentTime));
+        }
+
+        // When
+        service.evictIdleCouriers(currentTime + 30000);
+
+        // Then - nothing is due before the idle timeout
+        verify(travelSummaryFlusher, never()).flushStates(anyList());
+        assertEquals(5.0, meterRegistry.get("courier.tracked").gauge().value());
+
+        service.evictIdleCouriers(currentTime + 62000);
+
+        verify(travelSummaryFlusher, times(3)).flushStates(argThat(states -> states.size() <= 2));
+        assertEquals(0.0, meterRegistry.get("courier.tracked").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should start a fresh state when an evicted courier reports again")
+    void testCourierReturnsAfterEviction() {
+        // Given
+        String courierId = "COURIER001";
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(Arrays.asList());
+        long currentTime = System.currentTimeMillis();
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.0, 29.0, currentTime));
+        service.evictIdleCouriers(currentTime + 62000);
+
+        // When
+        service.logCourierLocation(new CourierLocationRequest(courierId, 41.1, 29.1, currentTime + 62000));
+
+        // Then - no distance is added across the eviction gap
+        verify(distanceCalculator, never()).calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        assertEquals(1.0, meterRegistry.get("courier.tracked").gauge().value());
+        verify(travelSummaryFlusher).flushStates(argThat((List<CourierState> states) -> states.size() == 1
+                && states.get(0).getCourierId().equals(courierId)));
+    }
+
+    @Test
+    @DisplayName("Should replay logged fixes after the persisted log record without store checks")
+    void testReplayLocations() {
+        // Given
+        CourierTravelSummary summary = new CourierTravelSummary("COURIER001");
+        summary.setLastFixTime(2000L);
+        summary.setLastLatitude(41.02);
+        summary.setLastLongitude(29.0);
+        summary.setLastRecordId(2L);
+        when(travelSummaryFlusher.getPersistedSummaries(anyCollection())).thenReturn(Map.of("COURIER001", summary));
+        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(100.0);
+
+        // When
+        int replayed = service.replayLocations(List.of(
+                new LoggedFix(1, new CourierLocationRequest("COURIER001", 41.00, 29.0, 1000L)),
+                new LoggedFix(2, new CourierLocationRequest("COURIER001", 41.02, 29.0, 2000L)),
+                new LoggedFix(3, new CourierLocationRequest("COURIER002", 40.00, 28.0, 1000L)),
+                new LoggedFix(4, new CourierLocationRequest("COURIER001", 41.03, 29.0, 3000L)),
+                new LoggedFix(5, new CourierLocationRequest("COURIER001", 41.04, 29.0, 4000L)),
+                new LoggedFix(6, new CourierLocationRequest("COURIER002", 40.01, 28.0, 2000L))));
+
+        // Then - COURIER001 continues from its persisted fix, so only its last two legs count
+        assertEquals(4, replayed);
+        verify(distanceCalculator).calculateDistance(41.02, 29.0, 41.03, 29.0);
+        assertEquals(300.0, meterRegistry.get("courier.distance.pending").gauge().value(), 0.001);
+        verify(travelSummaryFlusher, times(2)).markDirty(any());
+        verifyNoInteractions(storeSpatialIndex, locationHistoryStore, distanceRollupStore, storeEntrancePipeline);
+    }
+
+    @Test
+    @DisplayName("Should not bridge the gap to a persisted fix older than the idle timeout")
+    void testReplayAfterIdleGap() {
+        // Given
+        CourierTravelSummary summary = new CourierTravelSummary("COURIER001");
+        summary.setLastFixTime(1000L);
+        summary.setLastLatitude(41.0);
+        summary.setLastLongitude(29.0);
+        when(travelSummaryFlusher.getPersistedSummaries(anyCollection())).thenReturn(Map.of("COURIER001", summary));
+        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(100.0);
+
+        // When
+        service.replayLocations(List.of(
+                new LoggedFix(1, new CourierLocationRequest("COURIER001", 41.1, 29.0, 62000L)),
+                new LoggedFix(2, new CourierLocationRequest("COURIER001", 41.2, 29.0, 63000L))));
+
+        // Then
+        assertEquals(100.0, meterRegistry.get("courier.distance.pending").gauge().value(), 0.001);
+        verify(distanceCalculator).calculateDistance(41.1, 29.0, 41.2, 29.0);
+    }
+
+    @Test
+    @DisplayName("Should replay a late fix logged after the persisted one although it is older")
+    void testReplayLateFixAfterFlush() {
+        // Given - the flush before the restart included the fix at 3000 but not the late one at 2000
+        CourierTravelSummary summary = new CourierTravelSummary("COURIER001");
+        summary.setLastFixTime(3000L);
+        summary.setLastLatitude(41.02);
+        summary.setLastLongitude(29.0);
+        summary.setLastRecordId(2L);
+        when(travelSummaryFlusher.getPersistedSummaries(anyCollection())).thenReturn(Map.of("COURIER001", summary));
+        when(distanceCalculator.calculateDistance(anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+                .thenReturn(100.0);
+
+        // When
+        int replayed = service.replayLocations(List.of(
+                new LoggedFix(1, new CourierLocationRequest("COURIER001", 41.00, 29.0, 1000L)),
+                new LoggedFix(2, new CourierLocationRequest("COURIER001", 41.02, 29.0, 3000L)),
+                new LoggedFix(3, new CourierLocationRequest("COURIER001", 41.01, 29.0, 2000L))));
+
+        // Then - the late fix is sorted into the rebuilt route and only its detour counts
+        assertEquals(1, replayed);
+        verify(distanceCalculator).calculateDistance(41.00, 29.0, 41.01, 29.0);
+        verify(distanceCalculator).calculateDistance(41.01, 29.0, 41.02, 29.0);
+        assertEquals(100.0, meterRegistry.get("courier.distance.pending").gauge().value(), 0.001);
+        verify(travelSummaryFlusher).markDirty(any());
+    }
+
+    @Test
+    @DisplayName("Should queue every tracked courier for a checkpoint flush")
+    void testFlushAll() {
+        // Given
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(List.of());
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+        service.logCourierLocation(new CourierLocationRequest("COURIER002", 41.0, 29.0, 1000L));
+        clearInvocations(travelSummaryFlusher);
+        when(travelSummaryFlusher.flushQueued()).thenReturn(true);
+
+        // When
+        boolean flushed = service.flushAll();
+
+        // Then
+        assertTrue(flushed);
+        verify(travelSummaryFlusher, times(2)).markDirty(any());
+        verify(travelSummaryFlusher).flushQueued();
+    }
+
+    @Test
+    @DisplayName("Should flush couriers below the sync thresholds on shutdown")
+    void testShutdownFlushesEveryCourier() {
+        // Given
+        when(storeSpatialIndex.findStoresInRange(anyDouble(), anyDouble())).thenReturn(List.of());
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+        service.logCourierLocation(new CourierLocationRequest("COURIER001", 41.1, 29.0, 2000L));
+        clearInvocations(travelSummaryFlusher);
+        when(travelSummaryFlusher.flushQueued()).thenReturn(true);
+
+        // When
+        service.shutdown();
+
+        // Then
+        verify(travelSummaryFlusher).markDirty(any());
+        verify(travelSummaryFlusher).flushQueued();
+    }
 }
@@ -0,0 +1,236 @@
+package com.migros.couriertracking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.spatial.StoreSpatialIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreCatalogService Tests")
+class StoreCatalogServiceTest {
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    @Mock
+    private StoreEntranceRepository storeEntranceRepository;
+
+    @Mock
+    private StoreSpatialIndex storeSpatialIndex;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path tempDir;
+
+    private StoreCatalogService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StoreCatalogService(storeRepository, storeEntranceRepository, storeSpatialIndex,
+                new ObjectMapper(), transactionManager);
+    }
+
+    private Store store(Long id, String name, double latitude, double longitude) {
+        Store store = new Store(name, latitude, longitude);
+        store.setId(id);
+        return store;
+    }
+
+    private Path writeStoreFile(String json) throws IOException {
+        Path file = tempDir.resolve("stores.json");
+        Files.writeString(file, json);
+        ReflectionTestUtils.setField(service, "storeFile", file.toString());
+        return file;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Store> captureIterable(Consumer<ArgumentCaptor<Iterable<Store>>> verification) {
+        ArgumentCaptor<Iterable<Store>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verification.accept(captor);
+        List<Store> stores = new ArrayList<>();
+        captor.getValue().forEach(stores::add);
+        return stores;
+    }
+
+    @Test
+    @DisplayName("Should rebuild the index after adding a store")
+    void testAddStore() {
+        // Given
+        when(storeRepository.findByName("New Migros")).thenReturn(Optional.empty());
+        when(storeRepository.save(any(Store.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        Store store = service.addStore("New Migros", 41.0, 29.0, 150.0, null);
+
+        // Then
+        assertEquals("New Migros", store.getName());
+        assertEquals(150.0, store.getRadius());
+        verify(storeSpatialIndex).rebuild();
+    }
+
+    @Test
+    @DisplayName("Should reject a store with an existing name and keep the index")
+    void testAddDuplicateStore() {
+        when(storeRepository.findByName("Test Migros")).thenReturn(Optional.of(store(1L, "Test Migros", 41.0, 29.0)));
+
+        assertThrows(IllegalStateException.class, () -> service.addStore("Test Migros", 41.0, 29.0, null, null));
+
+        verify(storeRepository, never()).save(any(Store.class));
+        verifyNoInteractions(storeSpatialIndex);
+    }
+
+    @Test
+    @DisplayName("Should reject a polygon with fewer than 3 vertices")
+    void testAddStoreWithInvalidPolygon() {
+        double[][] polygon = { { 41.0, 29.0 }, { 41.001, 29.0 } };
+
+        assertThrows(IllegalArgumentException.class, () -> service.addStore("New Migros", 41.0, 29.0, null, polygon));
+
+        verifyNoInteractions(storeRepository, storeSpatialIndex);
+    }
+
+    @Test
+    @DisplayName("Should move an existing store")
+    void testUpdateStore() {
+        // Given
+        Store existing = store(1L, "Test Migros", 41.0, 29.0);
+        when(storeRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(storeRepository.findByName("Test Migros")).thenReturn(Optional.of(existing));
+        when(storeRepository.save(existing)).thenReturn(existing);
+
+        // When
+        Optional<Store> updated = service.updateStore(1L, "Test Migros", 41.5, 29.5, null, null);
+
+        // Then
+        assertTrue(updated.isPresent());
+        assertEquals(41.5, existing.getLatitude());
+        verify(storeSpatialIndex).rebuild();
+    }
+
+    @Test
+    @DisplayName("Should delete a store without entrances")
+    void testDeleteStore() {
+        when(storeRepository.existsById(1L)).thenReturn(true);
+        when(storeEntranceRepository.existsByStoreId(1L)).thenReturn(false);
+
+        assertTrue(service.deleteStore(1L));
+
+        verify(storeRepository).deleteById(1L);
+        verify(storeSpatialIndex).rebuild();
+    }
+
+    @Test
+    @DisplayName("Should refuse to delete a store with recorded entrances")
+    void testDeleteStoreWithEntrances() {
+        when(storeRepository.existsById(1L)).thenReturn(true);
+        when(storeEntranceRepository.existsByStoreId(1L)).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> service.deleteStore(1L));
+
+        verify(storeRepository, never()).deleteById(anyLong());
+        verifyNoInteractions(storeSpatialIndex);
+    }
+
+    @Test
+    @DisplayName("Should return false when deleting a missing store")
+    void testDeleteMissingStore() {
+        when(storeRepository.existsById(1L)).thenReturn(false);
+
+        assertFalse(service.deleteStore(1L));
+
+        verifyNoInteractions(storeSpatialIndex);
+    }
+
+    @Test
+    @DisplayName("Should only rebuild the index on reload without a store file")
+    void testReloadWithoutStoreFile() throws IOException {
+        when(storeSpatialIndex.size()).thenReturn(5);
+
+        assertEquals(5, service.reload());
+
+        verify(storeSpatialIndex).rebuild();
+        verifyNoInteractions(storeRepository);
+    }
+
+    @Test
+    @DisplayName("Should apply added, moved and removed stores from the store file")
+    void testReloadAppliesStoreFile() throws IOException {
+        // Given
+        writeStoreFile("""
+                [
+                  {"name": "Kept Migros", "lat": 41.0, "lng": 29.0},
+                  {"name": "Moved Migros", "lat": 41.2, "lng": 29.2},
+                  {"name": "New Migros", "lat": 41.3, "lng": 29.3}
+                ]
+                """);
+        Store kept = store(1L, "Kept Migros", 41.0, 29.0);
+        Store moved = store(2L, "Moved Migros", 41.1, 29.1);
+        Store removed = store(3L, "Removed Migros", 41.4, 29.4);
+        Store visited = store(4L, "Visited Migros", 41.5, 29.5);
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(kept, moved, removed, visited));
+        when(storeEntranceRepository.existsByStoreId(3L)).thenReturn(false);
+        when(storeEntranceRepository.existsByStoreId(4L)).thenReturn(true);
+
+        // When
+        service.reload();
+
+        // Then
+        List<Store> saved = captureIterable(captor -> verify(storeRepository).saveAll(captor.capture()));
+        assertEquals(2, saved.size());
+        assertSame(moved, saved.get(0));
+        assertEquals(41.2, moved.getLatitude());
+        assertEquals("New Migros", saved.get(1).getName());
+
+        List<Store> deleted = captureIterable(captor -> verify(storeRepository).deleteAll(captor.capture()));
+        assertEquals(List.of(removed), deleted);
+        verify(storeSpatialIndex).rebuild();
+    }
+
+    @Test
+    @DisplayName("Should reload only after startup and when the store file changes")
+    void testCheckStoreFileReloadsOnChange() throws IOException {
+        // Given
+        Path file = writeStoreFile("[{\"name\": \"Kept Migros\", \"lat\": 41.0, \"lng\": 29.0}]");
+        when(storeRepository.findAll()).thenReturn(List.of(store(1L, "Kept Migros", 41.0, 29.0)));
+
+        // When
+        service.checkStoreFile();
+        service.reload();
+        service.checkStoreFile();
+
+        // Then
+        verify(storeSpatialIndex, times(1)).rebuild();
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        service.checkStoreFile();
+
+        verify(storeSpatialIndex, times(2)).rebuild();
+    }
+}
@@ -0,0 +1,212 @@
+package com.migros.couriertracking.service;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.entity.StoreEntrance;
+import com.migros.couriertracking.observer.StoreEntranceObserver;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreEntrancePipeline Tests")
+class StoreEntrancePipelineTest {
+
+    @Mock
+    private StoreEntranceRepository storeEntranceRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private StoreEntranceObserver firstObserver;
+
+    @Mock
+    private StoreEntranceObserver secondObserver;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StoreEntrancePipeline pipeline;
+
+    private final Store store = new Store("Test Migros", 41.0840, 29.0093);
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new StoreEntrancePipeline(storeEntranceRepository,
+                Arrays.asList(firstObserver, secondObserver), transactionManager, meterRegistry);
+
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 100);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 10);
+        ReflectionTestUtils.setField(pipeline, "observerQueueCapacity", 100);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<StoreEntrance> captureSavedEntrances() {
+        ArgumentCaptor<Iterable<StoreEntrance>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(storeEntranceRepository, atLeastOnce()).saveAll(captor.capture());
+        List<StoreEntrance> saved = new ArrayList<>();
+        captor.getAllValues().forEach(batch -> batch.forEach(saved::add));
+        return saved;
+    }
+
+    @Test
+    @DisplayName("Should persist entrances in batches and notify every observer")
+    void testPersistAndNotify() throws InterruptedException {
+        // Given
+        pipeline.start();
+        List<StoreEntrance> entrances = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            entrances.add(new StoreEntrance("COURIER00" + i, store));
+        }
+
+        // When
+        entrances.forEach(pipeline::publish);
+        pipeline.stop();
+
+        // Then
+        assertEquals(entrances, captureSavedEntrances());
+        for (StoreEntrance entrance : entrances) {
+            verify(firstObserver).onStoreEntrance(entrance);
+            verify(secondObserver).onStoreEntrance(entrance);
+        }
+        assertEquals(0, pipeline.getQueuedCount());
+    }
+
+    @Test
+    @DisplayName("Should persist and notify on virtual threads when enabled")
+    void testVirtualThreads() throws InterruptedException {
+        // Given
+        ReflectionTestUtils.setField(pipeline, "virtualThreads", true);
+        List<Boolean> virtual = new ArrayList<>();
+        doAnswer(invocation -> virtual.add(Thread.currentThread().isVirtual()))
+                .when(firstObserver).onStoreEntrance(any());
+        pipeline.start();
+        StoreEntrance entrance = new StoreEntrance("COURIER001", store);
+
+        // When
+        pipeline.publish(entrance);
+        pipeline.stop();
+
+        // Then
+        assertEquals(List.of(entrance), captureSavedEntrances());
+        assertEquals(List.of(true), virtual);
+        verify(secondObserver).onStoreEntrance(entrance);
+    }
+
+    @Test
+    @DisplayName("Should set the exit time of a visit after inserting its entrance")
+    void testExit() throws InterruptedException {
+        // Given
+        store.setId(1L);
+        pipeline.start();
+        StoreEntrance entrance = new StoreEntrance("COURIER001", store);
+        StoreEntrance exit = new StoreEntrance("COURIER001", store);
+        exit.setEntranceTime(entrance.getEntranceTime());
+        exit.setExitTime(entrance.getEntranceTime().plusMinutes(5));
+
+        // When
+        pipeline.publish(entrance);
+        pipeline.publish(exit);
+        pipeline.stop();
+
+        // Then
+        assertEquals(List.of(entrance), captureSavedEntrances());
+        InOrder inOrder = inOrder(storeEntranceRepository);
+        inOrder.verify(storeEntranceRepository).saveAll(anyIterable());
+        inOrder.verify(storeEntranceRepository).flush();
+        inOrder.verify(storeEntranceRepository).recordExits(List.of(exit));
+        verify(firstObserver).onStoreEntrance(entrance);
+        verify(firstObserver).onStoreExit(exit);
+        verify(secondObserver).onStoreExit(exit);
+        verify(firstObserver, never()).onStoreEntrance(exit);
+    }
+
+    @Test
+    @DisplayName("Should keep notifying other observers when one observer fails")
+    void testObserverFailureIsolation() throws InterruptedException {
+        // Given
+        pipeline.start();
+        StoreEntrance first = new StoreEntrance("COURIER001", store);
+        StoreEntrance second = new StoreEntrance("COURIER002", store);
+        doThrow(new RuntimeException("Observer error")).when(firstObserver).onStoreEntrance(any());
+
+        // When
+        pipeline.publish(first);
+        pipeline.publish(second);
+        pipeline.stop();
+
+        // Then
+        verify(firstObserver).onStoreEntrance(second);
+        verify(secondObserver).onStoreEntrance(first);
+        verify(secondObserver).onStoreEntrance(second);
+    }
+
+    @Test
+    @DisplayName("Should drop and count events for a slow observer instead of running them on the writer")
+    void testSlowObserverDoesNotBlockWriter() throws InterruptedException {
+        // Given
+        pipeline = new StoreEntrancePipeline(storeEntranceRepository, List.of(firstObserver), transactionManager,
+                meterRegistry);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 100);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 10);
+        ReflectionTestUtils.setField(pipeline, "observerQueueCapacity", 1);
+        pipeline.start();
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(firstObserver).onStoreEntrance(any());
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            pipeline.publish(new StoreEntrance("COURIER00" + i, store));
+        }
+
+        // Then - one event runs and one waits in the queue while the observer is stuck
+        double dropped = 0;
+        for (int attempt = 0; attempt < 50 && dropped < 3; attempt++) {
+            Thread.sleep(100);
+            dropped = meterRegistry.get("courier.entrance.observer.dropped").counter().count();
+        }
+        assertEquals(3.0, dropped);
+        assertEquals(5, captureSavedEntrances().size());
+
+        release.countDown();
+        pipeline.stop();
+        verify(firstObserver, times(2)).onStoreEntrance(any());
+    }
+
+    @Test
+    @DisplayName("Should not notify observers about entrances that could not be persisted")
+    void testPersistenceFailure() throws InterruptedException {
+        // Given
+        pipeline.start();
+        when(storeEntranceRepository.saveAll(anyIterable())).thenThrow(new RuntimeException("Database unavailable"));
+
+        // When
+        pipeline.publish(new StoreEntrance("COURIER001", store));
+        pipeline.stop();
+
+        // Then
+        verify(storeEntranceRepository, times(3)).saveAll(anyIterable());
+        verifyNoInteractions(firstObserver, secondObserver);
+        assertEquals(1.0, meterRegistry.get("courier.entrance.dropped").counter().count());
+    }
+}
@@ -0,0 +1,267 @@
+package com.migros.couriertracking.service;
+
+import com.migros.couriertracking.entity.CourierTravelSummary;
+import com.migros.couriertracking.filter.LocationFilter;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepository;
+import com.migros.couriertracking.repository.CourierTravelSummaryRepositoryCustom.DistanceIncrement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TravelSummaryFlusher Tests")
+class TravelSummaryFlusherTest {
+
+    @Mock
+    private CourierTravelSummaryRepository travelSummaryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TravelSummaryFlusher flusher;
+
+    @BeforeEach
+    void setUp() {
+        flusher = new TravelSummaryFlusher(travelSummaryRepository, transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(flusher, "batchSize", 2);
+        ReflectionTestUtils.setField(flusher, "totalCacheTtlMs", 60000L);
+    }
+
+    private CourierState stateWithPendingDistance(String courierId, double distance) {
+        CourierState state = new CourierState(courierId);
+        state.record(41.0, 29.0, 1000L, 1000L, (lat1, lng1, lat2, lng2) -> 0.0, LocationFilter.ACCEPT_ALL);
+        state.restorePendingDistance(distance);
+        return state;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DistanceIncrement> captureIncrements(int times) {
+        ArgumentCaptor<Collection<DistanceIncrement>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(travelSummaryRepository, times(times)).addDistances(captor.capture());
+        List<DistanceIncrement> increments = new ArrayList<>();
+        captor.getAllValues().forEach(increments::addAll);
+        return increments;
+    }
+
+    private CourierTravelSummary summary(String courierId, double totalDistance) {
+        CourierTravelSummary summary = new CourierTravelSummary(courierId);
+        summary.setTotalDistance(totalDistance);
+        return summary;
+    }
+
+    @Test
+    @DisplayName("Should not touch the database when nothing is dirty")
+    void testFlushWithoutDirtyCouriers() {
+        flusher.flush();
+
+        verifyNoInteractions(travelSummaryRepository);
+    }
+
+    @Test
+    @DisplayName("Should add the pending distances of dirty couriers in batches")
+    void testFlushInBatches() {
+        // Given
+        flusher.markDirty(stateWithPendingDistance("COURIER001", 100.0));
+        flusher.markDirty(stateWithPendingDistance("COURIER002", 200.0));
+        flusher.markDirty(stateWithPendingDistance("COURIER003", 300.0));
+
+        // When
+        flusher.flush();
+
+        // Then
+        Map<String, DistanceIncrement> increments = captureIncrements(2).stream()
+                .collect(Collectors.toMap(DistanceIncrement::courierId, Function.identity()));
+        assertEquals(100.0, increments.get("COURIER001").distance(), 0.001);
+        assertEquals(200.0, increments.get("COURIER002").distance(), 0.001);
+        assertEquals(300.0, increments.get("COURIER003").distance(), 0.001);
+        assertEquals(41.0, increments.get("COURIER003").lastLatitude());
+        assertEquals(1000L, increments.get("COURIER003").lastFixTime());
+        assertEquals(0, flusher.getDirtyCount());
+    }
+
+    @Test
+    @DisplayName("Should queue a courier only once until it is flushed")
+    void testMarkDirtyDeduplicates() {
+        CourierState state = stateWithPendingDistance("COURIER001", 100.0);
+
+        flusher.markDirty(state);
+        flusher.markDirty(state);
+
+        assertEquals(1, flusher.getDirtyCount());
+    }
+
+    @Test
+    @DisplayName("Should keep pending distance and retry after a failed flush")
+    void testFlushFailureRestoresDistance() {
+        // Given
+        CourierState state = stateWithPendingDistance("COURIER001", 100.0);
+        doThrow(new RuntimeException("Database unavailable"))
+                .doNothing()
+                .when(travelSummaryRepository).addDistances(anyCollection());
+        flusher.markDirty(state);
+
+        // When
+        boolean flushed = flusher.flushQueued();
+
+        // Then
+        assertFalse(flushed);
+        assertEquals(100.0, state.getPendingDistance(), 0.001);
+        assertEquals(1, flusher.getDirtyCount());
+        assertEquals(1.0, meterRegistry.get("courier.sync.failures").counter().count());
+        assertEquals(1.0, meterRegistry.get("courier.sync.dirty").gauge().value());
+
+        flusher.flush();
+
+        assertEquals(0.0, state.getPendingDistance());
+        List<DistanceIncrement> increments = captureIncrements(2);
+        assertEquals(100.0, increments.get(0).distance(), 0.001);
+        assertEquals(100.0, increments.get(1).distance(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should flush the given couriers immediately")
+    void testFlushStates() {
+        // Given
+
+        // When
+        flusher.flushStates(Arrays.asList(
+                stateWithPendingDistance("COURIER001", 100.0),
+                stateWithPendingDistance("COURIER002", 0.0)));
+
+        // Then
+        List<DistanceIncrement> increments = captureIncrements(1);
+        assertEquals(1, increments.size());
+        assertEquals("COURIER001", increments.get(0).courierId());
+    }
+
+    @Test
+    @DisplayName("Should add a committed flush to the cached total without reading it back")
+    void testFlushUpdatesTotalCache() {
+        // Given
+        when(travelSummaryRepository.findByCourierId("COURIER001"))
+                .thenReturn(Optional.of(summary("COURIER001", 1000.0)));
+        flusher.getPersistedTotal("COURIER001");
+        flusher.flushStates(List.of(stateWithPendingDistance("COURIER001", 100.0)));
+
+        // When
+        double total = flusher.getPersistedTotal("COURIER001");
+
+        // Then
+        assertEquals(1100.0, total, 0.001);
+        verify(travelSummaryRepository, times(1)).findByCourierId("COURIER001");
+        verify(travelSummaryRepository, never()).findByCourierIdIn(anyCollection());
+        assertEquals(1.0, meterRegistry.get("courier.sync.total-cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should keep the cached total when a flush fails")
+    void testFailedFlushKeepsTotalCache() {
+        // Given
+        when(travelSummaryRepository.findByCourierId("COURIER001"))
+                .thenReturn(Optional.of(summary("COURIER001", 1000.0)));
+        doThrow(new RuntimeException("Database unavailable"))
+                .when(travelSummaryRepository).addDistances(anyCollection());
+        flusher.getPersistedTotal("COURIER001");
+
+        // When
+        flusher.flushStates(List.of(stateWithPendingDistance("COURIER001", 100.0)));
+
+        // Then
+        assertEquals(1000.0, flusher.getPersistedTotal("COURIER001"), 0.001);
+    }
+
+    @Test
+    @DisplayName("Should not cache a total loaded while a flush ran")
+    void testOverlappingLoadIsNotCached() {
+        // Given - a flush commits while a load is reading the old total
+        when(travelSummaryRepository.findByCourierId("COURIER001"))
+                .thenAnswer(invocation -> {
+                    flusher.flushStates(List.of(stateWithPendingDistance("COURIER001", 100.0)));
+                    return Optional.of(summary("COURIER001", 1000.0));
+                })
+                .thenReturn(Optional.of(summary("COURIER001", 1100.0)));
+
+        // When
+        flusher.getPersistedTotal("COURIER001");
+
+        // Then
+        assertEquals(1100.0, flusher.getPersistedTotal("COURIER001"), 0.001);
+        assertEquals(1100.0, flusher.getPersistedTotal("COURIER001"), 0.001);
+        verify(travelSummaryRepository, times(2)).findByCourierId("COURIER001");
+    }
+
+    @Test
+    @DisplayName("Should load a missing total once and cache it")
+    void testPersistedTotalCacheMiss() {
+        // Given
+        CourierTravelSummary existing = new CourierTravelSummary("COURIER001");
+        existing.setTotalDistance(500.0);
+        when(travelSummaryRepository.findByCourierId("COURIER001")).thenReturn(Optional.of(existing));
+        when(travelSummaryRepository.findByCourierId("COURIER002")).thenReturn(Optional.empty());
+
+        // When
+        flusher.getPersistedTotal("COURIER001");
+        double total = flusher.getPersistedTotal("COURIER001");
+
+        // Then
+        assertEquals(500.0, total, 0.001);
+        assertEquals(0.0, flusher.getPersistedTotal("COURIER002"));
+        verify(travelSummaryRepository, times(1)).findByCourierId("COURIER001");
+        assertEquals(2.0, meterRegistry.get("courier.sync.total-cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should load only uncached totals with a single IN query")
+    void testPersistedTotalsBulk() {
+        // Given
+        when(travelSummaryRepository.findByCourierId("COURIER001")).thenReturn(Optional.empty());
+        flusher.getPersistedTotal("COURIER001");
+        CourierTravelSummary second = new CourierTravelSummary("COURIER002");
+        second.setTotalDistance(200.0);
+        when(travelSummaryRepository.findByCourierIdIn(anyCollection())).thenReturn(List.of(second));
+
+        // When
+        Map<String, Double> totals = flusher.getPersistedTotals(List.of("COURIER001", "COURIER002", "COURIER003"));
+
+        // Then
+        assertEquals(Map.of("COURIER001", 0.0, "COURIER002", 200.0, "COURIER003", 0.0), totals);
+        verify(travelSummaryRepository).findByCourierIdIn(List.of("COURIER002", "COURIER003"));
+    }
+
+    @Test
+    @DisplayName("Should drop cached totals after the cache TTL")
+    void testExpireCachedTotals() {
+        // Given
+        when(travelSummaryRepository.findByCourierId("COURIER001")).thenReturn(Optional.empty());
+        flusher.getPersistedTotal("COURIER001");
+
+        // When
+        flusher.expireCachedTotals(System.currentTimeMillis() + 120000L);
+        flusher.getPersistedTotal("COURIER001");
+
+        // Then
+        verify(travelSummaryRepository, times(2)).findByCourierId("COURIER001");
+    }
+}
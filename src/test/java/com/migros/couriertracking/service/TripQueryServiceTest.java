@@ -0,0 +1,98 @@
+package com.migros.couriertracking.service;
+
+import com.migros.couriertracking.dto.TripSummaryResponse;
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.entity.StoreEntrance;
+import com.migros.couriertracking.repository.StoreEntranceRepository;
+import com.migros.couriertracking.rollup.DistanceRollupStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TripQueryService Tests")
+class TripQueryServiceTest {
+
+    @Mock
+    private DistanceRollupStore distanceRollupStore;
+
+    @Mock
+    private StoreEntranceRepository storeEntranceRepository;
+
+    private TripQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TripQueryService(distanceRollupStore, storeEntranceRepository);
+    }
+
+    private LocalDateTime dateTime(long time) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    }
+
+    @Test
+    @DisplayName("Should combine the rolled up distance with the store visits in range")
+    void testGetTrip() {
+        // Given
+        long from = 1640995200000L;
+        long to = from + 3600000L;
+        Store store = new Store("Ataşehir MMM Migros", 40.9923307, 29.1244229);
+        store.setId(1L);
+        StoreEntrance entrance = new StoreEntrance("COURIER001", store);
+        entrance.setEntranceTime(dateTime(from + 60000L));
+        entrance.setExitTime(dateTime(from + 480000L));
+
+        when(distanceRollupStore.getDistance("COURIER001", from, to)).thenReturn(1200.0);
+        when(storeEntranceRepository.findByCourierIdInPeriod("COURIER001", dateTime(from), dateTime(to)))
+                .thenReturn(List.of(entrance));
+
+        // When
+        TripSummaryResponse trip = service.getTrip("COURIER001", from, to);
+
+        // Then
+        assertEquals("COURIER001", trip.getCourierId());
+        assertEquals(1200.0, trip.getDistance());
+        assertEquals(1, trip.getStoreVisits().size());
+        assertEquals(1L, trip.getStoreVisits().get(0).getStoreId());
+        assertEquals("Ataşehir MMM Migros", trip.getStoreVisits().get(0).getStoreName());
+        assertEquals(from + 60000L, trip.getStoreVisits().get(0).getTime());
+        assertEquals(from + 480000L, trip.getStoreVisits().get(0).getExitTime());
+        assertEquals(420000L, trip.getStoreVisits().get(0).getDwellTime());
+    }
+
+    @Test
+    @DisplayName("Should return an empty trip for a courier without data")
+    void testGetTripUnknownCourier() {
+        // Given
+        when(distanceRollupStore.getDistance("UNKNOWN", 0L, 1000L)).thenReturn(0.0);
+        when(storeEntranceRepository.findByCourierIdInPeriod("UNKNOWN", dateTime(0L), dateTime(1000L)))
+                .thenReturn(List.of());
+
+        // When
+        TripSummaryResponse trip = service.getTrip("UNKNOWN", 0L, 1000L);
+
+        // Then
+        assertEquals(0.0, trip.getDistance());
+        assertTrue(trip.getStoreVisits().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject a range outside the supported times")
+    void testGetTripOutOfRange() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> service.getTrip("COURIER001", 0L, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> service.getTrip("COURIER001", Long.MIN_VALUE, 1000L));
+        verifyNoInteractions(distanceRollupStore, storeEntranceRepository);
+    }
+}
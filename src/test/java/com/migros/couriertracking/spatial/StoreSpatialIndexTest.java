@@ -0,0 +1,185 @@
+package com.migros.couriertracking.spatial;
+
+import com.migros.couriertracking.entity.Store;
+import com.migros.couriertracking.repository.StoreRepository;
+import com.migros.couriertracking.util.DistanceCalculator;
+import com.migros.couriertracking.util.HaversineDistanceCalculator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("StoreSpatialIndex Tests")
+class StoreSpatialIndexTest {
+
+    @Mock
+    private StoreRepository storeRepository;
+
+    private StoreSpatialIndex index;
+
+    private Store atasehir;
+    private Store novada;
+
+    @BeforeEach
+    void setUp() {
+        index = new StoreSpatialIndex(storeRepository, new HaversineDistanceCalculator());
+        ReflectionTestUtils.setField(index, "storeRadius", 100.0);
+
+        atasehir = new Store("Ataşehir MMM Migros", 40.9923307, 29.1244229);
+        atasehir.setId(1L);
+        novada = new Store("Novada MMM Migros", 40.986106, 29.1161293);
+        novada.setId(2L);
+    }
+
+    @Test
+    @DisplayName("Should return no stores before the index is built")
+    void testEmptyIndex() {
+        assertTrue(index.findStoresInRange(40.9923307, 29.1244229).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("Should return the store for a point at its location")
+    void testStoreAtItsLocation() {
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir, novada));
+        index.rebuild();
+
+        List<Store> inRange = index.findStoresInRange(40.9923307, 29.1244229);
+
+        assertEquals(List.of(atasehir), inRange);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    @DisplayName("Should return the store for points near the edge of its radius")
+    void testStoreNearRadiusEdge() {
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir));
+        index.rebuild();
+
+        // ~90m north, south, east and west of the store
+        assertTrue(index.findStoresInRange(40.9931392, 29.1244229).contains(atasehir));
+        assertTrue(index.findStoresInRange(40.9915222, 29.1244229).contains(atasehir));
+        assertTrue(index.findStoresInRange(40.9923307, 29.1254935).contains(atasehir));
+        assertTrue(index.findStoresInRange(40.9923307, 29.1233523).contains(atasehir));
+    }
+
+    @Test
+    @DisplayName("Should not return stores far away from the point")
+    void testNoStoresFarAway() {
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir, novada));
+        index.rebuild();
+
+        assertTrue(index.findStoresInRange(41.0840, 29.0093).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should not return a store whose bounding box contains the point but whose radius does not")
+    void testBoundingBoxCornerOutsideRadius() {
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir));
+        index.rebuild();
+
+        // ~80m north and ~80m east of the store, ~113m away
+        assertTrue(index.findStoresInRange(40.9930502, 29.1253759).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject points outside the bounding box without calculating distance")
+    void testBoundingBoxRejectsBeforeDistance() {
+        DistanceCalculator distanceCalculator = mock(DistanceCalculator.class);
+        index = new StoreSpatialIndex(storeRepository, distanceCalculator);
+        ReflectionTestUtils.setField(index, "storeRadius", 100.0);
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir));
+        index.rebuild();
+
+        // ~105m east and ~105m north of the store
+        assertTrue(index.findStoresInRange(40.9923307, 29.1256739).isEmpty());
+        assertTrue(index.findStoresInRange(40.9932750, 29.1244229).isEmpty());
+
+        verifyNoInteractions(distanceCalculator);
+    }
+
+    @Test
+    @DisplayName("Should replace the previous stores on rebuild")
+    void testRebuildReplacesStores() {
+        when(storeRepository.findAll())
+                .thenReturn(Arrays.asList(atasehir))
+                .thenReturn(Arrays.asList(novada));
+
+        index.rebuild();
+        index.rebuild();
+
+        assertTrue(index.findStoresInRange(40.9923307, 29.1244229).isEmpty());
+        assertEquals(List.of(novada), index.findStoresInRange(40.986106, 29.1161293));
+    }
+
+    @Test
+    @DisplayName("Should use the store's own radius over the configured one")
+    void testPerStoreRadius() {
+        atasehir.setRadius(200.0);
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir));
+        index.rebuild();
+
+        // ~150m north and ~113m diagonally away from the store
+        assertEquals(List.of(atasehir), index.findStoresInRange(40.9936797, 29.1244229));
+        assertEquals(List.of(atasehir), index.findStoresInRange(40.9930502, 29.1253759));
+        // ~250m north
+        assertTrue(index.findStoresInRange(40.9945790, 29.1244229).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should test points against a concave polygon instead of the radius")
+    void testConcavePolygon() {
+        // L-shaped geofence around the store, with the north-east quarter cut out
+        atasehir.setPolygon(new double[][] {
+                { 40.9913, 29.1232 }, { 40.9913, 29.1256 }, { 40.9923, 29.1256 },
+                { 40.9923, 29.1244 }, { 40.9933, 29.1244 }, { 40.9933, 29.1232 } });
+        when(storeRepository.findAll()).thenReturn(Arrays.asList(atasehir, novada));
+        index.rebuild();
+
+        assertEquals(List.of(atasehir), index.findStoresInRange(40.9918, 29.1250));
+        assertEquals(List.of(atasehir), index.findStoresInRange(40.9928, 29.1238));
+        // Inside the cut-out and within the configured radius of the store
+        assertTrue(index.findStoresInRange(40.9926, 29.1248).isEmpty());
+        // On the latitude of a vertex, east of the polygon
+        assertTrue(index.findStoresInRange(40.9923, 29.1260).isEmpty());
+        assertEquals(List.of(novada), index.findStoresInRange(40.986106, 29.1161293));
+    }
+
+    @Test
+    @DisplayName("Should find a geofence much larger than a cell without registering it in every cell")
+    void testLargePolygonNextToSmallStores() {
+        // Given - a district-sized polygon around a hundred stores with the default radius
+        Store district = new Store("Ataşehir District Hub", 40.99, 29.12);
+        district.setId(100L);
+        district.setPolygon(new double[][] {
+                { 40.94, 29.07 }, { 40.94, 29.17 }, { 41.04, 29.17 }, { 41.04, 29.07 } });
+        List<Store> stores = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Store store = new Store("Migros " + i, 40.95 + (i / 10) * 0.008, 29.08 + (i % 10) * 0.008);
+            store.setId((long) i);
+            stores.add(store);
+        }
+        stores.add(district);
+        when(storeRepository.findAll()).thenReturn(stores);
+
+        // When
+        index.rebuild();
+
+        // Then
+        assertTrue(index.getCellCount() <= 100 * 6);
+        assertEquals(List.of(stores.get(0), district), index.findStoresInRange(40.95, 29.08));
+        assertEquals(List.of(district), index.findStoresInRange(41.03, 29.16));
+        assertTrue(index.findStoresInRange(41.05, 29.16).isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package com.migros.couriertracking.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Equirectangular Distance Calculator Tests")
+class EquirectangularDistanceCalculatorTest {
+
+    private final EquirectangularDistanceCalculator calculator = new EquirectangularDistanceCalculator();
+    private final HaversineDistanceCalculator haversine = new HaversineDistanceCalculator();
+
+    @Test
+    @DisplayName("Should calculate zero distance for same coordinates")
+    void testSameCoordinates() {
+        double distance = calculator.calculateDistance(41.0840, 29.0093, 41.0840, 29.0093);
+        assertEquals(0.0, distance, 0.001);
+    }
+
+    @Test
+    @DisplayName("Should calculate distance symmetrically")
+    void testSymmetricDistance() {
+        double distance1 = calculator.calculateDistance(41.0840, 29.0093, 41.0766, 29.0278);
+        double distance2 = calculator.calculateDistance(41.0766, 29.0278, 41.0840, 29.0093);
+        assertEquals(distance1, distance2, 0.001);
+    }
+
+    @Test
+    @DisplayName("Should match Haversine for short distances")
+    void testShortDistanceMatchesHaversine() {
+        double expected = haversine.calculateDistance(41.0840, 29.0093, 41.0849, 29.0093);
+        double distance = calculator.calculateDistance(41.0840, 29.0093, 41.0849, 29.0093);
+        assertEquals(expected, distance, 0.001);
+    }
+
+    @Test
+    @DisplayName("Should stay within the documented error bound up to 10 km")
+    void testErrorBound() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 10000; i++) {
+            double lat1 = random.nextDouble(-60, 60);
+            double lng1 = random.nextDouble(-179, 179);
+            double lat2 = lat1 + random.nextDouble(-0.06, 0.06);
+            double lng2 = lng1 + random.nextDouble(-0.06, 0.06);
+
+            double expected = haversine.calculateDistance(lat1, lng1, lat2, lng2);
+            double distance = calculator.calculateDistance(lat1, lng1, lat2, lng2);
+
+            assertEquals(expected, distance, expected * 0.00001,
+                    "Relative error too large for (" + lat1 + ", " + lng1 + ") -> (" + lat2 + ", " + lng2 + ")");
+        }
+    }
+
+    @Test
+    @DisplayName("Should take the short way across the antimeridian")
+    void testAntimeridian() {
+        double expected = haversine.calculateDistance(10.0, 179.9995, 10.0, -179.9995);
+        double distance = calculator.calculateDistance(10.0, 179.9995, 10.0, -179.9995);
+        assertEquals(expected, distance, 0.01);
+    }
+
+    @Test
+    @DisplayName("Should interpolate the cosine table accurately")
+    void testCosLatitude() {
+        for (double latitude = -90; latitude <= 90; latitude += 0.037) {
+            assertEquals(Math.cos(Math.toRadians(latitude)),
+                    EquirectangularDistanceCalculator.cosLatitude(latitude), 4e-7);
+        }
+    }
+}
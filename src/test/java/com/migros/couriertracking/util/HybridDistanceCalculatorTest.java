@@ -0,0 +1,60 @@
+package com.migros.couriertracking.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Hybrid Distance Calculator Tests")
+class HybridDistanceCalculatorTest {
+
+    @Mock
+    private DistanceCalculator approximateCalculator;
+
+    @Mock
+    private DistanceCalculator exactCalculator;
+
+    private HybridDistanceCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        calculator = new HybridDistanceCalculator(approximateCalculator, exactCalculator, 1000);
+    }
+
+    @Test
+    @DisplayName("Should use the approximation below the threshold")
+    void testApproximationBelowThreshold() {
+        when(approximateCalculator.calculateDistance(41.0, 29.0, 41.001, 29.0)).thenReturn(111.0);
+
+        assertEquals(111.0, calculator.calculateDistance(41.0, 29.0, 41.001, 29.0));
+        verifyNoInteractions(exactCalculator);
+    }
+
+    @Test
+    @DisplayName("Should fall back to the exact calculation above the threshold")
+    void testExactAboveThreshold() {
+        when(approximateCalculator.calculateDistance(41.0, 29.0, 41.1, 29.0)).thenReturn(11100.0);
+        when(exactCalculator.calculateDistance(41.0, 29.0, 41.1, 29.0)).thenReturn(11119.5);
+
+        assertEquals(11119.5, calculator.calculateDistance(41.0, 29.0, 41.1, 29.0));
+    }
+
+    @Test
+    @DisplayName("Should agree with Haversine when combined with the equirectangular approximation")
+    void testWithRealCalculators() {
+        HaversineDistanceCalculator haversine = new HaversineDistanceCalculator();
+        HybridDistanceCalculator hybrid = new HybridDistanceCalculator(
+                new EquirectangularDistanceCalculator(), haversine, 1000);
+
+        assertEquals(haversine.calculateDistance(41.0840, 29.0093, 41.0766, 29.0278),
+                hybrid.calculateDistance(41.0840, 29.0093, 41.0766, 29.0278));
+        assertEquals(haversine.calculateDistance(41.0840, 29.0093, 41.0849, 29.0093),
+                hybrid.calculateDistance(41.0840, 29.0093, 41.0849, 29.0093), 0.001);
+    }
+}
@@ -0,0 +1,222 @@
+package com.migros.couriertracking.wal;
+
+import com.migros.couriertracking.dto.CourierLocationRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("WriteAheadLog Tests")
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WriteAheadLog log;
+
+    private WriteAheadLog openLog(int segmentSize) throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        WriteAheadLog writeAheadLog = new WriteAheadLog(meterRegistry);
+        ReflectionTestUtils.setField(writeAheadLog, "enabled", true);
+        ReflectionTestUtils.setField(writeAheadLog, "directory", directory.toString());
+        ReflectionTestUtils.setField(writeAheadLog, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(writeAheadLog, "commitTimeoutMs", 5000L);
+        writeAheadLog.open();
+        return writeAheadLog;
+    }
+
+    private List<CourierLocationRequest> replay(WriteAheadLog writeAheadLog) {
+        List<CourierLocationRequest> fixes = new ArrayList<>();
+        writeAheadLog.replay(fix -> fixes.add(fix.request()));
+        return fixes;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay committed fixes in log order after reopening")
+    void testReplayAfterReopen() throws Exception {
+        // Given
+        log = openLog(1024 * 1024);
+        long position = 0;
+        for (int i = 0; i < 10; i++) {
+            position = log.append(new CourierLocationRequest("COURIER00" + (i % 2), 41.0 + i * 0.0001, 29.0, 1000L + i));
+        }
+        assertTrue(log.awaitCommit(position));
+        assertEquals(10.0, meterRegistry.get("courier.wal.appended").counter().count(), 0.0);
+        log.close();
+
+        // When
+        log = openLog(1024 * 1024);
+        List<CourierLocationRequest> fixes = replay(log);
+
+        // Then
+        assertEquals(10, fixes.size());
+        assertEquals("COURIER001", fixes.get(3).getCourierId());
+        assertEquals(41.0003, fixes.get(3).getLatitude(), 1e-12);
+        assertEquals(29.0, fixes.get(3).getLongitude(), 1e-12);
+        assertEquals(1003L, fixes.get(3).getTime());
+    }
+
+    @Test
+    @DisplayName("Should let concurrent writers share commits")
+    void testGroupCommit() throws Exception {
+        // Given
+        log = openLog(1024 * 1024);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> commits = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 400; i++) {
+            CourierLocationRequest fix = new CourierLocationRequest("COURIER" + (i % 8), 41.0, 29.0, 1000L + i);
+            commits.add(executor.submit(() -> log.awaitCommit(log.append(fix))));
+        }
+        for (Future<Boolean> commit : commits) {
+            assertTrue(commit.get());
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(400, replay(log).size());
+        long forces = meterRegistry.get("courier.wal.commit").timer().count();
+        assertTrue(forces >= 1 && forces <= 400);
+    }
+
+    @Test
+    @DisplayName("Should start a new segment when the current one is full")
+    void testRollsFullSegments() throws Exception {
+        // Given
+        log = openLog(256);
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            log.append(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L + i));
+        }
+        log.close();
+        log = openLog(256);
+
+        // Then
+        assertTrue(segmentFiles().size() > 1);
+        List<CourierLocationRequest> fixes = replay(log);
+        assertEquals(20, fixes.size());
+        assertEquals(1019L, fixes.get(19).getTime());
+    }
+
+    @Test
+    @DisplayName("Should stop replaying a segment at a torn record")
+    void testTornRecord() throws Exception {
+        // Given
+        log = openLog(1024);
+        log.append(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+        log.append(new CourierLocationRequest("COURIER001", 41.1, 29.0, 2000L));
+        log.close();
+        log = null;
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles().get(0).toFile(), "rw")) {
+            // Corrupt the time of the second record
+            file.seek(WalSegment.HEADER_SIZE + 2 * 8 + 3 * 8 + "COURIER001".length());
+            file.writeLong(3000L);
+        }
+
+        // When
+        log = openLog(1024);
+        List<CourierLocationRequest> fixes = replay(log);
+
+        // Then
+        assertEquals(1, fixes.size());
+        assertEquals(1000L, fixes.get(0).getTime());
+    }
+
+    @Test
+    @DisplayName("Should delete sealed segments on truncate and keep appending to a new one")
+    void testSealAndTruncate() throws Exception {
+        // Given
+        log = openLog(1024 * 1024);
+        log.append(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+
+        // When
+        long sealed = log.seal();
+        assertTrue(log.awaitCommit(log.append(new CourierLocationRequest("COURIER001", 41.1, 29.0, 2000L))));
+        log.truncate(sealed);
+
+        // Then
+        assertEquals(1, segmentFiles().size());
+        List<CourierLocationRequest> fixes = replay(log);
+        assertEquals(1, fixes.size());
+        assertEquals(2000L, fixes.get(0).getTime());
+    }
+
+    @Test
+    @DisplayName("Should keep record ids growing after a checkpoint and a restart")
+    void testRecordIdsGrowAcrossRestart() throws Exception {
+        // Given
+        log = openLog(1024 * 1024);
+        long[] recordIds = new long[3];
+        log.append(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L), id -> recordIds[0] = id);
+        log.append(new CourierLocationRequest("COURIER001", 41.1, 29.0, 2000L), id -> recordIds[1] = id);
+        log.truncate(log.seal());
+        log.close();
+
+        // When
+        log = openLog(1024 * 1024);
+        List<LoggedFix> logged = new ArrayList<>();
+        log.replay(logged::add);
+        log.append(new CourierLocationRequest("COURIER001", 41.2, 29.0, 3000L), id -> recordIds[2] = id);
+
+        // Then
+        assertEquals(List.of(recordIds[0], recordIds[1]), logged.stream().map(LoggedFix::recordId).toList());
+        assertTrue(recordIds[0] < recordIds[1]);
+        assertTrue(recordIds[1] < recordIds[2]);
+    }
+
+    @Test
+    @DisplayName("Should report nothing to truncate when no fix was logged")
+    void testSealEmptyLog() throws Exception {
+        // Given
+        log = openLog(1024 * 1024);
+
+        // When / Then
+        assertEquals(-1, log.seal());
+    }
+
+    @Test
+    @DisplayName("Should acknowledge immediately when disabled")
+    void testDisabled() {
+        // Given
+        WriteAheadLog disabled = new WriteAheadLog(new SimpleMeterRegistry());
+
+        // When
+        long position = disabled.append(new CourierLocationRequest("COURIER001", 41.0, 29.0, 1000L));
+
+        // Then
+        assertTrue(disabled.awaitCommit(position));
+        assertEquals(-1, disabled.seal());
+        assertTrue(replay(disabled).isEmpty());
+    }
+}